@@ -0,0 +1,109 @@
+package demo;
+
+import org.openjdk.jmh.annotations.*;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.RunnerException;
+import org.openjdk.jmh.runner.options.Options;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+import utils.AvlSet;
+import utils.BTreeSet;
+
+import java.util.Iterator;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Compares lookups and range scans of BTreeSet with AvlSet on large sets, where
+ * the cache misses of the pointer-per-element tree dominate.
+ * Run with a large heap, e.g. -Xmx8g for 10 million elements.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@State(Scope.Benchmark)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1, timeUnit = TimeUnit.SECONDS)
+@Measurement(iterations = 5, time = 1, timeUnit = TimeUnit.SECONDS)
+public class BTreeSetBenchmark {
+
+    @Param({"1000000", "10000000"})
+    public int elementCount;
+
+    @Param({"16", "64", "128"})
+    public int fanout;
+
+    // Number of elements read by one range scan
+    static final int SCAN_LENGTH = 1000;
+
+    AvlSet<Integer> avlSet;
+    BTreeSet<Integer> bTreeSet;
+    Integer[] keys;
+    int next;
+
+    @Setup(Level.Trial)
+    public void generateElements() {
+        Integer[] elements = new Integer[elementCount];
+        for (int i = 0; i < elementCount; i++) {
+            elements[i] = 2 * i;
+        }
+        Random random = new Random(1);
+        for (int i = elementCount - 1; i > 0; i--) {
+            int j = random.nextInt(i + 1);
+            Integer t = elements[i];
+            elements[i] = elements[j];
+            elements[j] = t;
+        }
+        avlSet = new AvlSet<>();
+        bTreeSet = new BTreeSet<>(Integer::compare, fanout);
+        for (Integer element : elements) {
+            avlSet.add(element);
+            bTreeSet.add(element);
+        }
+        keys = new Integer[1 << 16];
+        for (int i = 0; i < keys.length; i++) {
+            keys[i] = random.nextInt(2 * elementCount);
+        }
+    }
+
+    private Integer nextKey() {
+        next = (next + 1) & (keys.length - 1);
+        return keys[next];
+    }
+
+    @org.openjdk.jmh.annotations.Benchmark
+    public boolean containsAvl() {
+        return avlSet.contains(nextKey());
+    }
+
+    @org.openjdk.jmh.annotations.Benchmark
+    public boolean containsBTree() {
+        return bTreeSet.contains(nextKey());
+    }
+
+    @org.openjdk.jmh.annotations.Benchmark
+    public long scanAvl() {
+        Integer from = nextKey();
+        long sum = 0;
+        for (Iterator<Integer> it = avlSet.subSet(from, from + 2 * SCAN_LENGTH).iterator(); it.hasNext(); ) {
+            sum += it.next();
+        }
+        return sum;
+    }
+
+    @org.openjdk.jmh.annotations.Benchmark
+    public long scanBTree() {
+        Integer from = nextKey();
+        long sum = 0;
+        for (Iterator<Integer> it = bTreeSet.rangeIterator(from, true, from + 2 * SCAN_LENGTH, false, true); it.hasNext(); ) {
+            sum += it.next();
+        }
+        return sum;
+    }
+
+    public static void main(String[] args) throws RunnerException {
+        Options opt = new OptionsBuilder()
+                .include(BTreeSetBenchmark.class.getSimpleName())
+                .forks(1)
+                .jvmArgs("-Xmx8g")
+                .build();
+        new Runner(opt).run();
+    }
+}
@@ -4,6 +4,7 @@ import utils.AvlSet;
 import utils.BstSet;
 import utils.BstSetIterative;
 import utils.SortedSet;
+import org.openjdk.jmh.annotations.*;
 import org.openjdk.jmh.infra.BenchmarkParams;
 import org.openjdk.jmh.runner.Runner;
 import org.openjdk.jmh.runner.RunnerException;
@@ -24,7 +25,7 @@ public class Benchmark {
     public int iterationCount;
 
     Car[] cars;
-    SortedSet<Car> carsThousandSet = new BstSet<>();
+    SortedSet<Car> carsThousandSet = new BstSet<>(BstSet.Balancing.SCAPEGOAT);
 
     @Setup(Level.Iteration)
     public void generateElements() {
@@ -2,9 +2,13 @@ package demo;
 
 import utils.Ks;
 import utils.Parsable;
+import utils.RecordCodec;
 
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
 import java.time.LocalDate;
 import java.util.*;
+import java.util.concurrent.atomic.AtomicInteger;
 
 
 public final class Car implements Parsable<Car> {
@@ -15,7 +19,7 @@ public final class Car implements Parsable<Car> {
     private static final double minPrice = 100.0;
     private static final double maxPrice = 333000.0;
     private static final String idCode = "TA";
-    private static int serNr = 100;
+    private static final AtomicInteger serNr = new AtomicInteger(100);   // cars may be created by parallel loads
 
     private final String carRegNo;
 
@@ -26,11 +30,11 @@ public final class Car implements Parsable<Car> {
     private double price = -1.0;
 
     public Car() {
-        carRegNo = idCode + (serNr++);    // the original carRegNo is issued
+        carRegNo = idCode + serNr.getAndIncrement();    // the original carRegNo is issued
     }
 
     public Car(String make, String model, int year, int mileage, double price) {
-        carRegNo = idCode + (serNr++);    // the original carRegNo is issued
+        carRegNo = idCode + serNr.getAndIncrement();    // the original carRegNo is issued
         this.make = make;
         this.model = model;
         this.year = year;
@@ -40,13 +44,13 @@ public final class Car implements Parsable<Car> {
     }
 
     public Car(String dataString) {
-        carRegNo = idCode + (serNr++);    // the original carRegNo is issued
+        carRegNo = idCode + serNr.getAndIncrement();    // the original carRegNo is issued
         this.parse(dataString);
         validate();
     }
 
     public Car(Builder builder) {
-        carRegNo = idCode + (serNr++);    // the original carRegNo is issued
+        carRegNo = idCode + serNr.getAndIncrement();    // the original carRegNo is issued
         this.make = builder.make;
         this.model = builder.model;
         this.year = builder.year;
@@ -55,39 +59,109 @@ public final class Car implements Parsable<Car> {
         validate();
     }
 
+    // a stored car keeps its carRegNo
+    private Car(String carRegNo, String make, String model, int year, int mileage, double price) {
+        this.carRegNo = carRegNo;
+        this.make = make;
+        this.model = model;
+        this.year = year;
+        this.mileage = mileage;
+        this.price = price;
+    }
+
+    // a car of a store of car data (see CarStore)
+    static Car restore(int serialNumber, String make, String model, int year, int mileage, double price) {
+        return new Car(idCode + serialNumber, make, model, year, mileage, price);
+    }
+
+    // the serial number of the next original carRegNo
+    static int issueSerialNumber() {
+        return serNr.getAndIncrement();
+    }
+
+    // the serial number of a carRegNo issued by this class
+    static int serialNumber(String carRegNo) {
+        if (!carRegNo.startsWith(idCode)) {
+            throw new IllegalArgumentException("Incorrect carRegNo " + carRegNo);
+        }
+        return Integer.parseInt(carRegNo.substring(idCode.length()));
+    }
+
+    static String carRegNo(int serialNumber) {
+        return idCode + serialNumber;
+    }
+
     public Car create(String dataString) {
         return new Car(dataString);
     }
 
+    /**
+     * Creates a car from a "make model year mileage price" line. Unlike Car(String),
+     * an incorrect line is not reported but rejected. The caller must pass Car::valueOf
+     * as the create function of ParsableAvlSet or ParsableBstSet for their load() to count
+     * the rejected lines and report them once; with Car::new every line is reported and
+     * the car is kept.
+     *
+     * @param dataString data line
+     * @return new car
+     * @throws ParseException if the line is incorrect or the car is outside the limits
+     */
+    public static Car valueOf(CharSequence dataString) {
+        Parser parser = Parser.get();
+        if (!parser.read(dataString) || !parser.check()) {
+            throw new ParseException(parser.getError(), parser.getErrorPosition(), dataString.toString());
+        }
+        return parser.toCar();
+    }
+
+    private static boolean yearInRange(int year) {
+        return year >= minYear && year <= currentYear;
+    }
+
+    private static boolean priceInRange(double price) {
+        return price >= minPrice && price <= maxPrice;
+    }
+
     private void validate() {
+        if (yearInRange(year) && priceInRange(price)) {
+            return;
+        }
         String errorType = "";
-        if (year < minYear || year > currentYear) {
+        if (!yearInRange(year)) {
             errorType = "Incorrect year of manufacture, must be ["
                     + minYear + ":" + currentYear + "]";
         }
-        if (price < minPrice || price > maxPrice) {
+        if (!priceInRange(price)) {
             errorType += " Price outside limits [" + minPrice
                     + ":" + maxPrice + "]";
         }
-
-        if (!errorType.isEmpty()) {
-            Ks.ern("The car is generated incorrectly: " + errorType + ". " + this);
-        }
+        Ks.ern("The car is generated incorrectly: " + errorType + ". " + this);
     }
 
     @Override
     public void parse(String dataString) {
-        try {   // data delimited by spaces
-            Scanner scanner = new Scanner(dataString);
-            make = scanner.next();
-            model = scanner.next();
-            year = scanner.nextInt();
-            setMileage(scanner.nextInt());
-            setPrice(scanner.nextDouble());
-        } catch (InputMismatchException e) {
-            Ks.ern("Incorrect data format -> " + dataString);
-        } catch (NoSuchElementException e) {
-            Ks.ern("Missing data -> " + dataString);
+        // data delimited by spaces; the fields read before an error are kept
+        Parser parser = Parser.get();
+        boolean correct = parser.read(dataString);
+        int fields = parser.getFields();
+        if (fields > 0) {
+            make = parser.make;
+        }
+        if (fields > 1) {
+            model = parser.model;
+        }
+        if (fields > 2) {
+            year = parser.year;
+        }
+        if (fields > 3) {
+            setMileage(parser.mileage);
+        }
+        if (fields > 4) {
+            setPrice(parser.price);
+        }
+        if (!correct) {
+            Ks.ern((parser.getError() == Parser.Error.MISSING_DATA ? "Missing data -> " : "Incorrect data format -> ")
+                    + dataString);
         }
     }
 
@@ -163,6 +237,410 @@ public final class Car implements Parsable<Car> {
         return 0;
     };
 
+    // fixed-width record: carRegNo 16, make 24, model 24 bytes, year, mileage, price
+    public static final RecordCodec<Car> recordCodec = new RecordCodec<Car>() {
+        @Override
+        public int recordSize() {
+            return 80;
+        }
+
+        @Override
+        public String schema() {
+            return "Car/1";
+        }
+
+        @Override
+        public void encode(Car car, ByteBuffer buffer, int offset) {
+            RecordCodec.putString(buffer, offset, car.carRegNo, 16);
+            RecordCodec.putString(buffer, offset + 16, car.make, 24);
+            RecordCodec.putString(buffer, offset + 40, car.model, 24);
+            buffer.putInt(offset + 64, car.year);
+            buffer.putInt(offset + 68, car.mileage);
+            buffer.putDouble(offset + 72, car.price);
+        }
+
+        @Override
+        public Car decode(ByteBuffer buffer, int offset) {
+            return new Car(RecordCodec.getString(buffer, offset),
+                    RecordCodec.getString(buffer, offset + 16),
+                    RecordCodec.getString(buffer, offset + 40),
+                    buffer.getInt(offset + 64),
+                    buffer.getInt(offset + 68),
+                    buffer.getDouble(offset + 72));
+        }
+    };
+
+    /**
+     * Parser of "make model year mileage price" lines without Scanner and without
+     * intermediate objects. The fields are separated by whitespace and the numbers are
+     * read as by Scanner in a locale with '.' as the decimal separator; make and model
+     * strings are interned in a small table of the parser. One parser per thread is
+     * kept by get(); a parser must not be shared between threads.
+     */
+    public static final class Parser {
+
+        public enum Error {NONE, MISSING_DATA, INCORRECT_FORMAT, YEAR_OUT_OF_RANGE, PRICE_OUT_OF_RANGE}
+
+        private static final ThreadLocal<Parser> PARSERS = ThreadLocal.withInitial(Parser::new);
+        // Interning table size, a power of two; it is never more than 3/4 full
+        private static final int INTERN_CAPACITY = 1024;
+        // Doubles with up to 15 significant digits and a power of ten up to 22 are exact
+        private static final int EXACT_DIGITS = 15;
+        private static final double[] POWERS_OF_TEN = {
+                1e0, 1e1, 1e2, 1e3, 1e4, 1e5, 1e6, 1e7, 1e8, 1e9, 1e10, 1e11,
+                1e12, 1e13, 1e14, 1e15, 1e16, 1e17, 1e18, 1e19, 1e20, 1e21, 1e22
+        };
+
+        private final String[] interned = new String[INTERN_CAPACITY];
+        private int internedCount;
+        private final ByteSlice byteSlice = new ByteSlice();
+
+        // fields of the last line, valid up to getFields()
+        private String make;
+        private String model;
+        private int year;
+        private int mileage;
+        private double price;
+        private int fields;
+        // start of every field in the line
+        private final int[] starts = new int[5];
+        private Error error = Error.NONE;
+        private int errorPosition = -1;
+        // result of the last number parsed
+        private long longValue;
+        private double doubleValue;
+
+        public static Parser get() {
+            return PARSERS.get();
+        }
+
+        /**
+         * Reads the fields of the line.
+         *
+         * @param s data line
+         * @return true if all five fields were read
+         */
+        public boolean read(CharSequence s) {
+            fields = 0;
+            error = Error.NONE;
+            errorPosition = -1;
+            int n = s.length();
+            int end = 0;
+            for (int field = 0; field < 5; field++) {
+                int p = end;
+                while (p < n && Character.isWhitespace(s.charAt(p))) {
+                    p++;
+                }
+                end = p;
+                while (end < n && !Character.isWhitespace(s.charAt(end))) {
+                    end++;
+                }
+                if (p == end) {
+                    return fail(Error.MISSING_DATA, p);
+                }
+                starts[field] = p;
+                switch (field) {
+                    case 0:
+                        make = intern(s, p, end);
+                        break;
+                    case 1:
+                        model = intern(s, p, end);
+                        break;
+                    case 2:
+                    case 3:
+                        if (!parseInt(s, p, end)) {
+                            return fail(Error.INCORRECT_FORMAT, p);
+                        }
+                        if (field == 2) {
+                            year = (int) longValue;
+                        } else {
+                            mileage = (int) longValue;
+                        }
+                        break;
+                    default:
+                        if (!parseDouble(s, p, end)) {
+                            return fail(Error.INCORRECT_FORMAT, p);
+                        }
+                        price = doubleValue;
+                }
+                fields++;
+            }
+            return true;
+        }
+
+        /**
+         * Reads the fields of a UTF-8 encoded line from data[from..to).
+         *
+         * @return true if all five fields were read
+         */
+        public boolean read(byte[] data, int from, int to) {
+            for (int i = from; i < to; i++) {
+                if (data[i] < 0) {
+                    return read(new String(data, from, to - from, StandardCharsets.UTF_8));
+                }
+            }
+            byteSlice.set(data, from, to);
+            return read(byteSlice);
+        }
+
+        /**
+         * Checks the limits of the year and the price of the last line read.
+         *
+         * @return true if the car can be created without errors
+         */
+        public boolean check() {
+            if (fields < 5) {
+                return false;
+            }
+            if (!yearInRange(year)) {
+                return fail(Error.YEAR_OUT_OF_RANGE, starts[2]);
+            }
+            if (!priceInRange(price)) {
+                return fail(Error.PRICE_OUT_OF_RANGE, starts[4]);
+            }
+            return true;
+        }
+
+        /**
+         * Creates a car of the last line read, which must have all five fields.
+         *
+         * @return new car with the next carRegNo
+         */
+        public Car toCar() {
+            if (fields < 5) {
+                throw new IllegalStateException("The line is incomplete: " + error);
+            }
+            return new Car(make, model, year, mileage, price);
+        }
+
+        /**
+         * @return number of the fields read from the last line
+         */
+        public int getFields() {
+            return fields;
+        }
+
+        public Error getError() {
+            return error;
+        }
+
+        /**
+         * @return position of the field with the error in the line, -1 if there is no error
+         */
+        public int getErrorPosition() {
+            return errorPosition;
+        }
+
+        private boolean fail(Error error, int position) {
+            this.error = error;
+            this.errorPosition = position;
+            return false;
+        }
+
+        // Returns the interned string of s[from..to)
+        private String intern(CharSequence s, int from, int to) {
+            int hash = 0;
+            for (int i = from; i < to; i++) {
+                hash = 31 * hash + s.charAt(i);
+            }
+            int mask = INTERN_CAPACITY - 1;
+            for (int i = (hash ^ (hash >>> 16)) & mask; ; i = (i + 1) & mask) {
+                String candidate = interned[i];
+                if (candidate == null) {
+                    String value = s.subSequence(from, to).toString();
+                    if (internedCount < INTERN_CAPACITY / 4 * 3) {
+                        interned[i] = value;
+                        internedCount++;
+                    }
+                    return value;
+                }
+                if (candidate.hashCode() == hash && equal(candidate, s, from, to)) {
+                    return candidate;
+                }
+            }
+        }
+
+        private static boolean equal(String candidate, CharSequence s, int from, int to) {
+            if (candidate.length() != to - from) {
+                return false;
+            }
+            for (int i = from; i < to; i++) {
+                if (candidate.charAt(i - from) != s.charAt(i)) {
+                    return false;
+                }
+            }
+            return true;
+        }
+
+        // Parses an int with an optional sign into longValue
+        private boolean parseInt(CharSequence s, int from, int to) {
+            int i = from;
+            boolean negative = s.charAt(i) == '-';
+            if (negative || s.charAt(i) == '+') {
+                i++;
+            }
+            if (i == to) {
+                return false;
+            }
+            long value = 0;
+            for (; i < to; i++) {
+                char ch = s.charAt(i);
+                if (ch < '0' || ch > '9') {
+                    return false;
+                }
+                value = value * 10 + (ch - '0');
+                if (value > (long) Integer.MAX_VALUE + 1) {
+                    return false;
+                }
+            }
+            longValue = negative ? -value : value;
+            return longValue >= Integer.MIN_VALUE && longValue <= Integer.MAX_VALUE;
+        }
+
+        /**
+         * Parses a decimal number [sign] digits [. digits] [e [sign] digits] into doubleValue.
+         * A number with at most 15 significant digits and a power of ten up to 22 is computed
+         * by one exact multiplication or division, which rounds correctly; other numbers,
+         * and numbers with an exponent, are passed to Double.parseDouble.
+         */
+        private boolean parseDouble(CharSequence s, int from, int to) {
+            int i = from;
+            boolean negative = s.charAt(i) == '-';
+            if (negative || s.charAt(i) == '+') {
+                i++;
+            }
+            long mantissa = 0;
+            int digits = 0;
+            int significant = 0;
+            int exponent = 0;
+            boolean point = false;
+            for (; i < to; i++) {
+                char ch = s.charAt(i);
+                if (ch == '.' && !point) {
+                    point = true;
+                } else if (ch >= '0' && ch <= '9') {
+                    digits++;
+                    if (mantissa != 0 || ch != '0') {
+                        significant++;
+                    }
+                    if (significant <= 18) {
+                        mantissa = mantissa * 10 + (ch - '0');
+                        if (point) {
+                            exponent--;
+                        }
+                    } else if (!point) {
+                        exponent++;
+                    }
+                } else {
+                    break;
+                }
+            }
+            if (digits == 0) {
+                return false;
+            }
+            boolean scientific = i < to;
+            if (scientific) {
+                if (s.charAt(i) != 'e' && s.charAt(i) != 'E') {
+                    return false;
+                }
+                i++;
+                if (i < to && (s.charAt(i) == '-' || s.charAt(i) == '+')) {
+                    i++;
+                }
+                if (i == to) {
+                    return false;
+                }
+                for (; i < to; i++) {
+                    char ch = s.charAt(i);
+                    if (ch < '0' || ch > '9') {
+                        return false;
+                    }
+                }
+            }
+
+            if (!scientific && significant <= EXACT_DIGITS && exponent >= -22 && exponent <= 22) {
+                double value = (exponent < 0) ? mantissa / POWERS_OF_TEN[-exponent] : mantissa * POWERS_OF_TEN[exponent];
+                doubleValue = negative ? -value : value;
+                return true;
+            }
+            doubleValue = Double.parseDouble(s.subSequence(from, to).toString());
+            return true;
+        }
+    }
+
+    /**
+     * ASCII bytes seen as characters
+     */
+    private static final class ByteSlice implements CharSequence {
+
+        private byte[] data;
+        private int from;
+        private int to;
+
+        void set(byte[] data, int from, int to) {
+            this.data = data;
+            this.from = from;
+            this.to = to;
+        }
+
+        @Override
+        public int length() {
+            return to - from;
+        }
+
+        @Override
+        public char charAt(int index) {
+            return (char) data[from + index];
+        }
+
+        @Override
+        public CharSequence subSequence(int start, int end) {
+            return new String(data, from + start, end - start, StandardCharsets.ISO_8859_1);
+        }
+
+        @Override
+        public String toString() {
+            return new String(data, from, to - from, StandardCharsets.ISO_8859_1);
+        }
+    }
+
+    /**
+     * Incorrect car data line
+     */
+    public static final class ParseException extends IllegalArgumentException {
+
+        private static final long serialVersionUID = 1L;
+
+        private final Parser.Error error;
+        private final int position;
+        private final String dataString;
+
+        ParseException(Parser.Error error, int position, String dataString) {
+            this.error = error;
+            this.position = position;
+            this.dataString = dataString;
+        }
+
+        public Parser.Error getError() {
+            return error;
+        }
+
+        public int getPosition() {
+            return position;
+        }
+
+        @Override
+        public String getMessage() {
+            return error + " at " + position + " -> " + dataString;
+        }
+
+        // bad lines of bulk loads are expected, the stack trace is not needed
+        @Override
+        public synchronized Throwable fillInStackTrace() {
+            return this;
+        }
+    }
+
     // Car class object builder
     public static class Builder {
 
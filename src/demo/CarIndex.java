@@ -0,0 +1,540 @@
+package demo;
+
+import utils.AvlSet;
+import utils.BstSet;
+import utils.RedBlackSet;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.EnumMap;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.locks.ReadWriteLock;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+import java.util.function.Consumer;
+
+/**
+ * Car inventory with a primary index by carRegNo and any number of secondary indexes,
+ * kept in sync.
+ * <p>
+ * An index orders the cars by a list of keys, e.g. PRICE as Car.byPrice or YEAR, PRICE as
+ * Car.byYearPrice, and then by carRegNo, so cars with equal keys are all kept. Adds,
+ * removals and price or mileage changes are applied to all indexes under one write lock;
+ * a price change moves the car in the indexes that contain PRICE. The prices and mileages
+ * of the cars of an inventory must be changed through the inventory only.
+ * <p>
+ * A query is a set of key ranges. It is answered from the index whose leading keys
+ * give the fewest candidates; the counts come from the subtree sizes in O(log n).
+ */
+public class CarIndex implements Iterable<Car> {
+
+    public enum Kind {AVL, RED_BLACK}
+
+    public enum Key {
+        CAR_REG_NO, MAKE, MODEL, YEAR, MILEAGE, PRICE;
+
+        // orders the cars as Car.compareTo, Car.byMake and Car.byPrice do for their keys
+        int compare(Car a, Car b) {
+            switch (this) {
+                case CAR_REG_NO:
+                    return a.compareTo(b);
+                case MAKE:
+                    return a.getMake().compareTo(b.getMake());
+                case MODEL:
+                    return a.getModel().compareTo(b.getModel());
+                case YEAR:
+                    return Integer.compare(a.getYear(), b.getYear());
+                case MILEAGE:
+                    return Integer.compare(a.getMileage(), b.getMileage());
+                default:
+                    return Car.byPrice.compare(a, b);
+            }
+        }
+
+        // compares the key of the car with a query value
+        int compare(Car car, Object value) {
+            switch (this) {
+                case CAR_REG_NO:
+                    return car.getCarRegNo().compareTo((String) value);
+                case MAKE:
+                    return car.getMake().compareTo((String) value);
+                case MODEL:
+                    return car.getModel().compareTo((String) value);
+                case YEAR:
+                    return compareNumbers(car.getYear(), ((Number) value).doubleValue());
+                case MILEAGE:
+                    return compareNumbers(car.getMileage(), ((Number) value).doubleValue());
+                default:
+                    return compareNumbers(car.getPrice(), ((Number) value).doubleValue());
+            }
+        }
+
+        // compares two query values of the key, 5000 and 5000.0 are equal prices
+        int compareValues(Object a, Object b) {
+            if (isText()) {
+                return ((String) a).compareTo((String) b);
+            }
+            return compareNumbers(((Number) a).doubleValue(), ((Number) b).doubleValue());
+        }
+
+        boolean isText() {
+            return this == CAR_REG_NO || this == MAKE || this == MODEL;
+        }
+
+        private static int compareNumbers(double a, double b) {
+            return (a < b) ? -1 : (a > b) ? 1 : 0;
+        }
+    }
+
+    /**
+     * Key ranges that the found cars must satisfy, the bounds are inclusive
+     */
+    public static final class Query {
+
+        private final EnumMap<Key, Object[]> ranges = new EnumMap<>(Key.class);
+
+        public Query range(Key key, Object from, Object to) {
+            if (key == null || from == null || to == null) {
+                throw new IllegalArgumentException("Key or bound is null in range(Key key, Object from, Object to)");
+            }
+            Class<?> type = key.isText() ? String.class : Number.class;
+            if (!type.isInstance(from) || !type.isInstance(to)) {
+                throw new IllegalArgumentException("Bounds of " + key + " must be of type " + type.getSimpleName());
+            }
+            ranges.put(key, new Object[]{from, to});
+            return this;
+        }
+
+        public Query equal(Key key, Object value) {
+            return range(key, value, value);
+        }
+
+        boolean test(Car car) {
+            for (Map.Entry<Key, Object[]> range : ranges.entrySet()) {
+                Key key = range.getKey();
+                if (key.compare(car, range.getValue()[0]) < 0 || key.compare(car, range.getValue()[1]) > 0) {
+                    return false;
+                }
+            }
+            return true;
+        }
+
+        private boolean isEquality(Key key) {
+            Object[] range = ranges.get(key);
+            return range != null && key.compareValues(range[0], range[1]) == 0;
+        }
+    }
+
+    /**
+     * Element of an index: a car, or a probe for range bounds. A probe has the values of
+     * the leading keys and lies before (side -1) or after (side 1) the cars with these values.
+     */
+    private static final class Entry implements Comparable<Entry> {
+
+        final Car car;
+        final Object[] values;
+        final int side;
+
+        Entry(Car car) {
+            this.car = car;
+            this.values = null;
+            this.side = 0;
+        }
+
+        Entry(Object[] values, int side) {
+            this.car = null;
+            this.values = values;
+            this.side = side;
+        }
+
+        // the index sets order entries by their comparators, the natural order is by carRegNo
+        @Override
+        public int compareTo(Entry other) {
+            return car.compareTo(other.car);
+        }
+    }
+
+    private static final class Index {
+
+        final String name;
+        final Key[] keys;
+        final Kind kind;
+        final BstSet<Entry> set;
+
+        Index(String name, Kind kind, Key[] keys, Entry[] entries) {
+            this.name = name;
+            this.keys = keys;
+            this.kind = kind;
+            Comparator<Entry> c = this::compare;
+            Arrays.sort(entries, c);
+            this.set = (kind == Kind.AVL) ? AvlSet.fromSorted(entries, c) : RedBlackSet.fromSorted(entries, c);
+        }
+
+        // by the keys, then by carRegNo; a probe is compared by the values it has
+        int compare(Entry a, Entry b) {
+            if (a.car == null || b.car == null) {
+                return (a.car == null) ? compareProbe(a, b.car) : -compareProbe(b, a.car);
+            }
+            for (Key key : keys) {
+                int cmp = key.compare(a.car, b.car);
+                if (cmp != 0) {
+                    return cmp;
+                }
+            }
+            return a.car.compareTo(b.car);
+        }
+
+        private int compareProbe(Entry probe, Car car) {
+            if (car == null) {
+                return Integer.compare(probe.side, 0);
+            }
+            for (int i = 0; i < probe.values.length; i++) {
+                int cmp = keys[i].compare(car, probe.values[i]);
+                if (cmp != 0) {
+                    return -cmp;
+                }
+            }
+            return probe.side;
+        }
+
+        boolean contains(Key key) {
+            for (Key k : keys) {
+                if (k == key) {
+                    return true;
+                }
+            }
+            return false;
+        }
+    }
+
+    /**
+     * Candidates of a query in one index
+     */
+    private static final class Plan {
+
+        final Index index;
+        final Entry from;
+        final Entry to;
+        // the range of the index satisfies the whole query
+        final boolean exact;
+
+        Plan(Index index, Entry from, Entry to, boolean exact) {
+            this.index = index;
+            this.from = from;
+            this.to = to;
+            this.exact = exact;
+        }
+
+        int count() {
+            return index.set.subSet(from, to).size();
+        }
+    }
+
+    private final Index primary;
+    // secondary indexes by name, in the order of declaration
+    private final Map<String, Index> indexes = new LinkedHashMap<>();
+    private final ReadWriteLock lock = new ReentrantReadWriteLock();
+
+    public CarIndex() {
+        this(Kind.AVL);
+    }
+
+    public CarIndex(Kind primaryKind) {
+        if (primaryKind == null) {
+            throw new IllegalArgumentException("Kind is null in CarIndex(Kind primaryKind)");
+        }
+        primary = new Index("primary", primaryKind, new Key[]{Key.CAR_REG_NO}, new Entry[0]);
+    }
+
+    /**
+     * Declares a secondary index and builds it from the cars of the inventory.
+     *
+     * @param name index name
+     * @param kind tree of the index
+     * @param keys keys of the index order, the carRegNo is added as the last key
+     */
+    public void declareIndex(String name, Kind kind, Key... keys) {
+        if (name == null || kind == null || keys == null || keys.length == 0) {
+            throw new IllegalArgumentException("Name, kind or keys are missing in declareIndex");
+        }
+        lock.writeLock().lock();
+        try {
+            if (indexes.containsKey(name)) {
+                throw new IllegalArgumentException("Index " + name + " is already declared");
+            }
+            Entry[] entries = new Entry[primary.set.size()];
+            int i = 0;
+            for (Entry entry : primary.set) {
+                entries[i++] = entry;
+            }
+            indexes.put(name, new Index(name, kind, keys.clone(), entries));
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    /**
+     * @return number of cars
+     */
+    public int size() {
+        lock.readLock().lock();
+        try {
+            return primary.set.size();
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    public boolean contains(Car car) {
+        lock.readLock().lock();
+        try {
+            return car != null && primary.set.contains(new Entry(car));
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    /**
+     * Adds a car to all indexes.
+     *
+     * @param car car
+     * @return false if a car with the same carRegNo is already in the inventory
+     */
+    public boolean add(Car car) {
+        if (car == null) {
+            throw new IllegalArgumentException("Car is null in add(Car car)");
+        }
+        lock.writeLock().lock();
+        try {
+            Entry entry = new Entry(car);
+            if (primary.set.contains(entry)) {
+                return false;
+            }
+            List<Index> done = new ArrayList<>();
+            try {
+                primary.set.add(entry);
+                done.add(primary);
+                for (Index index : indexes.values()) {
+                    index.set.add(entry);
+                    done.add(index);
+                }
+            } catch (RuntimeException e) {
+                for (Index index : done) {
+                    index.set.remove(entry);
+                }
+                throw e;
+            }
+            return true;
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    /**
+     * Removes the car with the carRegNo of the car from all indexes.
+     *
+     * @param car car
+     * @return false if there is no such car
+     */
+    public boolean remove(Car car) {
+        if (car == null) {
+            throw new IllegalArgumentException("Car is null in remove(Car car)");
+        }
+        lock.writeLock().lock();
+        try {
+            Car stored = stored(car);
+            if (stored == null) {
+                return false;
+            }
+            Entry entry = new Entry(stored);
+            primary.set.remove(entry);
+            for (Index index : indexes.values()) {
+                index.set.remove(entry);
+            }
+            return true;
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    /**
+     * Changes the price of the car of the inventory and moves it in the indexes ordered by the price.
+     *
+     * @throws IllegalArgumentException if the car is not in the inventory
+     */
+    public void setPrice(Car car, double price) {
+        update(car, Key.PRICE, stored -> stored.setPrice(price));
+    }
+
+    /**
+     * Changes the mileage of the car of the inventory and moves it in the indexes ordered by the mileage.
+     *
+     * @throws IllegalArgumentException if the car is not in the inventory
+     */
+    public void setMileage(Car car, int mileage) {
+        update(car, Key.MILEAGE, stored -> stored.setMileage(mileage));
+    }
+
+    private void update(Car car, Key key, Consumer<Car> change) {
+        if (car == null) {
+            throw new IllegalArgumentException("Car is null in update of " + key);
+        }
+        lock.writeLock().lock();
+        try {
+            Car stored = stored(car);
+            if (stored == null) {
+                throw new IllegalArgumentException("Car " + car.getCarRegNo() + " is not in the inventory");
+            }
+            Entry entry = new Entry(stored);
+            List<Index> moved = new ArrayList<>();
+            for (Index index : indexes.values()) {
+                if (index.contains(key)) {
+                    index.set.remove(entry);
+                    moved.add(index);
+                }
+            }
+            // the car goes back into the indexes also if the change fails
+            try {
+                change.accept(stored);
+            } finally {
+                for (Index index : moved) {
+                    index.set.add(entry);
+                }
+            }
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    // the car of the inventory with the carRegNo of the car
+    private Car stored(Car car) {
+        Entry found = primary.set.floor(new Entry(car));
+        return (found != null && found.car.compareTo(car) == 0) ? found.car : null;
+    }
+
+    /**
+     * Finds the cars that satisfy the query.
+     *
+     * @param query key ranges
+     * @return cars in the order of the index the query was answered from
+     */
+    public List<Car> find(Query query) {
+        lock.readLock().lock();
+        try {
+            Plan plan = plan(query);
+            List<Car> cars = new ArrayList<>();
+            for (Entry entry : plan.index.set.subSet(plan.from, plan.to)) {
+                if (plan.exact || query.test(entry.car)) {
+                    cars.add(entry.car);
+                }
+            }
+            return cars;
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    /**
+     * Counts the cars that satisfy the query, in O(log n) if an index covers all key ranges.
+     *
+     * @param query key ranges
+     * @return number of cars
+     */
+    public int count(Query query) {
+        lock.readLock().lock();
+        try {
+            Plan plan = plan(query);
+            if (plan.exact) {
+                return plan.count();
+            }
+            int count = 0;
+            for (Entry entry : plan.index.set.subSet(plan.from, plan.to)) {
+                if (query.test(entry.car)) {
+                    count++;
+                }
+            }
+            return count;
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    /**
+     * @return name of the index the query would be answered from
+     */
+    public String explain(Query query) {
+        lock.readLock().lock();
+        try {
+            return plan(query).index.name;
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    // Chooses the index range with the fewest candidates, of equal ones a range that needs no filtering
+    private Plan plan(Query query) {
+        Plan best = plan(primary, query);
+        int bestCount = best.count();
+        for (Index index : indexes.values()) {
+            Plan plan = plan(index, query);
+            if (plan != null) {
+                int count = plan.count();
+                if (count < bestCount || (count == bestCount && plan.exact && !best.exact)) {
+                    best = plan;
+                    bestCount = count;
+                }
+            }
+        }
+        return best;
+    }
+
+    /**
+     * The range of the index for the query: the equalities of the leading keys and the
+     * range of the next key. Null if the query has no range of the first key; for the
+     * primary index the whole index is returned then.
+     */
+    private Plan plan(Index index, Query query) {
+        List<Object> from = new ArrayList<>();
+        List<Object> to = new ArrayList<>();
+        int used = 0;
+        for (Key key : index.keys) {
+            Object[] range = query.ranges.get(key);
+            if (range == null) {
+                break;
+            }
+            from.add(range[0]);
+            to.add(range[1]);
+            used++;
+            if (!query.isEquality(key)) {
+                break;
+            }
+        }
+        if (used == 0 && index != primary) {
+            return null;
+        }
+        return new Plan(index, new Entry(from.toArray(), -1), new Entry(to.toArray(), 1),
+                used == query.ranges.size());
+    }
+
+    /**
+     * Returns the cars in the carRegNo order. The inventory must not be changed during the iteration.
+     */
+    @Override
+    public Iterator<Car> iterator() {
+        Iterator<Entry> entries = primary.set.iterator();
+        return new Iterator<Car>() {
+            @Override
+            public boolean hasNext() {
+                return entries.hasNext();
+            }
+
+            @Override
+            public Car next() {
+                return entries.next().car;
+            }
+        };
+    }
+}
@@ -1,21 +1,59 @@
 package demo;
 
+import utils.AvlSet;
 import utils.BstSet;
 import utils.Set;
+import utils.SetCollectors;
+import utils.SortedMultiset;
+import utils.SortedSet;
+import utils.TreeMultiset;
 
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.PriorityQueue;
+import java.util.function.Consumer;
 import java.util.stream.Collector;
 import java.util.stream.Stream;
 
+/**
+ * Car market analytics.
+ * <p>
+ * A market report is computed in one pass over the cars by an {@link Aggregator}: the
+ * cars per make and per model, price statistics per make and the cheapest cars per model.
+ * Aggregators of separate parts of the cars are merged, so an array is aggregated by a
+ * parallel stream, every ForkJoin task into its own aggregator. A car feed is aggregated
+ * car by car, and the aggregator gives a report at any time.
+ */
 public class CarMarket {
 
+    // Cheapest cars kept per model by default
+    public static final int DEFAULT_TOP_K = 5;
+
+    // Price histogram: every power of two of the prices from 2^0 to 2^MAX_PRICE_EXPONENT is
+    // split into 2^SUB_BUCKET_BITS equal buckets, lower and higher prices fall into the
+    // first and the last bucket
+    private static final int SUB_BUCKET_BITS = 7;
+    private static final int MAX_PRICE_EXPONENT = 24;
+    private static final int HISTOGRAM_BUCKETS = MAX_PRICE_EXPONENT << SUB_BUCKET_BITS;
+
+    // Cheapest first, equal prices by carRegNo
+    private static final Comparator<Car> byPriceRegNo = SortedMultiset.thenNaturalOrder(Car.byPrice);
+
     public static Set<String> duplicateCarMakes(Car[] cars) {
-        Set<Car> uni = new BstSet<>(Car.byMake);
-        Set<String> duplicates = new BstSet<>();
+        SortedMultiset<Car> byMake = new TreeMultiset<>(Car.byMake);
         for (Car car : cars) {
-            int sizeBefore = uni.size();
-            uni.add(car);
-
-            if (sizeBefore == uni.size()) {
+            byMake.add(car);
+        }
+        Set<String> duplicates = new BstSet<>(BstSet.Balancing.SCAPEGOAT);
+        for (Iterator<Car> it = byMake.distinctIterator(); it.hasNext(); ) {
+            Car car = it.next();
+            if (byMake.count(car) > 1) {
                 duplicates.add(car.getMake());
             }
         }
@@ -23,25 +61,361 @@ public class CarMarket {
     }
 
     public static Set<String> uniqueCarModels(Car[] cars) {
-        Set<String> uniqueModels = new BstSet<>();
-        for (Car car : cars) {
-            uniqueModels.add(car.getModel());
-        }
-        return uniqueModels;
+        return analyze(cars, 0).getModels();
     }
 
     public static Set<String> uniqueCarModelsLambdaStyle(Car[] cars) {
         return Stream.of(cars)
+                .parallel()
                 .map(Car::getModel)
-                .collect(Collector.of(
-                        BstSet::new,
-                        BstSet::add,
-                        (set1, set2) -> {
-                            for (String model : set2) {
-                                set1.add(model);
-                            }
-                            return set1;
-                        })
-                );
+                .collect(SetCollectors.toBstSet());
+    }
+
+    /**
+     * Computes the market report of the cars with the DEFAULT_TOP_K cheapest cars per model.
+     */
+    public static Report analyze(Car[] cars) {
+        return analyze(cars, DEFAULT_TOP_K);
+    }
+
+    /**
+     * Computes the market report of the cars in parallel.
+     *
+     * @param cars cars
+     * @param topK cheapest cars kept per model, 0 for none
+     * @return report
+     */
+    public static Report analyze(Car[] cars, int topK) {
+        if (cars == null) {
+            throw new IllegalArgumentException("Cars are null in analyze(Car[] cars, int topK)");
+        }
+        return Arrays.stream(cars).parallel().collect(toReport(topK));
+    }
+
+    /**
+     * Computes the market report of the next count cars of the generator.
+     *
+     * @param generator car feed
+     * @param count     number of cars taken
+     * @param topK      cheapest cars kept per model, 0 for none
+     * @return report
+     */
+    public static Report analyze(CarsGenerator generator, int count, int topK) {
+        if (generator == null) {
+            throw new IllegalArgumentException("Generator is null in analyze(CarsGenerator generator, int count, int topK)");
+        }
+        Aggregator aggregator = new Aggregator(topK);
+        for (int i = 0; i < count; i++) {
+            aggregator.accept(generator.takeCar());
+        }
+        return aggregator.report();
+    }
+
+    /**
+     * @param topK cheapest cars kept per model, 0 for none
+     * @return collector of cars into a market report
+     */
+    public static Collector<Car, Aggregator, Report> toReport(int topK) {
+        return Collector.of(() -> new Aggregator(topK), Aggregator::accept, Aggregator::merge, Aggregator::report,
+                Collector.Characteristics.UNORDERED);
+    }
+
+    /**
+     * Mergeable partial aggregate of a part of the cars
+     */
+    public static final class Aggregator implements Consumer<Car> {
+
+        private final int topK;
+        private final Map<String, PriceStats> makes = new HashMap<>();
+        private final Map<String, ModelStats> models = new HashMap<>();
+        private long cars = 0;
+
+        public Aggregator(int topK) {
+            if (topK < 0) {
+                throw new IllegalArgumentException("Negative topK " + topK);
+            }
+            this.topK = topK;
+        }
+
+        /**
+         * Adds a car to the aggregate.
+         *
+         * @param car
+         */
+        @Override
+        public void accept(Car car) {
+            if (car == null) {
+                throw new IllegalArgumentException("Car is null in accept(Car car)");
+            }
+            cars++;
+            makes.computeIfAbsent(car.getMake(), make -> new PriceStats()).add(car.getPrice());
+            models.computeIfAbsent(car.getModel(), model -> new ModelStats(topK)).add(car);
+        }
+
+        /**
+         * Adds the aggregate of other cars to this one. The other aggregate shares its
+         * statistics with this one and must not be used after the merge.
+         *
+         * @param other aggregate with the same topK
+         * @return this aggregate
+         */
+        public Aggregator merge(Aggregator other) {
+            if (other.topK != topK) {
+                throw new IllegalArgumentException("Aggregates keep " + topK + " and " + other.topK + " cheapest cars");
+            }
+            cars += other.cars;
+            other.makes.forEach((make, stats) -> makes.merge(make, stats, PriceStats::merge));
+            other.models.forEach((model, stats) -> models.merge(model, stats, ModelStats::merge));
+            return this;
+        }
+
+        /**
+         * @return report of the cars added so far; later cars do not change it
+         */
+        public Report report() {
+            return new Report(this);
+        }
+    }
+
+    /**
+     * Number of cars and the cheapest ones of a model
+     */
+    private static final class ModelStats {
+
+        private long count = 0;
+        private final int topK;
+        // The most expensive of the cheapest cars on top
+        private final PriorityQueue<Car> cheapest;
+
+        ModelStats(int topK) {
+            this.topK = topK;
+            this.cheapest = new PriorityQueue<>(Math.max(topK, 1), byPriceRegNo.reversed());
+        }
+
+        void add(Car car) {
+            count++;
+            offer(car);
+        }
+
+        private void offer(Car car) {
+            if (cheapest.size() < topK) {
+                cheapest.add(car);
+            } else if (topK > 0 && byPriceRegNo.compare(car, cheapest.peek()) < 0) {
+                cheapest.poll();
+                cheapest.add(car);
+            }
+        }
+
+        ModelStats merge(ModelStats other) {
+            count += other.count;
+            for (Car car : other.cheapest) {
+                offer(car);
+            }
+            return this;
+        }
+
+        List<Car> sortedCheapest() {
+            List<Car> list = new ArrayList<>(cheapest);
+            list.sort(byPriceRegNo);
+            return Collections.unmodifiableList(list);
+        }
+    }
+
+    /**
+     * Price statistics of a make. The minimum, maximum and mean are exact; the percentiles
+     * are read from a histogram with buckets at most 0.8% wide, so they are within 0.4% of
+     * the exact percentile, and the histograms of two parts of the cars are merged by adding them.
+     */
+    public static final class PriceStats {
+
+        private long count = 0;
+        private double min = Double.POSITIVE_INFINITY;
+        private double max = Double.NEGATIVE_INFINITY;
+        private double sum = 0;
+        private long[] histogram = new long[HISTOGRAM_BUCKETS];
+
+        PriceStats() {
+        }
+
+        void add(double price) {
+            count++;
+            min = Math.min(min, price);
+            max = Math.max(max, price);
+            sum += price;
+            histogram[bucket(price)]++;
+        }
+
+        PriceStats merge(PriceStats other) {
+            count += other.count;
+            min = Math.min(min, other.min);
+            max = Math.max(max, other.max);
+            sum += other.sum;
+            for (int i = 0; i < HISTOGRAM_BUCKETS; i++) {
+                histogram[i] += other.histogram[i];
+            }
+            return this;
+        }
+
+        PriceStats copy() {
+            PriceStats copy = new PriceStats();
+            copy.merge(this);
+            return copy;
+        }
+
+        // The bucket is read from the exponent and the leading mantissa bits, without a logarithm
+        private static int bucket(double price) {
+            if (!(price >= 1)) {
+                return 0;
+            }
+            long bits = Double.doubleToRawLongBits(price);
+            int bucket = (int) ((bits >>> (52 - SUB_BUCKET_BITS)) - (1023L << SUB_BUCKET_BITS));
+            return Math.min(bucket, HISTOGRAM_BUCKETS - 1);
+        }
+
+        // Price in the middle of the bucket
+        private static double bucketPrice(int bucket) {
+            int exponent = bucket >>> SUB_BUCKET_BITS;
+            double fraction = ((bucket & ((1 << SUB_BUCKET_BITS) - 1)) + 0.5) / (1 << SUB_BUCKET_BITS);
+            return Math.scalb(1 + fraction, exponent);
+        }
+
+        public long getCount() {
+            return count;
+        }
+
+        public double getMin() {
+            return min;
+        }
+
+        public double getMax() {
+            return max;
+        }
+
+        public double getMean() {
+            return sum / count;
+        }
+
+        /**
+         * Returns the nearest-rank percentile of the prices: the price of the car at the
+         * percent of the cars ordered by price.
+         *
+         * @param percent from 0 (the minimum) to 100 (the maximum)
+         * @return the percentile, within 0.4% of the exact price
+         */
+        public double getPercentile(double percent) {
+            if (!(percent >= 0 && percent <= 100)) {
+                throw new IllegalArgumentException("Percent is not in [0:100]: " + percent);
+            }
+            if (percent == 0) {
+                return min;
+            }
+            if (percent == 100) {
+                return max;
+            }
+            long rank = Math.max((long) Math.ceil(percent / 100 * count), 1);
+            long below = 0;
+            int i = 0;
+            while (below + histogram[i] < rank) {
+                below += histogram[i++];
+            }
+            return Math.max(min, Math.min(max, bucketPrice(i)));
+        }
+
+        @Override
+        public String toString() {
+            return String.format("%d cars, price min %.2f, max %.2f, mean %.2f, median %.2f, p90 %.2f",
+                    count, min, max, getMean(), getPercentile(50), getPercentile(90));
+        }
+    }
+
+    /**
+     * Market report, a snapshot of an aggregate
+     */
+    public static final class Report {
+
+        private final long cars;
+        private final SortedSet<String> makes;
+        private final SortedSet<String> models;
+        private final Map<String, PriceStats> makeStats = new HashMap<>();
+        private final Map<String, Long> modelCounts = new HashMap<>();
+        private final Map<String, List<Car>> cheapest = new HashMap<>();
+
+        private Report(Aggregator aggregator) {
+            cars = aggregator.cars;
+            makes = sortedKeys(aggregator.makes);
+            models = sortedKeys(aggregator.models);
+            aggregator.makes.forEach((make, stats) -> makeStats.put(make, stats.copy()));
+            aggregator.models.forEach((model, stats) -> {
+                modelCounts.put(model, stats.count);
+                cheapest.put(model, stats.sortedCheapest());
+            });
+        }
+
+        private static SortedSet<String> sortedKeys(Map<String, ?> map) {
+            String[] keys = map.keySet().toArray(new String[0]);
+            Arrays.sort(keys);
+            return AvlSet.fromSorted(keys, Comparator.naturalOrder());
+        }
+
+        public long getCars() {
+            return cars;
+        }
+
+        // Distinct makes
+        public SortedSet<String> getMakes() {
+            return makes;
+        }
+
+        // Distinct models
+        public SortedSet<String> getModels() {
+            return models;
+        }
+
+        public long getMakeCount(String make) {
+            PriceStats stats = makeStats.get(make);
+            return (stats == null) ? 0 : stats.count;
+        }
+
+        public long getModelCount(String model) {
+            return modelCounts.getOrDefault(model, 0L);
+        }
+
+        /**
+         * @return makes of more than one car
+         */
+        public Set<String> getDuplicateMakes() {
+            Set<String> duplicates = new BstSet<>(BstSet.Balancing.SCAPEGOAT);
+            for (String make : makes) {
+                if (getMakeCount(make) > 1) {
+                    duplicates.add(make);
+                }
+            }
+            return duplicates;
+        }
+
+        /**
+         * @return price statistics of the make, null if there are no cars of the make
+         */
+        public PriceStats getPriceStats(String make) {
+            return makeStats.get(make);
+        }
+
+        /**
+         * @return the cheapest cars of the model, cheapest first
+         */
+        public List<Car> getCheapest(String model) {
+            return cheapest.getOrDefault(model, Collections.emptyList());
+        }
+
+        @Override
+        public String toString() {
+            StringBuilder sb = new StringBuilder();
+            sb.append(cars).append(" cars, ").append(makes.size()).append(" makes, ")
+                    .append(models.size()).append(" models").append(System.lineSeparator());
+            for (String make : makes) {
+                sb.append(make).append(": ").append(makeStats.get(make)).append(System.lineSeparator());
+            }
+            return sb.toString();
+        }
     }
 }
@@ -0,0 +1,72 @@
+package demo;
+
+import org.openjdk.jmh.annotations.*;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.RunnerException;
+import org.openjdk.jmh.runner.options.Options;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+import utils.BstSet;
+import utils.Set;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Compares the market report of CarMarket.analyze, sequential and parallel, with the
+ * duplicate makes and unique models computed by inserting every car into tree sets, as
+ * CarMarket did before.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@State(Scope.Benchmark)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 1, timeUnit = TimeUnit.SECONDS)
+@Measurement(iterations = 5, time = 1, timeUnit = TimeUnit.SECONDS)
+public class CarMarketBenchmark {
+
+    @Param({"100000", "1000000"})
+    public int carCount;
+
+    Car[] cars;
+
+    @Setup(Level.Trial)
+    public void generateCars() {
+        cars = new CarsGenerator().generateShuffle(carCount, 0.5);
+    }
+
+    @org.openjdk.jmh.annotations.Benchmark
+    public Object treeSets() {
+        Set<Car> uni = new BstSet<>(Car.byMake, BstSet.Balancing.SCAPEGOAT);
+        Set<String> duplicates = new BstSet<>(BstSet.Balancing.SCAPEGOAT);
+        Set<String> models = new BstSet<>(BstSet.Balancing.SCAPEGOAT);
+        for (Car car : cars) {
+            int sizeBefore = uni.size();
+            uni.add(car);
+            if (sizeBefore == uni.size()) {
+                duplicates.add(car.getMake());
+            }
+            models.add(car.getModel());
+        }
+        return models;
+    }
+
+    @org.openjdk.jmh.annotations.Benchmark
+    public CarMarket.Report analyzeSequential() {
+        CarMarket.Aggregator aggregator = new CarMarket.Aggregator(CarMarket.DEFAULT_TOP_K);
+        for (Car car : cars) {
+            aggregator.accept(car);
+        }
+        return aggregator.report();
+    }
+
+    @org.openjdk.jmh.annotations.Benchmark
+    public CarMarket.Report analyzeParallel() {
+        return CarMarket.analyze(cars);
+    }
+
+    public static void main(String[] args) throws RunnerException {
+        Options opt = new OptionsBuilder()
+                .include(CarMarketBenchmark.class.getSimpleName())
+                .forks(1)
+                .build();
+        new Runner(opt).run();
+    }
+}
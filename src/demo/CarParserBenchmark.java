@@ -0,0 +1,83 @@
+package demo;
+
+import org.openjdk.jmh.annotations.*;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.RunnerException;
+import org.openjdk.jmh.runner.options.Options;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+
+import java.nio.charset.StandardCharsets;
+import java.util.Locale;
+import java.util.Scanner;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Compares parsing of car data lines by Scanner, as Car.parse did before, with Car.Parser.
+ * The parser benchmarks without a Car show the cost of the parsing alone.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@State(Scope.Benchmark)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1, timeUnit = TimeUnit.SECONDS)
+@Measurement(iterations = 5, time = 1, timeUnit = TimeUnit.SECONDS)
+public class CarParserBenchmark {
+
+    static final int LINE_COUNT = 1 << 12;
+
+    String[] lines;
+    byte[][] lineBytes;
+    int next;
+
+    @Setup(Level.Trial)
+    public void generateLines() {
+        lines = new String[LINE_COUNT];
+        lineBytes = new byte[LINE_COUNT][];
+        Car.Builder builder = new Car.Builder();
+        for (int i = 0; i < LINE_COUNT; i++) {
+            Car car = builder.buildRandom();
+            lines[i] = String.format(Locale.ROOT, "%s %s %d %d %.2f",
+                    car.getMake(), car.getModel(), car.getYear(), car.getMileage(), car.getPrice());
+            lineBytes[i] = lines[i].getBytes(StandardCharsets.UTF_8);
+        }
+    }
+
+    private int nextLine() {
+        next = (next + 1) & (LINE_COUNT - 1);
+        return next;
+    }
+
+    @org.openjdk.jmh.annotations.Benchmark
+    public Car scanner() {
+        Scanner scanner = new Scanner(lines[nextLine()]);
+        return new Car(scanner.next(), scanner.next(), scanner.nextInt(), scanner.nextInt(), scanner.nextDouble());
+    }
+
+    @org.openjdk.jmh.annotations.Benchmark
+    public Car carFromString() {
+        return new Car(lines[nextLine()]);
+    }
+
+    @org.openjdk.jmh.annotations.Benchmark
+    public Car valueOf() {
+        return Car.valueOf(lines[nextLine()]);
+    }
+
+    @org.openjdk.jmh.annotations.Benchmark
+    public boolean parserRead() {
+        return Car.Parser.get().read(lines[nextLine()]);
+    }
+
+    @org.openjdk.jmh.annotations.Benchmark
+    public boolean parserReadBytes() {
+        byte[] line = lineBytes[nextLine()];
+        return Car.Parser.get().read(line, 0, line.length);
+    }
+
+    public static void main(String[] args) throws RunnerException {
+        Options opt = new OptionsBuilder()
+                .include(CarParserBenchmark.class.getSimpleName())
+                .forks(1)
+                .build();
+        new Runner(opt).run();
+    }
+}
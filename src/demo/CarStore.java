@@ -0,0 +1,353 @@
+package demo;
+
+import utils.AvlSet;
+
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * Car data kept in columns, one array per field, indexed by row id.
+ * <p>
+ * Make and model are dictionary-encoded: a row holds the id of the string, every
+ * distinct string is kept once. The carRegNo is kept as its int serial number. A row
+ * takes 28 bytes instead of a Car object with its own strings.
+ * <p>
+ * Tree sets index the store by row id with the comparators of the store, which order
+ * the rows as the Car comparators order the cars and read only the columns. As with the
+ * Car comparators, a set keeps one row of the rows that compare equal.
+ */
+public class CarStore {
+
+    private static final int DEFAULT_CAPACITY = 16;
+    // Rows sorted by insertion before the merges of indexBy
+    private static final int INSERTION_SORT_RUN = 32;
+
+    // columns
+    private int[] serialNumbers;
+    private int[] makeIds;
+    private int[] modelIds;
+    private int[] years;
+    private int[] mileages;
+    private double[] prices;
+    private int size = 0;
+
+    private final Dictionary makes = new Dictionary();
+    private final Dictionary models = new Dictionary();
+
+    public CarStore() {
+        this(DEFAULT_CAPACITY);
+    }
+
+    public CarStore(int capacity) {
+        capacity = Math.max(capacity, 1);
+        serialNumbers = new int[capacity];
+        makeIds = new int[capacity];
+        modelIds = new int[capacity];
+        years = new int[capacity];
+        mileages = new int[capacity];
+        prices = new double[capacity];
+    }
+
+    /**
+     * Distinct strings of a column, numbered in the order of appearance. The ranks give
+     * the alphabetical order of the strings, so rows are compared without the strings.
+     * A new string shifts the ranks, so they are computed again only when rows are
+     * compared after new strings, once for all of them.
+     */
+    private static final class Dictionary {
+
+        private final Map<String, Integer> ids = new HashMap<>();
+        private String[] values = new String[DEFAULT_CAPACITY];
+        // Ranks by id, null if strings were added since they were computed
+        private int[] ranks = null;
+        private int size = 0;
+
+        int id(String value) {
+            Integer id = ids.get(value);
+            if (id != null) {
+                return id;
+            }
+            if (size == values.length) {
+                values = Arrays.copyOf(values, 2 * size);
+            }
+            values[size] = value;
+            ids.put(value, size);
+            size++;
+            ranks = null;
+            return size - 1;
+        }
+
+        int[] ranks() {
+            if (ranks == null) {
+                String[] sorted = Arrays.copyOf(values, size);
+                Arrays.sort(sorted);
+                int[] newRanks = new int[size];
+                for (int rank = 0; rank < size; rank++) {
+                    newRanks[ids.get(sorted[rank])] = rank;
+                }
+                ranks = newRanks;
+            }
+            return ranks;
+        }
+    }
+
+    /**
+     * Comparator of the row ids of this store, compares the rows without boxing them
+     */
+    @FunctionalInterface
+    private interface RowComparator extends Comparator<Integer> {
+
+        int compareRows(int r1, int r2);
+
+        @Override
+        default int compare(Integer r1, Integer r2) {
+            return compareRows(r1, r2);
+        }
+    }
+
+    /**
+     * Adds a car to the store, the car keeps its carRegNo.
+     *
+     * @param car car
+     * @return row id
+     */
+    public int add(Car car) {
+        if (car == null) {
+            throw new IllegalArgumentException("Car is null in add(Car car)");
+        }
+        return add(Car.serialNumber(car.getCarRegNo()), car.getMake(), car.getModel(), car.getYear(),
+                car.getMileage(), car.getPrice());
+    }
+
+    /**
+     * Adds a new car to the store, the car gets the next original carRegNo.
+     *
+     * @return row id
+     */
+    public int add(String make, String model, int year, int mileage, double price) {
+        return add(Car.issueSerialNumber(), make, model, year, mileage, price);
+    }
+
+    private int add(int serialNumber, String make, String model, int year, int mileage, double price) {
+        if (size == years.length) {
+            int capacity = 2 * size;
+            serialNumbers = Arrays.copyOf(serialNumbers, capacity);
+            makeIds = Arrays.copyOf(makeIds, capacity);
+            modelIds = Arrays.copyOf(modelIds, capacity);
+            years = Arrays.copyOf(years, capacity);
+            mileages = Arrays.copyOf(mileages, capacity);
+            prices = Arrays.copyOf(prices, capacity);
+        }
+        serialNumbers[size] = serialNumber;
+        makeIds[size] = makes.id(make);
+        modelIds[size] = models.id(model);
+        years[size] = year;
+        mileages[size] = mileage;
+        prices[size] = price;
+        return size++;
+    }
+
+    /**
+     * @return number of rows
+     */
+    public int size() {
+        return size;
+    }
+
+    /**
+     * Creates a Car of the row, with the carRegNo of the row.
+     *
+     * @param row row id
+     * @return new Car
+     */
+    public Car get(int row) {
+        checkRow(row);
+        return Car.restore(serialNumbers[row], getMake(row), getModel(row), years[row], mileages[row], prices[row]);
+    }
+
+    public String getCarRegNo(int row) {
+        checkRow(row);
+        return Car.carRegNo(serialNumbers[row]);
+    }
+
+    public String getMake(int row) {
+        checkRow(row);
+        return makes.values[makeIds[row]];
+    }
+
+    public String getModel(int row) {
+        checkRow(row);
+        return models.values[modelIds[row]];
+    }
+
+    public int getYear(int row) {
+        checkRow(row);
+        return years[row];
+    }
+
+    public int getMileage(int row) {
+        checkRow(row);
+        return mileages[row];
+    }
+
+    /**
+     * Changes the mileage of the row. The row must not be in an index ordered by the mileage.
+     */
+    public void setMileage(int row, int mileage) {
+        checkRow(row);
+        mileages[row] = mileage;
+    }
+
+    public double getPrice(int row) {
+        checkRow(row);
+        return prices[row];
+    }
+
+    /**
+     * Changes the price of the row. The row must not be in an index ordered by the price.
+     */
+    public void setPrice(int row, double price) {
+        checkRow(row);
+        prices[row] = price;
+    }
+
+    private void checkRow(int row) {
+        if (row < 0 || row >= size) {
+            throw new IndexOutOfBoundsException("Row " + row + " out of bounds for size " + size);
+        }
+    }
+
+    /**
+     * Builds an index of all rows of the store; of the rows that compare equal only
+     * the first row is kept.
+     *
+     * @param c row comparator of this store
+     * @return AVL set of row ids
+     */
+    public AvlSet<Integer> indexBy(Comparator<Integer> c) {
+        Integer[] rows = new Integer[size];
+        if (c instanceof RowComparator) {
+            int[] sorted = new int[size];
+            for (int row = 0; row < size; row++) {
+                sorted[row] = row;
+            }
+            sortRows(sorted, (RowComparator) c);
+            for (int i = 0; i < size; i++) {
+                rows[i] = sorted[i];
+            }
+        } else {
+            for (int row = 0; row < size; row++) {
+                rows[row] = row;
+            }
+            Arrays.sort(rows, c);
+        }
+        return AvlSet.fromSorted(rows, c);
+    }
+
+    // Stable merge sort of row ids, runs of INSERTION_SORT_RUN rows are sorted by insertion first
+    private static void sortRows(int[] rows, RowComparator c) {
+        int n = rows.length;
+        for (int lo = 0; lo < n; lo += INSERTION_SORT_RUN) {
+            int hi = Math.min(lo + INSERTION_SORT_RUN, n);
+            for (int i = lo + 1; i < hi; i++) {
+                int row = rows[i];
+                int j = i - 1;
+                while (j >= lo && c.compareRows(rows[j], row) > 0) {
+                    rows[j + 1] = rows[j];
+                    j--;
+                }
+                rows[j + 1] = row;
+            }
+        }
+        int[] from = rows;
+        int[] to = new int[n];
+        for (int width = INSERTION_SORT_RUN; width < n; width *= 2) {
+            for (int lo = 0; lo < n; lo += 2 * width) {
+                int mid = Math.min(lo + width, n);
+                int hi = Math.min(lo + 2 * width, n);
+                int i = lo;
+                int j = mid;
+                for (int k = lo; k < hi; k++) {
+                    to[k] = (j >= hi || (i < mid && c.compareRows(from[i], from[j]) <= 0)) ? from[i++] : from[j++];
+                }
+            }
+            int[] swap = from;
+            from = to;
+            to = swap;
+        }
+        if (from != rows) {
+            System.arraycopy(from, 0, rows, 0, n);
+        }
+    }
+
+    /**
+     * Orders rows as Car.compareTo orders cars: by the carRegNo strings, "TA1000" before
+     * "TA101". The digit strings are compared as numbers scaled to the same length.
+     */
+    public Comparator<Integer> byCarRegNo() {
+        return (RowComparator) (r1, r2) -> {
+            long a = serialNumbers[r1];
+            long b = serialNumbers[r2];
+            int da = digits(a);
+            int db = digits(b);
+            for (int i = da; i < db; i++) {
+                a *= 10;
+            }
+            for (int i = db; i < da; i++) {
+                b *= 10;
+            }
+            return (a != b) ? Long.compare(a, b) : Integer.compare(da, db);
+        };
+    }
+
+    private static int digits(long n) {
+        int digits = 1;
+        while (n >= 10) {
+            n /= 10;
+            digits++;
+        }
+        return digits;
+    }
+
+    /**
+     * Orders rows as Car.byMake orders cars
+     */
+    public Comparator<Integer> byMake() {
+        return (RowComparator) (r1, r2) -> {
+            int[] ranks = makes.ranks();
+            return Integer.compare(ranks[makeIds[r1]], ranks[makeIds[r2]]);
+        };
+    }
+
+    /**
+     * Orders rows as Car.byPrice orders cars
+     */
+    public Comparator<Integer> byPrice() {
+        return (RowComparator) (r1, r2) -> comparePrices(prices[r1], prices[r2]);
+    }
+
+    /**
+     * Orders rows as Car.byYearPrice orders cars
+     */
+    public Comparator<Integer> byYearPrice() {
+        return (RowComparator) (r1, r2) -> {
+            if (years[r1] != years[r2]) {
+                return (years[r1] > years[r2]) ? +1 : -1;
+            }
+            return comparePrices(prices[r1], prices[r2]);
+        };
+    }
+
+    // as Car.byPrice, prices that are neither less nor greater are equal
+    private static int comparePrices(double p1, double p2) {
+        if (p1 < p2) {
+            return -1;
+        }
+        if (p1 > p2) {
+            return +1;
+        }
+        return 0;
+    }
+}
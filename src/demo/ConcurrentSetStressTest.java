@@ -0,0 +1,128 @@
+package demo;
+
+import utils.AvlSet;
+import utils.ConcurrentSortedSet;
+import utils.SortedSet;
+
+import java.util.Iterator;
+import java.util.Locale;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Mixed read/write stress test of ConcurrentSortedSet.
+ * Every thread runs contains() calls with random keys, and with the given probability
+ * an add() or remove() instead. The throughput is measured for 1, 2, 4, ... threads and
+ * compared with an AvlSet guarded by one global lock. At the end the set is checked
+ * to be sorted and to have the reported size.
+ * <p>
+ * Arguments: [max threads = 32] [seconds per run = 2] [write ratio = 0.01] [set size = 1000000]
+ */
+public class ConcurrentSetStressTest {
+
+    public static void main(String[] args) throws InterruptedException {
+        Locale.setDefault(Locale.US); // Unify number formats
+        int maxThreads = args.length > 0 ? Integer.parseInt(args[0]) : 32;
+        double seconds = args.length > 1 ? Double.parseDouble(args[1]) : 2;
+        double writeRatio = args.length > 2 ? Double.parseDouble(args[2]) : 0.01;
+        int size = args.length > 3 ? Integer.parseInt(args[3]) : 1_000_000;
+
+        ConcurrentSortedSet<Integer> concurrentSet = new ConcurrentSortedSet<>();
+        AvlSet<Integer> lockedSet = new AvlSet<>();
+        for (int i = 0; i < size; i++) {
+            concurrentSet.add(2 * i);
+            lockedSet.add(2 * i);
+        }
+
+        System.out.printf("%8s %20s %20s%n", "threads", "concurrent ops/s", "global lock ops/s");
+        for (int threads = 1; threads <= maxThreads; threads *= 2) {
+            double concurrent = run(concurrentSet, null, threads, seconds, writeRatio, 2 * size);
+            double locked = run(lockedSet, lockedSet, threads, seconds, writeRatio, 2 * size);
+            System.out.printf("%8d %20.0f %20.0f%n", threads, concurrent, locked);
+        }
+        check(concurrentSet);
+        System.out.println("Set is consistent, size " + concurrentSet.size());
+    }
+
+    /**
+     * Runs the workload and returns the throughput
+     *
+     * @param set        tested set
+     * @param lock       object to synchronize on, null for no locking
+     * @param threads    number of threads
+     * @param seconds    duration of the run
+     * @param writeRatio share of add() and remove() calls
+     * @param keyRange   keys are taken from [0, keyRange)
+     * @return operations per second
+     */
+    private static double run(SortedSet<Integer> set, Object lock, int threads, double seconds,
+                              double writeRatio, int keyRange) throws InterruptedException {
+        LongAdder operations = new LongAdder();
+        CountDownLatch start = new CountDownLatch(1);
+        long durationNanos = (long) (seconds * 1e9);
+        Thread[] workers = new Thread[threads];
+        for (int t = 0; t < threads; t++) {
+            workers[t] = new Thread(() -> {
+                ThreadLocalRandom random = ThreadLocalRandom.current();
+                try {
+                    start.await();
+                } catch (InterruptedException e) {
+                    return;
+                }
+                long end = System.nanoTime() + durationNanos;
+                long count = 0;
+                while ((count & 0xFF) != 0 || System.nanoTime() < end) {
+                    Integer key = random.nextInt(keyRange);
+                    if (random.nextDouble() < writeRatio) {
+                        if (lock == null) {
+                            write(set, key, random.nextBoolean());
+                        } else {
+                            synchronized (lock) {
+                                write(set, key, random.nextBoolean());
+                            }
+                        }
+                    } else if (lock == null) {
+                        set.contains(key);
+                    } else {
+                        synchronized (lock) {
+                            set.contains(key);
+                        }
+                    }
+                    count++;
+                }
+                operations.add(count);
+            });
+            workers[t].start();
+        }
+        long begin = System.nanoTime();
+        start.countDown();
+        for (Thread worker : workers) {
+            worker.join();
+        }
+        return operations.sum() / ((System.nanoTime() - begin) / 1e9);
+    }
+
+    private static void write(SortedSet<Integer> set, Integer key, boolean add) {
+        if (add) {
+            set.add(key);
+        } else {
+            set.remove(key);
+        }
+    }
+
+    private static void check(SortedSet<Integer> set) {
+        int count = 0;
+        Integer previous = null;
+        for (Iterator<Integer> it = set.iterator(); it.hasNext(); count++) {
+            Integer element = it.next();
+            if (previous != null && previous >= element) {
+                throw new IllegalStateException("Set is not sorted at " + element);
+            }
+            previous = element;
+        }
+        if (count != set.size()) {
+            throw new IllegalStateException("Size " + set.size() + " differs from " + count + " elements");
+        }
+    }
+}
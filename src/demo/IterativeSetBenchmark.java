@@ -0,0 +1,146 @@
+package demo;
+
+import org.openjdk.jmh.annotations.*;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.RunnerException;
+import org.openjdk.jmh.runner.options.Options;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+import utils.AvlSet;
+import utils.AvlSetIterative;
+import utils.BstSet;
+import utils.BstSetIterative;
+import utils.SortedSet;
+
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Compares the recursive add, remove and clone of BstSet and AvlSet with the iterative
+ * implementations of BstSetIterative and AvlSetIterative, on shuffled and on sorted input.
+ * On sorted input BstSet degenerates into a list, so the recursive BstSet methods need one
+ * stack frame per element; with much more than 10000 elements they fail with
+ * StackOverflowError, which is why the sizes are kept below that.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@State(Scope.Benchmark)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(time = 1, timeUnit = TimeUnit.SECONDS)
+@Measurement(time = 1, timeUnit = TimeUnit.SECONDS)
+public class IterativeSetBenchmark {
+
+    @Param({"1000", "8000"})
+    public int elementCount;
+
+    @Param({"shuffled", "sorted"})
+    public String order;
+
+    Integer[] elements;
+    BstSet<Integer> bstRecursive;
+    BstSet<Integer> bstIterative;
+    AvlSet<Integer> avlRecursive;
+    AvlSet<Integer> avlIterative;
+
+    @Setup(Level.Trial)
+    public void generateElements() {
+        elements = new Integer[elementCount];
+        for (int i = 0; i < elementCount; i++) {
+            elements[i] = i;
+        }
+        if (order.equals("shuffled")) {
+            Random random = new Random(1);
+            for (int i = elementCount - 1; i > 0; i--) {
+                int j = random.nextInt(i + 1);
+                Integer t = elements[i];
+                elements[i] = elements[j];
+                elements[j] = t;
+            }
+        }
+        bstRecursive = addElements(new BstSet<>());
+        bstIterative = addElements(new BstSetIterative<>());
+        avlRecursive = addElements(new AvlSet<>());
+        avlIterative = addElements(new AvlSetIterative<>());
+    }
+
+    <S extends SortedSet<Integer>> S addElements(S set) {
+        for (Integer element : elements) {
+            set.add(element);
+        }
+        return set;
+    }
+
+    <S extends SortedSet<Integer>> S addRemoveElements(S set) {
+        addElements(set);
+        for (Integer element : elements) {
+            set.remove(element);
+        }
+        return set;
+    }
+
+    @org.openjdk.jmh.annotations.Benchmark
+    public BstSet<Integer> addBstRecursive() {
+        return addElements(new BstSet<>());
+    }
+
+    @org.openjdk.jmh.annotations.Benchmark
+    public BstSet<Integer> addBstIterative() {
+        return addElements(new BstSetIterative<>());
+    }
+
+    @org.openjdk.jmh.annotations.Benchmark
+    public AvlSet<Integer> addAvlRecursive() {
+        return addElements(new AvlSet<>());
+    }
+
+    @org.openjdk.jmh.annotations.Benchmark
+    public AvlSet<Integer> addAvlIterative() {
+        return addElements(new AvlSetIterative<>());
+    }
+
+    @org.openjdk.jmh.annotations.Benchmark
+    public BstSet<Integer> addRemoveBstRecursive() {
+        return addRemoveElements(new BstSet<>());
+    }
+
+    @org.openjdk.jmh.annotations.Benchmark
+    public BstSet<Integer> addRemoveBstIterative() {
+        return addRemoveElements(new BstSetIterative<>());
+    }
+
+    @org.openjdk.jmh.annotations.Benchmark
+    public AvlSet<Integer> addRemoveAvlRecursive() {
+        return addRemoveElements(new AvlSet<>());
+    }
+
+    @org.openjdk.jmh.annotations.Benchmark
+    public AvlSet<Integer> addRemoveAvlIterative() {
+        return addRemoveElements(new AvlSetIterative<>());
+    }
+
+    @org.openjdk.jmh.annotations.Benchmark
+    public Object cloneBstRecursive() throws CloneNotSupportedException {
+        return bstRecursive.clone();
+    }
+
+    @org.openjdk.jmh.annotations.Benchmark
+    public Object cloneBstIterative() throws CloneNotSupportedException {
+        return bstIterative.clone();
+    }
+
+    @org.openjdk.jmh.annotations.Benchmark
+    public Object cloneAvlRecursive() throws CloneNotSupportedException {
+        return avlRecursive.clone();
+    }
+
+    @org.openjdk.jmh.annotations.Benchmark
+    public Object cloneAvlIterative() throws CloneNotSupportedException {
+        return avlIterative.clone();
+    }
+
+    public static void main(String[] args) throws RunnerException {
+        Options opt = new OptionsBuilder()
+                .include(IterativeSetBenchmark.class.getSimpleName())
+                .forks(1)
+                .build();
+        new Runner(opt).run();
+    }
+}
@@ -2,7 +2,9 @@ package utils;
 
 import demo.Car;
 
+import java.util.Arrays;
 import java.util.Comparator;
+import java.util.List;
 
 /**
  * The AVL-tree implementation of a ordered set.
@@ -45,6 +47,7 @@ public class AvlSet<E extends Comparable<E>> extends BstSet<E> implements Sorted
     private AVLNode<E> addRecursive(E element, AVLNode<E> node) {
         if (node == null) {
             size++;
+            modCount++;
             return new AVLNode<>(element);
         }
         int cmp = c.compare(element, node.element);
@@ -63,9 +66,147 @@ public class AvlSet<E extends Comparable<E>> extends BstSet<E> implements Sorted
             }
         }
         node.height = Math.max(height(node.getLeft()), height(node.getRight())) + 1;
+        updateCount(node);
         return node;
     }
 
+    /**
+     * Creates a perfectly balanced AVL set from elements sorted by the comparator in O(n).
+     * Equal neighbouring elements are stored once.
+     *
+     * @param sorted elements in ascending order
+     * @param c      Comparator
+     * @return a new set
+     * @throws IllegalArgumentException if the elements are not in ascending order
+     */
+    public static <E extends Comparable<E>> AvlSet<E> fromSorted(E[] sorted, Comparator<? super E> c) {
+        AvlSet<E> set = new AvlSet<E>(c);
+        Object[] copy = Arrays.copyOf(sorted, sorted.length, Object[].class);
+        set.loadSorted(copy, distinctSorted(copy, c));
+        return set;
+    }
+
+    /**
+     * Creates a perfectly balanced AVL set from a list sorted by the comparator in O(n).
+     *
+     * @param sorted elements in ascending order
+     * @param c      Comparator
+     * @return a new set
+     * @throws IllegalArgumentException if the elements are not in ascending order
+     */
+    public static <E extends Comparable<E>> AvlSet<E> fromSorted(List<? extends E> sorted, Comparator<? super E> c) {
+        AvlSet<E> set = new AvlSet<E>(c);
+        Object[] copy = sorted.toArray();
+        set.loadSorted(copy, distinctSorted(copy, c));
+        return set;
+    }
+
+    /**
+     * Builds the AVL tree from sorted distinct elements, the node heights and sizes are set directly
+     */
+    @Override
+    @SuppressWarnings("unchecked")
+    protected BstNode<E> buildTree(Object[] sorted, int lo, int hi) {
+        if (lo > hi) {
+            return null;
+        }
+        int mid = (lo + hi) >>> 1;
+        AVLNode<E> node = new AVLNode<>((E) sorted[mid]);
+        node.left = buildTree(sorted, lo, mid - 1);
+        node.right = buildTree(sorted, mid + 1, hi);
+        updateNode(node);
+        return node;
+    }
+
+    @Override
+    protected BstNode<E> newNode(E element) {
+        return new AVLNode<>(element);
+    }
+
+    @Override
+    protected void restoreNode(BstNode<E> node) {
+        updateNode((AVLNode<E>) node);
+    }
+
+    @Override
+    protected BstNode<E> copyNode(BstNode<E> node) {
+        AVLNode<E> copy = new AVLNode<>(node.element);
+        copy.height = ((AVLNode<E>) node).height;
+        copy.count = node.count;
+        return copy;
+    }
+
+    @Override
+    protected boolean isHeightBalanced() {
+        return true;
+    }
+
+    /**
+     * Joins two AVL trees and a node. The taller tree is descended along its inner spine
+     * until a subtree of about the height of the other tree is found; the node joins
+     * them there and the tree is rebalanced on the way back up in O(|h(left) - h(right)|).
+     */
+    @Override
+    protected BstNode<E> join(BstNode<E> left, BstNode<E> node, BstNode<E> right) {
+        AVLNode<E> l = (AVLNode<E>) left;
+        AVLNode<E> k = (AVLNode<E>) node;
+        AVLNode<E> r = (AVLNode<E>) right;
+        if (height(l) > height(r) + 1) {
+            return joinRight(l, k, r);
+        }
+        if (height(r) > height(l) + 1) {
+            return joinLeft(l, k, r);
+        }
+        k.setLeft(l);
+        k.setRight(r);
+        updateNode(k);
+        return k;
+    }
+
+    private AVLNode<E> joinRight(AVLNode<E> tl, AVLNode<E> k, AVLNode<E> tr) {
+        AVLNode<E> c = tl.getRight();
+        if (height(c) <= height(tr) + 1) {
+            k.setLeft(c);
+            k.setRight(tr);
+            updateNode(k);
+            if (height(k) <= height(tl.getLeft()) + 1) {
+                tl.setRight(k);
+                updateNode(tl);
+                return tl;
+            }
+            tl.setRight(rightRotation(k));
+            return leftRotation(tl);
+        }
+        tl.setRight(joinRight(c, k, tr));
+        if (height(tl.getRight()) <= height(tl.getLeft()) + 1) {
+            updateNode(tl);
+            return tl;
+        }
+        return leftRotation(tl);
+    }
+
+    private AVLNode<E> joinLeft(AVLNode<E> tl, AVLNode<E> k, AVLNode<E> tr) {
+        AVLNode<E> c = tr.getLeft();
+        if (height(c) <= height(tl) + 1) {
+            k.setLeft(tl);
+            k.setRight(c);
+            updateNode(k);
+            if (height(k) <= height(tr.getRight()) + 1) {
+                tr.setLeft(k);
+                updateNode(tr);
+                return tr;
+            }
+            tr.setLeft(leftRotation(k));
+            return rightRotation(tr);
+        }
+        tr.setLeft(joinLeft(tl, k, c));
+        if (height(tr.getLeft()) <= height(tr.getRight()) + 1) {
+            updateNode(tr);
+            return tr;
+        }
+        return rightRotation(tr);
+    }
+
     /**
      * Removes an element from the set.
      *
@@ -123,11 +264,13 @@ public class AvlSet<E extends Comparable<E>> extends BstSet<E> implements Sorted
             } else {
                 n = (n.getLeft() != null) ? n.getLeft() : n.getRight();
                 size--;
+                modCount++;
             }
         }
 
         if (n != null) {
             n.height = Math.max(height(n.getLeft()), height(n.getRight())) + 1;
+            updateCount(n);
         }
         return n;
     }
@@ -146,6 +289,8 @@ public class AvlSet<E extends Comparable<E>> extends BstSet<E> implements Sorted
         n1.setRight(n2);
         n2.height = Math.max(height(n2.getLeft()), height(n2.getRight())) + 1;
         n1.height = Math.max(height(n1.getLeft()), height(n2)) + 1;
+        updateCount(n2);
+        updateCount(n1);
         return n1;
     }
 
@@ -155,10 +300,23 @@ public class AvlSet<E extends Comparable<E>> extends BstSet<E> implements Sorted
         n2.setLeft(n1);
         n1.height = Math.max(height(n1.getLeft()), height(n1.getRight())) + 1;
         n2.height = Math.max(height(n2.getRight()), height(n1)) + 1;
+        updateCount(n1);
+        updateCount(n2);
         return n2;
     }
 
+    /**
+     * Returns the car at the given position of the set order, or null if there is none.
+     * Tree sets answer by {@link BstSet#select(int)} in O(log n).
+     *
+     * @param carSet set of cars
+     * @param index  position, 0 for the first car
+     * @return car at the position or null
+     */
     public static Car getElement(SortedSet<Car> carSet, int index) {
+        if (carSet instanceof BstSet) {
+            return (index >= 0 && index < carSet.size()) ? ((BstSet<Car>) carSet).select(index) : null;
+        }
         int i = 0;
         if(index <= carSet.size()){
             for (Car car : carSet) {
@@ -187,7 +345,36 @@ public class AvlSet<E extends Comparable<E>> extends BstSet<E> implements Sorted
         return leftRotation(n1);
     }
 
-    private int height(AVLNode<E> n) {
+    /**
+     * Restores the balance of a node whose subtrees differ in height by at most 2,
+     * after one element was added below it or removed from below it. The height and
+     * the subtree size are recomputed.
+     *
+     * @param n node
+     * @return the root of the balanced subtree
+     */
+    protected AVLNode<E> rebalance(AVLNode<E> n) {
+        if (height(n.getLeft()) - height(n.getRight()) == 2) {
+            AVLNode<E> leftChild = n.getLeft();
+            return height(leftChild.getLeft()) >= height(leftChild.getRight()) ? rightRotation(n)
+                    : doubleRightRotation(n);
+        }
+        if (height(n.getRight()) - height(n.getLeft()) == 2) {
+            AVLNode<E> rightChild = n.getRight();
+            return height(rightChild.getRight()) >= height(rightChild.getLeft()) ? leftRotation(n)
+                    : doubleLeftRotation(n);
+        }
+        updateNode(n);
+        return n;
+    }
+
+    // Recomputes the height and the subtree size of the node from its children
+    private void updateNode(AVLNode<E> n) {
+        n.height = Math.max(height(n.getLeft()), height(n.getRight())) + 1;
+        updateCount(n);
+    }
+
+    protected int height(AVLNode<E> n) {
         return (n == null) ? -1 : n.height;
     }
 
@@ -196,7 +383,7 @@ public class AvlSet<E extends Comparable<E>> extends BstSet<E> implements Sorted
      *
      * @param <N> node element data type
      */
-    protected class AVLNode<N> extends BstNode<N> {
+    protected static class AVLNode<N> extends BstNode<N> {
 
         protected int height;
 
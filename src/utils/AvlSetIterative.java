@@ -0,0 +1,151 @@
+package utils;
+
+import java.util.Comparator;
+
+/**
+ * The class inherits the AvlSet class and overwrites the add, remove and clone methods
+ * with iterative implementations. The nodes on the search path are kept in a path buffer
+ * and are rebalanced from the bottom up. Recursion is left only where it is bounded by
+ * the height of the AVL tree, O(log n): in the split and join of the inherited set
+ * operations and where a balanced tree is built from sorted elements.
+ *
+ * @param <E> Type of the set element. Must implement the Comparable<E> interface, or
+ *            an object that implements Comparator<E> interface must be passed through the class constructor
+ */
+public class AvlSetIterative<E extends Comparable<E>> extends AvlSet<E> implements SortedSet<E> {
+
+    public AvlSetIterative() {
+        super();
+    }
+
+    public AvlSetIterative(Comparator<? super E> c) {
+        super(c);
+    }
+
+    /**
+     * Adds a new element to the set.
+     *
+     * @param element - element.
+     */
+    @Override
+    public void add(E element) {
+        if (element == null) {
+            throw new IllegalArgumentException("Element is null in add(E element)");
+        }
+
+        AVLNode<E>[] path = newPath();
+        boolean[] toLeft = new boolean[path.length];
+        int depth = 0;
+        AVLNode<E> node = (AVLNode<E>) root;
+        while (node != null) {
+            int cmp = c.compare(element, node.element);
+            if (cmp == 0) {
+                return;
+            }
+            path[depth] = node;
+            toLeft[depth++] = cmp < 0;
+            node = (cmp < 0) ? node.getLeft() : node.getRight();
+        }
+        size++;
+        modCount++;
+        root = rebalancePath(path, toLeft, depth, new AVLNode<>(element), 1);
+    }
+
+    /**
+     * Removes an element from the set. A node with two children takes the element
+     * of its successor, and the successor node is unlinked instead.
+     *
+     * @param element - element.
+     */
+    @Override
+    public void remove(E element) {
+        if (element == null) {
+            throw new IllegalArgumentException("Element is null in remove(E element)");
+        }
+
+        AVLNode<E>[] path = newPath();
+        boolean[] toLeft = new boolean[path.length];
+        int depth = 0;
+        AVLNode<E> node = (AVLNode<E>) root;
+        while (node != null) {
+            int cmp = c.compare(element, node.element);
+            if (cmp == 0) {
+                break;
+            }
+            path[depth] = node;
+            toLeft[depth++] = cmp < 0;
+            node = (cmp < 0) ? node.getLeft() : node.getRight();
+        }
+        if (node == null) {
+            return;
+        }
+
+        if (node.getLeft() != null && node.getRight() != null) {
+            path[depth] = node;
+            toLeft[depth++] = false;
+            AVLNode<E> successor = node.getRight();
+            while (successor.getLeft() != null) {
+                path[depth] = successor;
+                toLeft[depth++] = true;
+                successor = successor.getLeft();
+            }
+            node.element = successor.element;
+            node = successor;
+        }
+        size--;
+        modCount++;
+        root = rebalancePath(path, toLeft, depth, (node.getLeft() != null) ? node.getLeft() : node.getRight(), -1);
+    }
+
+    /**
+     * Replaces the child at the end of the path and rebalances the nodes of the path
+     * from the bottom up. When a node keeps its place and its height, nothing above it
+     * changes except the subtree sizes, so the remaining nodes only get the size change.
+     *
+     * @param path   nodes from the root down
+     * @param toLeft true if the path continues to the left child of the node
+     * @param depth  number of nodes in the path
+     * @param child  new subtree at the end of the path
+     * @param delta  change of the set size, 1 or -1
+     * @return new root of the tree
+     */
+    private BstNode<E> rebalancePath(AVLNode<E>[] path, boolean[] toLeft, int depth, AVLNode<E> child, int delta) {
+        for (int i = depth - 1; i >= 0; i--) {
+            AVLNode<E> parent = path[i];
+            int height = parent.height;
+            if (toLeft[i]) {
+                parent.setLeft(child);
+            } else {
+                parent.setRight(child);
+            }
+            child = rebalance(parent);
+            if (child == parent && child.height == height) {
+                for (int j = i - 1; j >= 0; j--) {
+                    path[j].count += delta;
+                }
+                return root;
+            }
+        }
+        return child;
+    }
+
+    // A path from the root to a leaf has at most height + 1 nodes
+    @SuppressWarnings({"unchecked", "rawtypes"})
+    private AVLNode<E>[] newPath() {
+        return new AVLNode[height((AVLNode<E>) root) + 2];
+    }
+
+    /**
+     * Creates and returns a copy of the set, the tree is copied without recursion.
+     *
+     * @return A copy of the set.
+     * @throws java.lang.CloneNotSupportedException
+     */
+    @Override
+    public Object clone() throws CloneNotSupportedException {
+        BstSet<E> cl = emptyCopy();
+        cl.root = cloneIterative(root);
+        cl.size = size;
+        return cl;
+    }
+}
@@ -0,0 +1,943 @@
+package utils;
+
+import java.lang.reflect.Array;
+import java.util.Arrays;
+import java.util.ConcurrentModificationException;
+import java.util.Comparator;
+import java.util.Iterator;
+import java.util.NoSuchElementException;
+import java.util.Spliterator;
+import java.util.Spliterators;
+
+/**
+ * The B+ tree implementation of an ordered set for large sets.
+ * <p>
+ * Every node keeps its keys in one contiguous array, so a lookup touches one node per
+ * level of a tree of height log_fanout(n) instead of one node per key, and the keys inside
+ * a node are found by binary search. All elements are stored in the leaves; inner nodes
+ * hold only separator keys. The leaves are linked in both directions, so iteration and
+ * range scans move from leaf to leaf without going back through the inner nodes.
+ * <p>
+ * Each node except the root is at least half full. The memory overhead is about one
+ * array slot per element plus one small node object per fanout / 2 .. fanout elements,
+ * compared with a node object with two pointers per element in BstSet and AvlSet.
+ *
+ * @param <E> Type of the set element. Must implement the Comparable<E> interface, or
+ *            an object that implements Comparator<E> interface must be passed through the class constructor
+ */
+public class BTreeSet<E extends Comparable<E>> implements SortedSet<E> {
+
+    // Fanout bounds, and the fanout used by the constructors without the parameter
+    public static final int MIN_FANOUT = 16;
+    public static final int MAX_FANOUT = 128;
+    public static final int DEFAULT_FANOUT = 64;
+
+    // Pointer to comparator
+    private final Comparator<? super E> c;
+    // Maximum number of elements in a leaf and of children of an inner node
+    private final int fanout;
+    // Root node, null if the set is empty
+    private Node root = null;
+    // The leftmost and the rightmost leaf
+    private Leaf first = null;
+    private Leaf last = null;
+    // Set size
+    private int size = 0;
+    // Number of structural modifications, checked by the iterators
+    private int modCount = 0;
+    // Separator key passed from a split node to its parent
+    private Object promoted;
+
+    /**
+     * Creates a set object, whereby comparator is defined by Comparable<E>
+     */
+    public BTreeSet() {
+        this(Comparator.naturalOrder());
+    }
+
+    /**
+     * Creates a set object with custom Comparator<E> comparator
+     *
+     * @param c Comparator
+     */
+    public BTreeSet(Comparator<? super E> c) {
+        this(c, DEFAULT_FANOUT);
+    }
+
+    /**
+     * Creates a set object with custom Comparator<E> comparator and node fanout
+     *
+     * @param c      Comparator
+     * @param fanout maximum number of elements in a leaf and of children of an inner node,
+     *               from MIN_FANOUT to MAX_FANOUT
+     */
+    public BTreeSet(Comparator<? super E> c, int fanout) {
+        if (fanout < MIN_FANOUT || fanout > MAX_FANOUT) {
+            throw new IllegalArgumentException("Fanout " + fanout + " is not in [" + MIN_FANOUT + ", " + MAX_FANOUT + "]");
+        }
+        this.c = c;
+        this.fanout = fanout;
+    }
+
+    /**
+     * Tree node: the sorted keys are keys[0..n-1]
+     */
+    private abstract static class Node {
+        Object[] keys;
+        int n;
+    }
+
+    /**
+     * Leaf node, the keys are the elements of the set
+     */
+    private static final class Leaf extends Node {
+        Leaf prev;
+        Leaf next;
+
+        Leaf(int fanout) {
+            keys = new Object[fanout + 1];
+        }
+    }
+
+    /**
+     * Inner node with n separator keys and n + 1 children. All keys of children[i] are
+     * less than keys[i], and all keys of children[i + 1] are greater than or equal to it.
+     */
+    private static final class Inner extends Node {
+        Node[] children;
+
+        Inner(int fanout) {
+            keys = new Object[fanout];
+            children = new Node[fanout + 1];
+        }
+    }
+
+    /**
+     * Checks if the set is empty.
+     *
+     * @return Returns true if the set is empty.
+     */
+    @Override
+    public boolean isEmpty() {
+        return size == 0;
+    }
+
+    /**
+     * @return Returns the number of elements in the set.
+     */
+    @Override
+    public int size() {
+        return size;
+    }
+
+    /**
+     * Clears the set.
+     */
+    @Override
+    public void clear() {
+        root = null;
+        first = null;
+        last = null;
+        size = 0;
+        modCount++;
+    }
+
+    /**
+     * Checks whether an element exists in the set.
+     *
+     * @param element - element of the set.
+     * @return true if an element exists in the set, else false.
+     */
+    @Override
+    public boolean contains(E element) {
+        if (element == null) {
+            throw new IllegalArgumentException("Element is null in contains(E element)");
+        }
+        Leaf leaf = findLeaf(element);
+        if (leaf == null) {
+            return false;
+        }
+        int i = lowerBound(leaf, element);
+        return i < leaf.n && c.compare(element, key(leaf, i)) == 0;
+    }
+
+    /**
+     * Checks if all elements of the input set exist in the set
+     *
+     * @param set input set
+     * @return true if every element of the input set exists in the set
+     */
+    @Override
+    public boolean containsAll(Set<E> set) {
+        for (E element : set) {
+            if (!contains(element)) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    /**
+     * Adds a new element to the set.
+     *
+     * @param element - element.
+     */
+    @Override
+    public void add(E element) {
+        if (element == null) {
+            throw new IllegalArgumentException("Element is null in add(E element)");
+        }
+        if (root == null) {
+            Leaf leaf = new Leaf(fanout);
+            leaf.keys[0] = element;
+            leaf.n = 1;
+            root = first = last = leaf;
+            size = 1;
+            modCount++;
+            return;
+        }
+        Node sibling = insert(root, element);
+        if (sibling != null) {
+            Inner newRoot = new Inner(fanout);
+            newRoot.keys[0] = promoted;
+            newRoot.children[0] = root;
+            newRoot.children[1] = sibling;
+            newRoot.n = 1;
+            root = newRoot;
+            promoted = null;
+        }
+    }
+
+    /**
+     * Inserts the element below the node. If the node overflows, it is split in halves
+     *
+     * @return the new right half of the node (its separator is left in promoted), or null
+     */
+    private Node insert(Node node, E element) {
+        if (node instanceof Leaf) {
+            Leaf leaf = (Leaf) node;
+            int i = lowerBound(leaf, element);
+            if (i < leaf.n && c.compare(element, key(leaf, i)) == 0) {
+                return null;
+            }
+            System.arraycopy(leaf.keys, i, leaf.keys, i + 1, leaf.n - i);
+            leaf.keys[i] = element;
+            leaf.n++;
+            size++;
+            modCount++;
+            return (leaf.n > fanout) ? splitLeaf(leaf) : null;
+        }
+        Inner inner = (Inner) node;
+        int i = childIndex(inner, element);
+        Node sibling = insert(inner.children[i], element);
+        if (sibling == null) {
+            return null;
+        }
+        System.arraycopy(inner.keys, i, inner.keys, i + 1, inner.n - i);
+        System.arraycopy(inner.children, i + 1, inner.children, i + 2, inner.n - i);
+        inner.keys[i] = promoted;
+        inner.children[i + 1] = sibling;
+        inner.n++;
+        return (inner.n >= fanout) ? splitInner(inner) : null;
+    }
+
+    private Leaf splitLeaf(Leaf leaf) {
+        int half = leaf.n / 2;
+        Leaf right = new Leaf(fanout);
+        right.n = leaf.n - half;
+        System.arraycopy(leaf.keys, half, right.keys, 0, right.n);
+        Arrays.fill(leaf.keys, half, leaf.n, null);
+        leaf.n = half;
+        right.next = leaf.next;
+        right.prev = leaf;
+        if (leaf.next != null) {
+            leaf.next.prev = right;
+        } else {
+            last = right;
+        }
+        leaf.next = right;
+        promoted = right.keys[0];
+        return right;
+    }
+
+    private Inner splitInner(Inner inner) {
+        int mid = inner.n / 2;
+        Inner right = new Inner(fanout);
+        right.n = inner.n - mid - 1;
+        System.arraycopy(inner.keys, mid + 1, right.keys, 0, right.n);
+        System.arraycopy(inner.children, mid + 1, right.children, 0, right.n + 1);
+        promoted = inner.keys[mid];
+        Arrays.fill(inner.keys, mid, inner.n, null);
+        Arrays.fill(inner.children, mid + 1, inner.n + 1, null);
+        inner.n = mid;
+        return right;
+    }
+
+    /**
+     * Adds all elements of the input set to the set. An empty set is built
+     * from the sorted input in O(n) with full leaves.
+     *
+     * @param set input set
+     */
+    @Override
+    public void addAll(Set<E> set) {
+        if (set.isEmpty() || set == this) {
+            return;
+        }
+        if (isEmpty()) {
+            Object[] elements = set.toArray();
+            loadSorted(elements, BstSet.sortDistinct(elements, c));
+            return;
+        }
+        for (E element : set) {
+            add(element);
+        }
+    }
+
+    /**
+     * Removes an element from the set.
+     *
+     * @param element - element.
+     */
+    @Override
+    public void remove(E element) {
+        if (element == null) {
+            throw new IllegalArgumentException("Element is null in remove(E element)");
+        }
+        if (root == null || !delete(root, element)) {
+            return;
+        }
+        size--;
+        modCount++;
+        if (root.n == 0) {
+            if (root instanceof Inner) {
+                root = ((Inner) root).children[0];
+            } else {
+                root = first = last = null;
+            }
+        }
+    }
+
+    /**
+     * Deletes the element below the node. A child that becomes less than half full
+     * takes a key from a sibling or is merged with it.
+     *
+     * @return true if the element was found
+     */
+    private boolean delete(Node node, E element) {
+        if (node instanceof Leaf) {
+            Leaf leaf = (Leaf) node;
+            int i = lowerBound(leaf, element);
+            if (i == leaf.n || c.compare(element, key(leaf, i)) != 0) {
+                return false;
+            }
+            System.arraycopy(leaf.keys, i + 1, leaf.keys, i, leaf.n - i - 1);
+            leaf.keys[--leaf.n] = null;
+            return true;
+        }
+        Inner inner = (Inner) node;
+        int i = childIndex(inner, element);
+        if (!delete(inner.children[i], element)) {
+            return false;
+        }
+        if (isUnderflow(inner.children[i])) {
+            fixUnderflow(inner, i);
+        }
+        return true;
+    }
+
+    // A leaf must keep fanout / 2 elements, an inner node fanout / 2 children
+    private boolean isUnderflow(Node node) {
+        return (node instanceof Leaf) ? node.n < fanout / 2 : node.n + 1 < fanout / 2;
+    }
+
+    private boolean canLend(Node node) {
+        return (node instanceof Leaf) ? node.n > fanout / 2 : node.n + 1 > fanout / 2;
+    }
+
+    private void fixUnderflow(Inner parent, int i) {
+        Node child = parent.children[i];
+        Node left = (i > 0) ? parent.children[i - 1] : null;
+        Node right = (i < parent.n) ? parent.children[i + 1] : null;
+        if (left != null && canLend(left)) {
+            borrowFromLeft(parent, i, left, child);
+        } else if (right != null && canLend(right)) {
+            borrowFromRight(parent, i, child, right);
+        } else if (left != null) {
+            merge(parent, i - 1);
+        } else {
+            merge(parent, i);
+        }
+    }
+
+    private void borrowFromLeft(Inner parent, int i, Node left, Node child) {
+        System.arraycopy(child.keys, 0, child.keys, 1, child.n);
+        if (child instanceof Leaf) {
+            child.keys[0] = left.keys[left.n - 1];
+            parent.keys[i - 1] = child.keys[0];
+        } else {
+            Inner l = (Inner) left;
+            Inner ch = (Inner) child;
+            System.arraycopy(ch.children, 0, ch.children, 1, ch.n + 1);
+            ch.keys[0] = parent.keys[i - 1];
+            ch.children[0] = l.children[l.n];
+            l.children[l.n] = null;
+            parent.keys[i - 1] = l.keys[l.n - 1];
+        }
+        left.keys[--left.n] = null;
+        child.n++;
+    }
+
+    private void borrowFromRight(Inner parent, int i, Node child, Node right) {
+        if (child instanceof Leaf) {
+            child.keys[child.n] = right.keys[0];
+            System.arraycopy(right.keys, 1, right.keys, 0, right.n - 1);
+            parent.keys[i] = right.keys[0];
+        } else {
+            Inner r = (Inner) right;
+            Inner ch = (Inner) child;
+            ch.keys[ch.n] = parent.keys[i];
+            ch.children[ch.n + 1] = r.children[0];
+            parent.keys[i] = r.keys[0];
+            System.arraycopy(r.keys, 1, r.keys, 0, r.n - 1);
+            System.arraycopy(r.children, 1, r.children, 0, r.n);
+            r.children[r.n] = null;
+        }
+        right.keys[--right.n] = null;
+        child.n++;
+    }
+
+    /**
+     * Merges children[i + 1] of the parent into children[i]
+     */
+    private void merge(Inner parent, int i) {
+        Node left = parent.children[i];
+        Node right = parent.children[i + 1];
+        if (left instanceof Leaf) {
+            Leaf l = (Leaf) left;
+            Leaf r = (Leaf) right;
+            System.arraycopy(r.keys, 0, l.keys, l.n, r.n);
+            l.n += r.n;
+            l.next = r.next;
+            if (r.next != null) {
+                r.next.prev = l;
+            } else {
+                last = l;
+            }
+        } else {
+            Inner l = (Inner) left;
+            Inner r = (Inner) right;
+            l.keys[l.n] = parent.keys[i];
+            System.arraycopy(r.keys, 0, l.keys, l.n + 1, r.n);
+            System.arraycopy(r.children, 0, l.children, l.n + 1, r.n + 1);
+            l.n += r.n + 1;
+        }
+        System.arraycopy(parent.keys, i + 1, parent.keys, i, parent.n - i - 1);
+        System.arraycopy(parent.children, i + 2, parent.children, i + 1, parent.n - i - 1);
+        parent.n--;
+        parent.keys[parent.n] = null;
+        parent.children[parent.n + 1] = null;
+    }
+
+    /**
+     * Only elements within the input set remain in the set. The tree is rebuilt from the kept elements.
+     *
+     * @param set input set
+     */
+    @Override
+    public void retainAll(Set<E> set) {
+        if (set == this) {
+            return;
+        }
+        Object[] kept = new Object[size];
+        int n = 0;
+        for (Leaf leaf = first; leaf != null; leaf = leaf.next) {
+            for (int i = 0; i < leaf.n; i++) {
+                if (set.contains(key(leaf, i))) {
+                    kept[n++] = leaf.keys[i];
+                }
+            }
+        }
+        if (n < size) {
+            loadSorted(kept, n);
+        }
+    }
+
+    /**
+     * Replaces the tree with a tree of the first n elements of the array, which must be
+     * sorted and distinct. The tree is built bottom up in O(n): the elements are spread
+     * evenly over the fewest leaves that can hold them, and so on for every level.
+     *
+     * @param sorted sorted distinct elements
+     * @param n      number of elements to use
+     */
+    void loadSorted(Object[] sorted, int n) {
+        clear();
+        if (n == 0) {
+            return;
+        }
+        int count = (n + fanout - 1) / fanout;
+        Node[] level = new Node[count];
+        Object[] mins = new Object[count];
+        Leaf previous = null;
+        for (int j = 0, from = 0; j < count; j++) {
+            int to = (int) ((long) n * (j + 1) / count);
+            Leaf leaf = new Leaf(fanout);
+            System.arraycopy(sorted, from, leaf.keys, 0, to - from);
+            leaf.n = to - from;
+            leaf.prev = previous;
+            if (previous != null) {
+                previous.next = leaf;
+            }
+            level[j] = leaf;
+            mins[j] = sorted[from];
+            previous = leaf;
+            from = to;
+        }
+        first = (Leaf) level[0];
+        last = previous;
+        while (count > 1) {
+            int parents = (count + fanout - 1) / fanout;
+            Node[] upper = new Node[parents];
+            Object[] upperMins = new Object[parents];
+            for (int j = 0, from = 0; j < parents; j++) {
+                int to = (int) ((long) count * (j + 1) / parents);
+                Inner inner = new Inner(fanout);
+                System.arraycopy(level, from, inner.children, 0, to - from);
+                System.arraycopy(mins, from + 1, inner.keys, 0, to - from - 1);
+                inner.n = to - from - 1;
+                upper[j] = inner;
+                upperMins[j] = mins[from];
+                from = to;
+            }
+            level = upper;
+            mins = upperMins;
+            count = parents;
+        }
+        root = level[0];
+        size = n;
+    }
+
+    /**
+     * Converts set to an array.
+     *
+     * @return Returns an array of set elements.
+     */
+    @Override
+    public Object[] toArray() {
+        Object[] array = new Object[size];
+        int k = 0;
+        for (Leaf leaf = first; leaf != null; leaf = leaf.next) {
+            System.arraycopy(leaf.keys, 0, array, k, leaf.n);
+            k += leaf.n;
+        }
+        return array;
+    }
+
+    @Override
+    @SuppressWarnings("unchecked")
+    public E[] toArray(Class<E> clasz) {
+        E[] array = (E[]) Array.newInstance(clasz, size);
+        int k = 0;
+        for (Leaf leaf = first; leaf != null; leaf = leaf.next) {
+            System.arraycopy(leaf.keys, 0, array, k, leaf.n);
+            k += leaf.n;
+        }
+        return array;
+    }
+
+    /**
+     * Forms an Inorder (ascending order) string of set elements.
+     *
+     * @return string of set elements
+     */
+    @Override
+    public String toString() {
+        StringBuilder sb = new StringBuilder();
+        for (E element : this) {
+            sb.append(element.toString()).append(System.lineSeparator());
+        }
+        return sb.toString();
+    }
+
+    /**
+     * Draws the tree one node per line, the children indented below their parent.
+     * An inner node shows its separator keys, a leaf its elements.
+     */
+    @Override
+    public String toVisualizedString(String dataCodeDelimiter) {
+        StringBuilder sb = new StringBuilder();
+        if (root == null) {
+            return ">" + BstSet.term[0] + BstSet.term[0];
+        }
+        draw(root, "", dataCodeDelimiter, sb);
+        return sb.toString();
+    }
+
+    private void draw(Node node, String indent, String dataCodeDelimiter, StringBuilder sb) {
+        sb.append(indent).append(node instanceof Leaf ? BstSet.endEdge : BstSet.term[2]).append(" [");
+        for (int i = 0; i < node.n; i++) {
+            String label = node.keys[i].toString();
+            int k = label.indexOf(dataCodeDelimiter);
+            sb.append(i == 0 ? "" : ", ").append(k > 0 ? label.substring(0, k) : label);
+        }
+        sb.append(']').append(System.lineSeparator());
+        if (node instanceof Inner) {
+            Inner inner = (Inner) node;
+            for (int i = 0; i <= inner.n; i++) {
+                draw(inner.children[i], indent + "  ", dataCodeDelimiter, sb);
+            }
+        }
+    }
+
+    /**
+     * Returns a set of the elements less than the element. The range is read by one
+     * scan over the linked leaves and the new tree is built in O(log n + k) for k elements.
+     *
+     * @param element - limit element.
+     * @return the elements less than the element
+     */
+    @Override
+    public SortedSet<E> headSet(E element) {
+        if (element == null) {
+            throw new IllegalArgumentException("Element is null in headSet(E element)");
+        }
+        return copyRange(null, element);
+    }
+
+    /**
+     * Returns a set of the elements from element1 (inclusive) to element2 (exclusive).
+     *
+     * @param element1 - start element.
+     * @param element2 - end element.
+     * @return the elements from element1 (inclusive) to element2 (exclusive)
+     */
+    @Override
+    public SortedSet<E> subSet(E element1, E element2) {
+        if (element1 == null || element2 == null) {
+            throw new IllegalArgumentException("Element is null in subSet(E element1, E element2)");
+        }
+        return copyRange(element1, element2);
+    }
+
+    /**
+     * Returns a set of the elements greater than or equal to the element.
+     *
+     * @param element - element of the set.
+     * @return the elements greater than or equal to the element
+     */
+    @Override
+    public SortedSet<E> tailSet(E element) {
+        if (element == null) {
+            throw new IllegalArgumentException("Element is null in tailSet(E element)");
+        }
+        return copyRange(element, null);
+    }
+
+    private SortedSet<E> copyRange(E fromInclusive, E toExclusive) {
+        BTreeSet<E> result = new BTreeSet<E>(c, fanout);
+        Object[] elements = new Object[Math.min(size, 16)];
+        int n = 0;
+        for (Iterator<E> it = rangeIterator(fromInclusive, true, toExclusive, false, true); it.hasNext(); ) {
+            if (n == elements.length) {
+                elements = Arrays.copyOf(elements, Math.min(size, n * 2));
+            }
+            elements[n++] = it.next();
+        }
+        result.loadSorted(elements, n);
+        return result;
+    }
+
+    /**
+     * Returns an iterator over the elements between the bounds, a null bound means no bound.
+     * The first element is found by one descent, the rest are read along the leaf links.
+     *
+     * @param lo          lower bound
+     * @param loInclusive whether an element equal to lo is included
+     * @param hi          upper bound
+     * @param hiInclusive whether an element equal to hi is included
+     * @param ascending   direction of the iteration
+     * @return iterator over the range
+     */
+    public Iterator<E> rangeIterator(E lo, boolean loInclusive, E hi, boolean hiInclusive, boolean ascending) {
+        return new IteratorBTree(lo, loInclusive, hi, hiInclusive, ascending);
+    }
+
+    @Override
+    public E floor(E element) {
+        if (element == null) {
+            throw new IllegalArgumentException("Element is null in floor(E element)");
+        }
+        return below(element, true);
+    }
+
+    @Override
+    public E ceiling(E element) {
+        if (element == null) {
+            throw new IllegalArgumentException("Element is null in ceiling(E element)");
+        }
+        return above(element, true);
+    }
+
+    @Override
+    public E lower(E element) {
+        if (element == null) {
+            throw new IllegalArgumentException("Element is null in lower(E element)");
+        }
+        return below(element, false);
+    }
+
+    @Override
+    public E higher(E element) {
+        if (element == null) {
+            throw new IllegalArgumentException("Element is null in higher(E element)");
+        }
+        return above(element, false);
+    }
+
+    // The greatest element below the bound, or equal to it if inclusive is true
+    private E below(E element, boolean inclusive) {
+        Leaf leaf = findLeaf(element);
+        if (leaf == null) {
+            return null;
+        }
+        int i = (inclusive ? upperBound(leaf, element) : lowerBound(leaf, element)) - 1;
+        if (i >= 0) {
+            return key(leaf, i);
+        }
+        return (leaf.prev == null) ? null : key(leaf.prev, leaf.prev.n - 1);
+    }
+
+    // The smallest element above the bound, or equal to it if inclusive is true
+    private E above(E element, boolean inclusive) {
+        Leaf leaf = findLeaf(element);
+        if (leaf == null) {
+            return null;
+        }
+        int i = inclusive ? lowerBound(leaf, element) : upperBound(leaf, element);
+        if (i < leaf.n) {
+            return key(leaf, i);
+        }
+        return (leaf.next == null) ? null : key(leaf.next, 0);
+    }
+
+    @Override
+    public E first() {
+        if (first == null) {
+            throw new NoSuchElementException("Set is empty");
+        }
+        return key(first, 0);
+    }
+
+    @Override
+    public E last() {
+        if (last == null) {
+            throw new NoSuchElementException("Set is empty");
+        }
+        return key(last, last.n - 1);
+    }
+
+    @Override
+    public E pollFirst() {
+        if (first == null) {
+            return null;
+        }
+        E element = key(first, 0);
+        remove(element);
+        return element;
+    }
+
+    @Override
+    public E pollLast() {
+        if (last == null) {
+            return null;
+        }
+        E element = key(last, last.n - 1);
+        remove(element);
+        return element;
+    }
+
+    /**
+     * Returns the leaf where the element is or would be stored, null if the set is empty
+     */
+    private Leaf findLeaf(E element) {
+        Node node = root;
+        while (node instanceof Inner) {
+            Inner inner = (Inner) node;
+            node = inner.children[childIndex(inner, element)];
+        }
+        return (Leaf) node;
+    }
+
+    // Index of the child of an inner node that covers the element: the number of separators <= element
+    private int childIndex(Inner inner, E element) {
+        return upperBound(inner, element);
+    }
+
+    // The first index whose key is >= element
+    private int lowerBound(Node node, E element) {
+        int lo = 0;
+        int hi = node.n;
+        while (lo < hi) {
+            int mid = (lo + hi) >>> 1;
+            if (c.compare(key(node, mid), element) < 0) {
+                lo = mid + 1;
+            } else {
+                hi = mid;
+            }
+        }
+        return lo;
+    }
+
+    // The first index whose key is > element
+    private int upperBound(Node node, E element) {
+        int lo = 0;
+        int hi = node.n;
+        while (lo < hi) {
+            int mid = (lo + hi) >>> 1;
+            if (c.compare(key(node, mid), element) <= 0) {
+                lo = mid + 1;
+            } else {
+                hi = mid;
+            }
+        }
+        return lo;
+    }
+
+    @SuppressWarnings("unchecked")
+    private E key(Node node, int i) {
+        return (E) node.keys[i];
+    }
+
+    /**
+     * Returns the natural iterator, it reads the leaves along their links.
+     *
+     * @return natural iterator.
+     */
+    @Override
+    public Iterator<E> iterator() {
+        return new IteratorBTree(null, false, null, false, true);
+    }
+
+    /**
+     * Returns the inverse iterator.
+     *
+     * @return inverse iterator.
+     */
+    @Override
+    public Iterator<E> descendingIterator() {
+        return new IteratorBTree(null, false, null, false, false);
+    }
+
+    /**
+     * @return spliterator over the elements in ascending order
+     */
+    @Override
+    public Spliterator<E> spliterator() {
+        return Spliterators.spliterator(iterator(), size,
+                Spliterator.DISTINCT | Spliterator.ORDERED | Spliterator.NONNULL);
+    }
+
+    /**
+     * Iterator over a range of the set: a position in a leaf that moves along the leaf links.
+     * It fails fast if the set is changed other than by its own remove().
+     */
+    private class IteratorBTree implements Iterator<E> {
+
+        // Specifies the direction of the iterator, true for ascending, false for descending
+        private final boolean ascending;
+        // The iteration stops after this element, null for no limit
+        private final E stop;
+        private final boolean stopInclusive;
+        private Leaf leaf;
+        private int index;
+        // The last returned element
+        private E last;
+        private int expectedModCount = modCount;
+
+        IteratorBTree(E lo, boolean loInclusive, E hi, boolean hiInclusive, boolean ascending) {
+            this.ascending = ascending;
+            this.stop = ascending ? hi : lo;
+            this.stopInclusive = ascending ? hiInclusive : loInclusive;
+            E start = ascending ? lo : hi;
+            if (start == null) {
+                leaf = ascending ? first : BTreeSet.this.last;
+                index = ascending ? 0 : (leaf == null ? -1 : leaf.n - 1);
+            } else {
+                seek(start, ascending ? loInclusive : hiInclusive);
+            }
+        }
+
+        // Positions the iterator on the first element not before start in the iteration order
+        private void seek(E start, boolean inclusive) {
+            leaf = findLeaf(start);
+            if (leaf == null) {
+                return;
+            }
+            if (ascending) {
+                index = inclusive ? lowerBound(leaf, start) : upperBound(leaf, start);
+                if (index == leaf.n) {
+                    leaf = leaf.next;
+                    index = 0;
+                }
+            } else {
+                index = (inclusive ? upperBound(leaf, start) : lowerBound(leaf, start)) - 1;
+                if (index < 0) {
+                    leaf = leaf.prev;
+                    index = (leaf == null) ? -1 : leaf.n - 1;
+                }
+            }
+        }
+
+        @Override
+        public boolean hasNext() {
+            if (leaf == null) {
+                return false;
+            }
+            if (stop == null) {
+                return true;
+            }
+            int cmp = c.compare(key(leaf, index), stop);
+            if (!ascending) {
+                cmp = -cmp;
+            }
+            return cmp < 0 || (cmp == 0 && stopInclusive);
+        }
+
+        @Override
+        public E next() {
+            if (modCount != expectedModCount) {
+                throw new ConcurrentModificationException();
+            }
+            if (!hasNext()) {
+                throw new NoSuchElementException();
+            }
+            last = key(leaf, index);
+            if (ascending) {
+                if (++index == leaf.n) {
+                    leaf = leaf.next;
+                    index = 0;
+                }
+            } else if (--index < 0) {
+                leaf = leaf.prev;
+                index = (leaf == null) ? -1 : leaf.n - 1;
+            }
+            return last;
+        }
+
+        @Override
+        public void remove() {
+            if (last == null) {
+                throw new IllegalStateException("error in remove Iterator");
+            }
+            if (modCount != expectedModCount) {
+                throw new ConcurrentModificationException();
+            }
+            BTreeSet.this.remove(last);
+            // The removal may have moved elements between leaves, so the position is found again
+            seek(last, false);
+            last = null;
+            expectedModCount = modCount;
+        }
+    }
+}
@@ -2,6 +2,7 @@ package utils;
 
 import java.lang.reflect.Array;
 import java.util.*;
+import java.util.function.Consumer;
 
 /**
  * The binary search tree implementation of a ordered set.
@@ -19,12 +20,42 @@ public class BstSet<E extends Comparable<E>> implements SortedSet<E>, Cloneable
     protected int size = 0;
     // Pointer to comparator
     protected Comparator<? super E> c;
+    // Number of structural modifications, checked by the iterators
+    protected int modCount = 0;
+    // Balancing policy of the tree
+    private final Balancing balancing;
+    // The greatest size since the last rebuild of the whole tree, used by the scapegoat policy
+    private int maxSize = 0;
+
+    /**
+     * Balancing policies of the plain binary search tree
+     */
+    public enum Balancing {
+        /**
+         * No balancing: the shape of the tree depends on the order of the added elements,
+         * sorted input gives a tree of height n.
+         */
+        NONE,
+        /**
+         * Scapegoat tree: when an added element lands deeper than log(n) / log(1 / ALPHA),
+         * the lowest ancestor whose one subtree holds more than ALPHA of its nodes is rebuilt
+         * into a perfectly balanced subtree; when removals shrink the set below ALPHA of its
+         * greatest size, the whole tree is rebuilt. The height stays O(log n) and add and
+         * remove take amortized O(log n) time. Only the existing subtree sizes are used,
+         * the nodes need no extra fields.
+         */
+        SCAPEGOAT
+    }
+
+    // Weight balance factor of the scapegoat policy, 0.5 < ALPHA < 1
+    static final double SCAPEGOAT_ALPHA = 0.7;
+    private static final double LOG_INVERSE_ALPHA = Math.log(1 / SCAPEGOAT_ALPHA);
 
     /**
      * Creates a set object, whereby comparator is defined by Comparable<E>
      */
     public BstSet() {
-        this.c = Comparator.naturalOrder();
+        this(Comparator.naturalOrder());
     }
 
     /**
@@ -33,7 +64,37 @@ public class BstSet<E extends Comparable<E>> implements SortedSet<E>, Cloneable
      * @param c Comparator
      */
     public BstSet(Comparator<? super E> c) {
+        this(c, Balancing.NONE);
+    }
+
+    /**
+     * Creates a set object with the given balancing policy, whereby comparator is defined by Comparable<E>
+     *
+     * @param balancing balancing policy
+     */
+    public BstSet(Balancing balancing) {
+        this(Comparator.naturalOrder(), balancing);
+    }
+
+    /**
+     * Creates a set object with custom Comparator<E> comparator and the given balancing policy
+     *
+     * @param c         Comparator
+     * @param balancing balancing policy
+     */
+    public BstSet(Comparator<? super E> c, Balancing balancing) {
+        if (balancing == null) {
+            throw new IllegalArgumentException("Balancing is null in BstSet(Comparator<? super E> c, Balancing balancing)");
+        }
         this.c = c;
+        this.balancing = balancing;
+    }
+
+    /**
+     * @return the balancing policy of the set
+     */
+    public Balancing getBalancing() {
+        return balancing;
     }
 
     /**
@@ -61,6 +122,8 @@ public class BstSet<E extends Comparable<E>> implements SortedSet<E>, Cloneable
     public void clear() {
         root = null;
         size = 0;
+        maxSize = 0;
+        modCount++;
     }
 
     /**
@@ -108,31 +171,315 @@ public class BstSet<E extends Comparable<E>> implements SortedSet<E>, Cloneable
         if (element == null) {
             throw new IllegalArgumentException("Element is null in add(E element)");
         }
+        if (balancing == Balancing.SCAPEGOAT) {
+            addScapegoat(element);
+            return;
+        }
 
         root = addRecursive(element, root);
     }
 
     /**
-     * Adds all elements of the input set to the set
+     * Adds an element by the scapegoat policy. The search path is kept in a buffer;
+     * if the new node is too deep, the buffer is searched upwards for the scapegoat.
+     */
+    private void addScapegoat(E element) {
+        BstNode<E>[] path = newNodeArray(32);
+        int depth = 0;
+        BstNode<E> node = root;
+        while (node != null) {
+            int cmp = c.compare(element, node.element);
+            if (cmp == 0) {
+                return;
+            }
+            if (depth == path.length) {
+                path = Arrays.copyOf(path, depth * 2);
+            }
+            path[depth++] = node;
+            node = (cmp < 0) ? node.left : node.right;
+        }
+
+        node = newNode(element);
+        if (depth == 0) {
+            root = node;
+        } else if (c.compare(element, path[depth - 1].element) < 0) {
+            path[depth - 1].left = node;
+        } else {
+            path[depth - 1].right = node;
+        }
+        for (int i = 0; i < depth; i++) {
+            path[i].count++;
+        }
+        size++;
+        modCount++;
+        maxSize = Math.max(maxSize, size);
+
+        if (depth > Math.log(size) / LOG_INVERSE_ALPHA) {
+            for (int i = depth - 1; i >= 0; i--) {
+                if (node.count > SCAPEGOAT_ALPHA * path[i].count) {
+                    BstNode<E> rebuilt = rebuild(path[i]);
+                    if (i == 0) {
+                        root = rebuilt;
+                    } else if (path[i - 1].left == path[i]) {
+                        path[i - 1].left = rebuilt;
+                    } else {
+                        path[i - 1].right = rebuilt;
+                    }
+                    return;
+                }
+                node = path[i];
+            }
+        }
+    }
+
+    /**
+     * Rebuilds the subtree into a perfectly balanced one in O(k) for k nodes.
+     * The existing nodes are relinked, no node is created.
+     *
+     * @param node root of the subtree
+     * @return root of the balanced subtree
+     */
+    protected BstNode<E> rebuild(BstNode<E> node) {
+        BstNode<E>[] nodes = newNodeArray(count(node));
+        BstNode<E>[] stack = newNodeArray(32);
+        int top = 0;
+        int n = 0;
+        while (node != null || top > 0) {
+            while (node != null) {
+                if (top == stack.length) {
+                    stack = Arrays.copyOf(stack, top * 2);
+                }
+                stack[top++] = node;
+                node = node.left;
+            }
+            node = stack[--top];
+            nodes[n++] = node;
+            node = node.right;
+        }
+        return relink(nodes, 0, n - 1);
+    }
+
+    private BstNode<E> relink(BstNode<E>[] nodes, int lo, int hi) {
+        if (lo > hi) {
+            return null;
+        }
+        int mid = (lo + hi) >>> 1;
+        BstNode<E> node = nodes[mid];
+        node.left = relink(nodes, lo, mid - 1);
+        node.right = relink(nodes, mid + 1, hi);
+        node.count = hi - lo + 1;
+        return node;
+    }
+
+    // Rebuilds the whole tree when the scapegoat policy finds that too many elements were removed
+    private void checkShrink() {
+        maxSize = Math.max(maxSize, size);
+        if (balancing == Balancing.SCAPEGOAT && size < SCAPEGOAT_ALPHA * maxSize) {
+            root = rebuild(root);
+            maxSize = size;
+        }
+    }
+
+    /**
+     * Adds all elements of the input set to the set (in-place union).
+     * If the set is empty, the tree is built from the input elements in O(n) after sorting.
+     * If the input is a tree set with the same comparator and both trees are height-balanced
+     * (AVL or red-black), the trees are merged by split and join in O(m log(n/m + 1))
+     * without modifying the input. A scapegoat tree is rebuilt from the merged elements
+     * of both sets in O(n + m), or takes the elements of a small input set one by one.
      *
      * @param set input set
      */
     @Override
     public void addAll(Set<E> set) {
-        if(set.isEmpty()) {
-            throw new IllegalArgumentException("set is empty in addAll(Set<E> set)");
+        if (set.isEmpty() || set == this) {
+            return;
+        }
+        if (isEmpty()) {
+            Object[] elements = set.toArray();
+            if (set instanceof BstSet && ((BstSet<E>) set).c == c) {
+                loadSorted(elements, elements.length);
+            } else {
+                loadSorted(elements, sortDistinct(elements, c));
+            }
+            return;
+        }
+        if (isJoinable(set)) {
+            int[] matches = {0};
+            root = asRoot(union(root, ((BstSet<E>) set).root, matches));
+            size += set.size() - matches[0];
+            modCount++;
+            checkShrink();
+            return;
+        }
+        if (isMergeable(set)) {
+            if (isSmall(set)) {
+                addEach(set);
+            } else {
+                merge((BstSet<E>) set, true, true, true);
+            }
+            return;
         }
+        addEach(set);
+    }
+
+    /**
+     * Adds the elements of the input set one by one.
+     *
+     * @param set input set
+     */
+    protected void addEach(Set<E> set) {
         for (E element : set) {
             add(element);
         }
+    }
+
+    // Arrays longer than this are sorted with Arrays.parallelSort
+    static final int PARALLEL_SORT_THRESHOLD = 1 << 14;
+
+    /**
+     * Replaces the contents of the set with the given elements, which may be in any order.
+     * The elements are sorted (in parallel for large arrays), duplicates are dropped
+     * and a balanced tree is built in O(n).
+     *
+     * @param elements elements of the new set
+     */
+    public void bulkLoad(E[] elements) {
+        Object[] copy = Arrays.copyOf(elements, elements.length, Object[].class);
+        loadSorted(copy, sortDistinct(copy, c));
+    }
+
+    /**
+     * Replaces the contents of the set with the given elements, which may be in any order.
+     *
+     * @param elements elements of the new set
+     * @see #bulkLoad(Comparable[])
+     */
+    public void bulkLoad(Collection<? extends E> elements) {
+        Object[] copy = elements.toArray();
+        loadSorted(copy, sortDistinct(copy, c));
+    }
+
+    /**
+     * Creates a perfectly balanced set from elements sorted by the comparator in O(n).
+     * Equal neighbouring elements are stored once.
+     *
+     * @param sorted elements in ascending order
+     * @param c      Comparator
+     * @return a new set
+     * @throws IllegalArgumentException if the elements are not in ascending order
+     */
+    public static <E extends Comparable<E>> BstSet<E> fromSorted(E[] sorted, Comparator<? super E> c) {
+        BstSet<E> set = new BstSet<E>(c);
+        Object[] copy = Arrays.copyOf(sorted, sorted.length, Object[].class);
+        set.loadSorted(copy, distinctSorted(copy, c));
+        return set;
+    }
+
+    /**
+     * Creates a perfectly balanced set from a list sorted by the comparator in O(n).
+     *
+     * @param sorted elements in ascending order
+     * @param c      Comparator
+     * @return a new set
+     * @throws IllegalArgumentException if the elements are not in ascending order
+     * @see #fromSorted(Comparable[], Comparator)
+     */
+    public static <E extends Comparable<E>> BstSet<E> fromSorted(List<? extends E> sorted, Comparator<? super E> c) {
+        BstSet<E> set = new BstSet<E>(c);
+        Object[] copy = sorted.toArray();
+        set.loadSorted(copy, distinctSorted(copy, c));
+        return set;
+    }
+
+    /**
+     * Sorts the first elements of the array and moves the distinct ones to its beginning.
+     *
+     * @return number of distinct elements
+     */
+    @SuppressWarnings("unchecked")
+    static <E> int sortDistinct(Object[] elements, Comparator<? super E> c) {
+        if (elements.length >= PARALLEL_SORT_THRESHOLD) {
+            Arrays.parallelSort((E[]) elements, c);
+        } else {
+            Arrays.sort((E[]) elements, c);
+        }
+        return distinctSorted(elements, c);
+    }
+
+    /**
+     * Moves the distinct elements of a sorted array to its beginning.
+     *
+     * @return number of distinct elements
+     * @throws IllegalArgumentException if the array is not sorted
+     */
+    @SuppressWarnings("unchecked")
+    static <E> int distinctSorted(Object[] sorted, Comparator<? super E> c) {
+        int n = 0;
+        for (int i = 0; i < sorted.length; i++) {
+            if (sorted[i] == null) {
+                throw new IllegalArgumentException("Element is null in bulk load");
+            }
+            if (n > 0) {
+                int cmp = c.compare((E) sorted[n - 1], (E) sorted[i]);
+                if (cmp > 0) {
+                    throw new IllegalArgumentException("Elements are not sorted at index " + i);
+                }
+                if (cmp == 0) {
+                    continue;
+                }
+            }
+            sorted[n++] = sorted[i];
+        }
+        return n;
+    }
 
+    /**
+     * Replaces the tree with a perfectly balanced tree of the first n elements of the array.
+     * The elements must be sorted and distinct.
+     *
+     * @param sorted sorted distinct elements
+     * @param n      number of elements to use
+     */
+    protected void loadSorted(Object[] sorted, int n) {
+        root = buildTree(sorted, 0, n - 1);
+        size = n;
+        maxSize = n;
+        modCount++;
+    }
 
+    /**
+     * Builds a perfectly balanced tree of the sorted distinct elements sorted[lo..hi]
+     *
+     * @return root of the new tree
+     */
+    @SuppressWarnings("unchecked")
+    protected BstNode<E> buildTree(Object[] sorted, int lo, int hi) {
+        if (lo > hi) {
+            return null;
+        }
+        int mid = (lo + hi) >>> 1;
+        BstNode<E> node = newNode((E) sorted[mid]);
+        node.left = buildTree(sorted, lo, mid - 1);
+        node.right = buildTree(sorted, mid + 1, hi);
+        node.count = hi - lo + 1;
+        return node;
+    }
 
+    /**
+     * Creates a detached node of the node type used by the set
+     *
+     * @param element node element
+     * @return new node
+     */
+    protected BstNode<E> newNode(E element) {
+        return new BstNode<>(element);
     }
 
     private BstNode<E> addRecursive(E element, BstNode<E> node) {
         if (node == null) {
             size++;
+            modCount++;
             return new BstNode<>(element);
         }
 
@@ -142,6 +489,7 @@ public class BstSet<E extends Comparable<E>> implements SortedSet<E>, Cloneable
         } else if (cmp > 0) {
             node.right = addRecursive(element, node.right);
         }
+        updateCount(node);
 
         return node;
     }
@@ -157,141 +505,842 @@ public class BstSet<E extends Comparable<E>> implements SortedSet<E>, Cloneable
             throw new IllegalArgumentException("Element is null in remove(E element)");
         }
         root = removeNode(root, element );
-
+        checkShrink();
     }
 
     /**
-     * Only elements within the input set remain in the set.
+     * Only elements within the input set remain in the set (in-place intersection).
+     * If the input is a tree set with the same comparator and both trees are height-balanced,
+     * the trees are intersected by split and join in O(m log(n/m + 1)) without modifying the input.
+     * A scapegoat tree is rebuilt from the common elements, found by a merge in O(n + m)
+     * or by a lookup of every element of a small input set.
      *
      * @param set input set
      */
     @Override
     public void retainAll(Set<E> set) {
-        if (set.isEmpty()) {
-            throw new IllegalArgumentException("set is empty in retainAll(Set<E> set)");
+        if (set == this) {
+            return;
+        }
+        if (isJoinable(set)) {
+            int[] matches = {0};
+            root = asRoot(intersection(root, ((BstSet<E>) set).root, matches));
+            size = matches[0];
+            modCount++;
+            checkShrink();
+            return;
         }
+        if (isMergeable(set)) {
+            if (isSmall(set)) {
+                retainFound(set);
+            } else {
+                merge((BstSet<E>) set, false, true, false);
+            }
+            return;
+        }
+        retainEach(set);
+    }
 
-        for (E element : set) {
-            if (!contains(element)) {
+    /**
+     * Removes the elements missing from the input set one by one.
+     *
+     * @param set input set
+     */
+    @SuppressWarnings("unchecked")
+    protected void retainEach(Set<E> set) {
+        for (Object o : toArray()) {
+            E element = (E) o;
+            if (!set.contains(element)) {
                 remove(element);
             }
         }
     }
 
-    private BstNode<E> removeRecursive(E element, BstNode<E> node) {
-        if (node == null) {
-
-            return null;
+    /**
+     * Removes all elements of the input set from the set (in-place difference).
+     * If the input is a tree set with the same comparator and both trees are height-balanced,
+     * the difference is computed by split and join in O(m log(n/m + 1)) without modifying the input.
+     * A scapegoat tree is rebuilt from the merged elements in O(n + m), or removes the
+     * elements of a small input set one by one.
+     *
+     * @param set input set
+     */
+    public void removeAll(Set<E> set) {
+        if (set == this) {
+            clear();
+            return;
         }
-
-        int cmp = c.compare(element, node.element);
-        if (cmp < 0) {
-            node.left = removeRecursive(element, node.left);
-        } else if (cmp > 0) {
-            node.right = removeRecursive(element, node.right);
+        if (isJoinable(set)) {
+            int[] matches = {0};
+            root = asRoot(difference(root, ((BstSet<E>) set).root, matches));
+            size -= matches[0];
+            modCount++;
+            checkShrink();
+            return;
         }
-
-        return node;
-
-
+        if (isMergeable(set)) {
+            if (isSmall(set)) {
+                removeEach(set);
+            } else {
+                merge((BstSet<E>) set, true, false, false);
+            }
+            return;
+        }
+        removeEach(set);
     }
 
     /**
-     * Removes node with the max value from the set
+     * Removes the elements of the input set one by one.
      *
-     * @param node starting root node
-     * @return
+     * @param set input set
      */
-    BstNode<E> removeMax(BstNode<E> node) {
-        if (node == null) {
-            return null;
-        } else if (node.right != null) {
-            node.right = removeMax(node.right);
-            return node;
-        } else {
-            return node.left;
+    protected void removeEach(Set<E> set) {
+        for (E element : set) {
+            remove(element);
         }
     }
 
     /**
-     * Returns the node with the maximum value
+     * Returns a new set with the elements of both sets. Neither set is modified;
+     * the result holds all n elements of this set, so the call costs at least O(n).
      *
-     * @param node starting root node
-     * @return
+     * @param set input set
+     * @return union of the sets
      */
-    BstNode<E> getMax(BstNode<E> node) {
-        return get(node, true);
+    public BstSet<E> union(Set<E> set) {
+        BstSet<E> result = copy();
+        result.addAll(set);
+        return result;
     }
 
     /**
-     * Returns the node with the minimum value
+     * Returns a new set with the elements present in both sets. Neither set is modified.
+     * If the input is a smaller tree set with the same comparator, the result is built
+     * from the elements of this set found for its elements in O(m log n), this set is not copied.
      *
-     * @param node starting root node
-     * @return
+     * @param set input set
+     * @return intersection of the sets
      */
-    BstNode<E> getMin(BstNode<E> node) {
-        return get(node, false);
+    public BstSet<E> intersection(Set<E> set) {
+        if (set instanceof BstSet && ((BstSet<E>) set).c == c && set.size() < size) {
+            Object[] found = new Object[set.size()];
+            BstSet<E> result = emptyCopy();
+            result.loadSorted(found, findAll(set, found));
+            return result;
+        }
+        BstSet<E> result = copy();
+        result.retainAll(set);
+        return result;
     }
 
-    private BstNode<E> get(BstNode<E> node, boolean findMax) {
-        BstNode<E> parent = null;
-        while (node != null) {
-            parent = node;
-            node = (findMax) ? node.right : node.left;
-        }
-        return parent;
+    /**
+     * Returns a new set with the elements of this set that are missing from the input set.
+     * Neither set is modified; the result is a copy of this set, O(n), reduced by removeAll.
+     *
+     * @param set input set
+     * @return difference of the sets
+     */
+    public BstSet<E> difference(Set<E> set) {
+        BstSet<E> result = copy();
+        result.removeAll(set);
+        return result;
     }
 
-    private E get(E element) {
-        if (element == null) {
-            throw new IllegalArgumentException("Element is null in get(E element)");
+    @SuppressWarnings("unchecked")
+    private BstSet<E> copy() {
+        try {
+            return (BstSet<E>) clone();
+        } catch (CloneNotSupportedException e) {
+            throw new IllegalStateException(e);
         }
+    }
 
-        BstNode<E> node = root;
-        while (node != null) {
-            int cmp = c.compare(element, node.element);
+    // The input tree is only read, so it may be of any BstSet kind with the same ordering.
+    // Split and join recurse as deep as the trees are high, so both must be height-balanced.
+    private boolean isJoinable(Set<E> set) {
+        return set instanceof BstSet && ((BstSet<E>) set).c == c
+                && isHeightBalanced() && ((BstSet<E>) set).isHeightBalanced();
+    }
 
-            if (cmp < 0) {
-                node = node.left;
-            } else if (cmp > 0) {
-                node = node.right;
-            } else {
-                return node.element;
-            }
-        }
+    /**
+     * Returns true if the tree keeps its height O(log n) under split and join. A scapegoat
+     * tree does not: its join rebuilds every unbalanced subtree, so a split costs O(n).
+     *
+     * @return true for the balanced trees with a join in O(log n)
+     */
+    protected boolean isHeightBalanced() {
+        return false;
+    }
 
-        return null;
+    // A scapegoat tree is combined with a tree set of the same ordering through their sorted elements
+    private boolean isMergeable(Set<E> set) {
+        return balancing == Balancing.SCAPEGOAT && set instanceof BstSet && ((BstSet<E>) set).c == c;
+    }
+
+    // O(m log n) element by element is cheaper than O(n + m) through the sorted elements
+    private boolean isSmall(Set<E> set) {
+        return (long) set.size() * (32 - Integer.numberOfLeadingZeros(size)) < size;
     }
 
     /**
-     * Converts set to an array.
+     * Rebuilds the tree from the merged sorted elements of both sets in O(n + m). The
+     * elements found only in this set, in both sets (the element of this set is kept) and
+     * only in the input set are kept as the flags say.
      *
-     * @return Returns an array of set elements.
+     * @param set      input set with the same comparator
+     * @param onlyThis whether the elements missing from the input set are kept
+     * @param both     whether the common elements are kept
+     * @param onlySet  whether the elements missing from this set are added
      */
-    @Override
-    public Object[] toArray() {
-        Object[] array = new Object[size];
+    @SuppressWarnings("unchecked")
+    private void merge(BstSet<E> set, boolean onlyThis, boolean both, boolean onlySet) {
+        Object[] a = toArray();
+        Object[] b = set.toArray();
+        Object[] merged = new Object[a.length + b.length];
         int i = 0;
-        for (E o : this) {
-            array[i++] = o;
+        int j = 0;
+        int n = 0;
+        while (i < a.length && j < b.length) {
+            int cmp = c.compare((E) a[i], (E) b[j]);
+            if (cmp < 0) {
+                if (onlyThis) {
+                    merged[n++] = a[i];
+                }
+                i++;
+            } else if (cmp > 0) {
+                if (onlySet) {
+                    merged[n++] = b[j];
+                }
+                j++;
+            } else {
+                if (both) {
+                    merged[n++] = a[i];
+                }
+                i++;
+                j++;
+            }
+        }
+        while (onlyThis && i < a.length) {
+            merged[n++] = a[i++];
+        }
+        while (onlySet && j < b.length) {
+            merged[n++] = b[j++];
+        }
+        if (n != size) {
+            loadSorted(merged, n);
         }
-        return array;
     }
 
-    public E[] toArray(Class<E> clasz) {
-        //Generic array
-        E[] array = (E[]) Array.newInstance(clasz, size);
-        int i = 0;
-        for (E o : this) {
-            array[i++] = o;
+    // Rebuilds the tree from its elements equal to the elements of a small input set ordered as this set
+    private void retainFound(Set<E> set) {
+        Object[] kept = new Object[set.size()];
+        int n = findAll(set, kept);
+        if (n != size) {
+            loadSorted(kept, n);
         }
-        return array;
+    }
+
+    // Puts the elements of this set equal to the elements of an input set ordered as this set
+    // into the array in ascending order, O(m log n); returns their number
+    private int findAll(Set<E> set, Object[] found) {
+        int n = 0;
+        for (E element : set) {
+            E stored = floor(element);
+            if (stored != null && c.compare(stored, element) == 0) {
+                found[n++] = stored;
+            }
+        }
+        return n;
     }
 
     /**
-     * Forms an Inorder (ascending order) string of set elements.
+     * Result of splitting a tree by an element: the tree of smaller elements,
+     * the detached node with an equal element (null if there is none) and the tree of greater elements.
      *
-     * @return string of set elements
+     * @param <N> node element data type
+     */
+    protected static class Split<N> {
+        protected BstNode<N> left;
+        protected BstNode<N> node;
+        protected BstNode<N> right;
+    }
+
+    /**
+     * Joins two trees and a node into one tree. Every element of the left tree must be
+     * smaller than the node element and every element of the right tree greater.
+     * A plain binary search tree just hangs both trees below the node; balanced trees
+     * override the method and rebalance along one spine in O(log n). By the scapegoat
+     * policy the joined tree is rebuilt if one side holds more than ALPHA of its nodes,
+     * which costs O(n), so scapegoat sets are not combined by split and join.
+     *
+     * @param left  tree of smaller elements
+     * @param node  detached middle node
+     * @param right tree of greater elements
+     * @return root of the joined tree
+     */
+    protected BstNode<E> join(BstNode<E> left, BstNode<E> node, BstNode<E> right) {
+        node.left = left;
+        node.right = right;
+        updateCount(node);
+        if (balancing == Balancing.SCAPEGOAT
+                && Math.max(count(left), count(right)) > SCAPEGOAT_ALPHA * node.count) {
+            return rebuild(node);
+        }
+        return node;
+    }
+
+    /**
+     * Joins two trees, every element of the left tree must be smaller than every element of the right tree
+     *
+     * @return root of the joined tree
+     */
+    protected BstNode<E> join2(BstNode<E> left, BstNode<E> right) {
+        if (left == null) {
+            return right;
+        }
+        Split<E> s = splitLast(left);
+        return join(s.left, s.node, right);
+    }
+
+    private Split<E> splitLast(BstNode<E> tree) {
+        if (tree.right == null) {
+            Split<E> s = new Split<>();
+            s.left = tree.left;
+            s.node = tree;
+            return s;
+        }
+        Split<E> s = splitLast(tree.right);
+        s.left = join(tree.left, tree, s.left);
+        return s;
+    }
+
+    /**
+     * Splits a tree by an element into the trees of smaller and greater elements.
+     * The nodes of the input tree are reused.
+     *
+     * @param tree    tree to split
+     * @param element split element
+     * @return split result
+     */
+    protected Split<E> split(BstNode<E> tree, E element) {
+        if (tree == null) {
+            return new Split<>();
+        }
+        BstNode<E> l = tree.left;
+        BstNode<E> r = tree.right;
+        int cmp = c.compare(element, tree.element);
+        Split<E> s;
+        if (cmp == 0) {
+            s = new Split<>();
+            s.left = l;
+            s.node = tree;
+            s.right = r;
+        } else if (cmp < 0) {
+            s = split(l, element);
+            s.right = join(s.right, tree, r);
+        } else {
+            s = split(r, element);
+            s.left = join(l, tree, s.left);
+        }
+        return s;
+    }
+
+    /**
+     * Union of the trees t1 and t2. The nodes of t1 are reused, t2 is only read.
+     *
+     * @param matches matches[0] is increased by the number of elements found in both trees
+     * @return root of the union
+     */
+    protected BstNode<E> union(BstNode<E> t1, BstNode<E> t2, int[] matches) {
+        if (t2 == null) {
+            return t1;
+        }
+        if (t1 == null) {
+            return copyTree(t2);
+        }
+        Split<E> s = split(t1, t2.element);
+        BstNode<E> l = union(s.left, t2.left, matches);
+        BstNode<E> r = union(s.right, t2.right, matches);
+        BstNode<E> node;
+        if (s.node != null) {
+            matches[0]++;
+            node = s.node;
+        } else {
+            node = newNode(t2.element);
+        }
+        return join(l, node, r);
+    }
+
+    /**
+     * Intersection of the trees t1 and t2. The nodes of t1 are reused, t2 is only read.
+     *
+     * @param matches matches[0] is increased by the number of elements found in both trees
+     * @return root of the intersection
+     */
+    protected BstNode<E> intersection(BstNode<E> t1, BstNode<E> t2, int[] matches) {
+        if (t1 == null || t2 == null) {
+            return null;
+        }
+        Split<E> s = split(t1, t2.element);
+        BstNode<E> l = intersection(s.left, t2.left, matches);
+        BstNode<E> r = intersection(s.right, t2.right, matches);
+        if (s.node != null) {
+            matches[0]++;
+            return join(l, s.node, r);
+        }
+        return join2(l, r);
+    }
+
+    /**
+     * Difference of the trees t1 and t2. The nodes of t1 are reused, t2 is only read.
+     *
+     * @param matches matches[0] is increased by the number of elements found in both trees
+     * @return root of the difference
+     */
+    protected BstNode<E> difference(BstNode<E> t1, BstNode<E> t2, int[] matches) {
+        if (t1 == null) {
+            return null;
+        }
+        if (t2 == null) {
+            return t1;
+        }
+        Split<E> s = split(t1, t2.element);
+        BstNode<E> l = difference(s.left, t2.left, matches);
+        BstNode<E> r = difference(s.right, t2.right, matches);
+        if (s.node != null) {
+            matches[0]++;
+        }
+        return join2(l, r);
+    }
+
+    /**
+     * Copies a tree of any kind into a balanced tree of the node type used by the set
+     */
+    protected BstNode<E> copyTree(BstNode<E> tree) {
+        List<E> elements = new ArrayList<>();
+        Deque<BstNode<E>> stack = new ArrayDeque<>();
+        BstNode<E> node = tree;
+        while (node != null || !stack.isEmpty()) {
+            while (node != null) {
+                stack.push(node);
+                node = node.left;
+            }
+            node = stack.pop();
+            elements.add(node.element);
+            node = node.right;
+        }
+        return buildTree(elements.toArray(), 0, elements.size() - 1);
+    }
+
+    /**
+     * Prepares the result of a split or join based operation to become the root of the set
+     */
+    protected BstNode<E> asRoot(BstNode<E> node) {
+        return node;
+    }
+
+    private BstNode<E> removeRecursive(E element, BstNode<E> node) {
+        if (node == null) {
+
+            return null;
+        }
+
+        int cmp = c.compare(element, node.element);
+        if (cmp < 0) {
+            node.left = removeRecursive(element, node.left);
+        } else if (cmp > 0) {
+            node.right = removeRecursive(element, node.right);
+        }
+
+        return node;
+
+
+    }
+
+    /**
+     * Removes node with the max value from the set
+     *
+     * @param node starting root node
+     * @return
+     */
+    BstNode<E> removeMax(BstNode<E> node) {
+        if (node == null) {
+            return null;
+        } else if (node.right != null) {
+            node.right = removeMax(node.right);
+            updateCount(node);
+            return node;
+        } else {
+            return node.left;
+        }
+    }
+
+    /**
+     * Returns the node with the maximum value
+     *
+     * @param node starting root node
+     * @return
+     */
+    BstNode<E> getMax(BstNode<E> node) {
+        return get(node, true);
+    }
+
+    /**
+     * Returns the node with the minimum value
+     *
+     * @param node starting root node
+     * @return
+     */
+    BstNode<E> getMin(BstNode<E> node) {
+        return get(node, false);
+    }
+
+    private BstNode<E> get(BstNode<E> node, boolean findMax) {
+        BstNode<E> parent = null;
+        while (node != null) {
+            parent = node;
+            node = (findMax) ? node.right : node.left;
+        }
+        return parent;
+    }
+
+    private E get(E element) {
+        if (element == null) {
+            throw new IllegalArgumentException("Element is null in get(E element)");
+        }
+
+        BstNode<E> node = root;
+        while (node != null) {
+            int cmp = c.compare(element, node.element);
+
+            if (cmp < 0) {
+                node = node.left;
+            } else if (cmp > 0) {
+                node = node.right;
+            } else {
+                return node.element;
+            }
+        }
+
+        return null;
+    }
+
+    /**
+     * Returns the greatest element less than or equal to the given element.
+     *
+     * @param element - element.
+     * @return the found element or null if there is no such element
+     */
+    @Override
+    public E floor(E element) {
+        if (element == null) {
+            throw new IllegalArgumentException("Element is null in floor(E element)");
+        }
+        return elementOf(lowerNode(element, true));
+    }
+
+    /**
+     * Returns the smallest element greater than or equal to the given element.
+     *
+     * @param element - element.
+     * @return the found element or null if there is no such element
+     */
+    @Override
+    public E ceiling(E element) {
+        if (element == null) {
+            throw new IllegalArgumentException("Element is null in ceiling(E element)");
+        }
+        return elementOf(higherNode(element, true));
+    }
+
+    /**
+     * Returns the greatest element strictly less than the given element.
+     *
+     * @param element - element.
+     * @return the found element or null if there is no such element
+     */
+    @Override
+    public E lower(E element) {
+        if (element == null) {
+            throw new IllegalArgumentException("Element is null in lower(E element)");
+        }
+        return elementOf(lowerNode(element, false));
+    }
+
+    /**
+     * Returns the smallest element strictly greater than the given element.
+     *
+     * @param element - element.
+     * @return the found element or null if there is no such element
+     */
+    @Override
+    public E higher(E element) {
+        if (element == null) {
+            throw new IllegalArgumentException("Element is null in higher(E element)");
+        }
+        return elementOf(higherNode(element, false));
+    }
+
+    /**
+     * @return the smallest element of the set
+     * @throws NoSuchElementException if the set is empty
+     */
+    @Override
+    public E first() {
+        if (root == null) {
+            throw new NoSuchElementException("Set is empty");
+        }
+        return getMin(root).element;
+    }
+
+    /**
+     * @return the greatest element of the set
+     * @throws NoSuchElementException if the set is empty
+     */
+    @Override
+    public E last() {
+        if (root == null) {
+            throw new NoSuchElementException("Set is empty");
+        }
+        return getMax(root).element;
+    }
+
+    /**
+     * Removes and returns the smallest element of the set.
+     *
+     * @return the removed element or null if the set is empty
+     */
+    @Override
+    public E pollFirst() {
+        if (root == null) {
+            return null;
+        }
+        E element = getMin(root).element;
+        remove(element);
+        return element;
+    }
+
+    /**
+     * Removes and returns the greatest element of the set.
+     *
+     * @return the removed element or null if the set is empty
+     */
+    @Override
+    public E pollLast() {
+        if (root == null) {
+            return null;
+        }
+        E element = getMax(root).element;
+        remove(element);
+        return element;
+    }
+
+    /**
+     * Finds the node with the greatest element below the given element in one descent:
+     * the last node where the search turned right is the answer.
+     *
+     * @param element   bound
+     * @param inclusive whether a node with an equal element is accepted
+     * @return the found node or null
+     */
+    BstNode<E> lowerNode(E element, boolean inclusive) {
+        BstNode<E> node = root;
+        BstNode<E> candidate = null;
+        while (node != null) {
+            int cmp = c.compare(element, node.element);
+            if (cmp == 0 && inclusive) {
+                return node;
+            }
+            if (cmp > 0) {
+                candidate = node;
+                node = node.right;
+            } else {
+                node = node.left;
+            }
+        }
+        return candidate;
+    }
+
+    /**
+     * Finds the node with the smallest element above the given element in one descent.
+     *
+     * @param element   bound
+     * @param inclusive whether a node with an equal element is accepted
+     * @return the found node or null
+     */
+    BstNode<E> higherNode(E element, boolean inclusive) {
+        BstNode<E> node = root;
+        BstNode<E> candidate = null;
+        while (node != null) {
+            int cmp = c.compare(element, node.element);
+            if (cmp == 0 && inclusive) {
+                return node;
+            }
+            if (cmp < 0) {
+                candidate = node;
+                node = node.left;
+            } else {
+                node = node.right;
+            }
+        }
+        return candidate;
+    }
+
+    private static <E> E elementOf(BstNode<E> node) {
+        return (node == null) ? null : node.element;
+    }
+
+    /**
+     * Returns the element at the given position of the ascending order in O(log n)
+     * for balanced trees, using the subtree sizes kept in the nodes.
+     *
+     * @param k position, 0 for the smallest element
+     * @return k-th smallest element
+     * @throws IndexOutOfBoundsException if k is not in [0, size)
+     */
+    public E select(int k) {
+        if (k < 0 || k >= size) {
+            throw new IndexOutOfBoundsException("Index " + k + " out of bounds for size " + size);
+        }
+        BstNode<E> node = root;
+        while (true) {
+            int leftCount = count(node.left);
+            if (k < leftCount) {
+                node = node.left;
+            } else if (k > leftCount) {
+                k -= leftCount + 1;
+                node = node.right;
+            } else {
+                return node.element;
+            }
+        }
+    }
+
+    /**
+     * Returns the number of set elements smaller than the element.
+     * The element does not have to be in the set.
+     *
+     * @param element - element.
+     * @return position the element has or would have in the ascending order
+     */
+    public int rank(E element) {
+        if (element == null) {
+            throw new IllegalArgumentException("Element is null in rank(E element)");
+        }
+        int rank = 0;
+        BstNode<E> node = root;
+        while (node != null) {
+            int cmp = c.compare(element, node.element);
+            if (cmp < 0) {
+                node = node.left;
+            } else if (cmp > 0) {
+                rank += count(node.left) + 1;
+                node = node.right;
+            } else {
+                return rank + count(node.left);
+            }
+        }
+        return rank;
+    }
+
+    /**
+     * Counts the elements from element1 (inclusive) to element2 (exclusive), the same range as
+     * {@link #subSet(Comparable, Comparable)}, without visiting them.
+     *
+     * @param element1 - start element.
+     * @param element2 - end element.
+     * @return number of elements in the range
+     */
+    public int countInRange(E element1, E element2) {
+        if (element1 == null || element2 == null) {
+            throw new IllegalArgumentException("Element is null in countInRange(E element1, E element2)");
+        }
+        return Math.max(rank(element2) - rank(element1), 0);
+    }
+
+    /**
+     * Returns the percentile of the set by the nearest-rank method:
+     * the smallest element such that at least p percent of the elements are not greater than it.
+     *
+     * @param p percent from 0 to 100
+     * @return element at the percentile
+     * @throws NoSuchElementException if the set is empty
+     */
+    public E percentile(double p) {
+        if (!(p >= 0 && p <= 100)) {
+            throw new IllegalArgumentException("Percent is out of range in percentile(double p): " + p);
+        }
+        if (size == 0) {
+            throw new NoSuchElementException("Set is empty");
+        }
+        int k = (int) Math.ceil(p / 100 * size) - 1;
+        return select(Math.max(k, 0));
+    }
+
+    /**
+     * Returns the median of the set, the lower middle element for an even size.
+     *
+     * @return median element
+     * @throws NoSuchElementException if the set is empty
+     */
+    public E median() {
+        if (size == 0) {
+            throw new NoSuchElementException("Set is empty");
+        }
+        return select((size - 1) / 2);
+    }
+
+    /**
+     * Returns the number of nodes in the subtree, 0 for an empty subtree
+     */
+    protected static int count(BstNode<?> node) {
+        return (node == null) ? 0 : node.count;
+    }
+
+    /**
+     * Recomputes the subtree size of the node from its children
+     */
+    protected static void updateCount(BstNode<?> node) {
+        node.count = count(node.left) + count(node.right) + 1;
+    }
+
+    /**
+     * Creates an array of nodes, used for the explicit stacks of the iterative traversals
+     */
+    @SuppressWarnings({"unchecked", "rawtypes"})
+    static <E> BstNode<E>[] newNodeArray(int length) {
+        return new BstNode[length];
+    }
+
+    /**
+     * Converts set to an array.
+     *
+     * @return Returns an array of set elements.
+     */
+    @Override
+    public Object[] toArray() {
+        Object[] array = new Object[size];
+        int i = 0;
+        for (E o : this) {
+            array[i++] = o;
+        }
+        return array;
+    }
+
+    public E[] toArray(Class<E> clasz) {
+        //Generic array
+        E[] array = (E[]) Array.newInstance(clasz, size);
+        int i = 0;
+        for (E o : this) {
+            array[i++] = o;
+        }
+        return array;
+    }
+
+    /**
+     * Forms an Inorder (ascending order) string of set elements.
+     *
+     * @return string of set elements
      */
     @Override
     public String toString() {
@@ -307,161 +1356,572 @@ public class BstSet<E extends Comparable<E>> implements SortedSet<E>, Cloneable
      * Box drawing symbols used for tree visualisation, see: unicode.org/charts/PDF/U2500.pdf
      * These are the 4 possible terminal symbols at the end of the tree branch
      */
-    private static final String[] term = {"\u2500", "\u2534", "\u252C", "\u253C"};
-    private static final String rightEdge = "\u250C";
-    private static final String leftEdge = "\u2514";
-    private static final String endEdge = "\u25CF";
-    private static final String vertical = "\u2502 ";
+    static final String[] term = {"\u2500", "\u2534", "\u252C", "\u253C"};
+    static final String rightEdge = "\u250C";
+    static final String leftEdge = "\u2514";
+    static final String endEdge = "\u25CF";
+    static final String vertical = "\u2502 ";
     private String horizontal;
 
     /*
      * Method for tree visualisation.
+     * The nodes are drawn in reverse inorder (right subtree, node, left subtree) with a stack
+     * of the nodes and their edges and indents, so degenerate trees are drawn as well.
      * @author E. Karčiauskas
      */
     @Override
     public String toVisualizedString(String dataCodeDelimiter) {
         horizontal = term[0] + term[0];
-        return root == null ? ">" + horizontal
-                : toTreeDraw(root, ">", "", dataCodeDelimiter);
+        if (root == null) {
+            return ">" + horizontal;
+        }
+        StringBuilder sb = new StringBuilder();
+        Deque<DrawnNode<E>> stack = new ArrayDeque<>();
+        DrawnNode<E> drawn = new DrawnNode<>(root, ">", "");
+        while (drawn != null || !stack.isEmpty()) {
+            while (drawn != null) {
+                stack.push(drawn);
+                BstNode<E> right = drawn.node.right;
+                String step = (drawn.edge.equals(leftEdge)) ? vertical : " ";
+                drawn = (right == null) ? null : new DrawnNode<>(right, rightEdge, drawn.indent + step);
+            }
+            drawn = stack.pop();
+            BstNode<E> node = drawn.node;
+            int t = (node.right != null) ? 1 : 0;
+            t = (node.left != null) ? t + 2 : t;
+            sb.append(drawn.indent).append(drawn.edge).append(horizontal).append(term[t]).append(endEdge).append(
+                    nodeLabel(node, dataCodeDelimiter)).append(System.lineSeparator());
+            String step = (drawn.edge.equals(rightEdge)) ? vertical : " ";
+            drawn = (node.left == null) ? null : new DrawnNode<>(node.left, leftEdge, drawn.indent + step);
+        }
+        return sb.toString();
+    }
+
+    // A node waiting to be drawn with the edge leading to it and its indent
+    private static final class DrawnNode<E> {
+
+        final BstNode<E> node;
+        final String edge;
+        final String indent;
+
+        DrawnNode(BstNode<E> node, String edge, String indent) {
+            this.node = node;
+            this.edge = edge;
+            this.indent = indent;
+        }
     }
 
-    private String toTreeDraw(BstNode<E> node, String edge, String indent, String dataCodeDelimiter) {
+    /**
+     * Returns the label printed for the node in the tree visualisation.
+     *
+     * @param node              visualised node
+     * @param dataCodeDelimiter delimiter after which the element string is cut
+     * @return node label
+     */
+    protected String nodeLabel(BstNode<E> node, String dataCodeDelimiter) {
+        return split(node.element.toString(), dataCodeDelimiter);
+    }
+
+    private String split(String s, String dataCodeDelimiter) {
+        int k = s.indexOf(dataCodeDelimiter);
+        if (k <= 0) {
+            return s;
+        }
+        return s.substring(0, k);
+    }
+
+    /**
+     * Creates and returns a copy of the set.
+     *
+     * @return A copy of the set.
+     * @throws java.lang.CloneNotSupportedException
+     */
+    @Override
+    public Object clone() throws CloneNotSupportedException {
+        BstSet<E> cl = (BstSet<E>) super.clone();
+        if (root == null) {
+            return cl;
+        }
+        // A tree that is not height-balanced may be degenerate, so it is copied without recursion
+        cl.root = isHeightBalanced() ? cloneRecursive(root) : cloneIterative(root);
+        cl.size = this.size;
+        return cl;
+    }
+
+    /**
+     * Creates an empty set of the same class with the same comparator
+     *
+     * @return empty set
+     */
+    @SuppressWarnings("unchecked")
+    protected BstSet<E> emptyCopy() {
+        try {
+            BstSet<E> cl = (BstSet<E>) super.clone();
+            cl.root = null;
+            cl.size = 0;
+            return cl;
+        } catch (CloneNotSupportedException e) {
+            throw new IllegalStateException(e);
+        }
+    }
+
+    protected BstNode<E> cloneRecursive(BstNode<E> node) {
         if (node == null) {
-            return "";
+            return null;
         }
-        String step = (edge.equals(leftEdge)) ? vertical : " ";
-        StringBuilder sb = new StringBuilder();
-        sb.append(toTreeDraw(node.right, rightEdge, indent + step, dataCodeDelimiter));
-        int t = (node.right != null) ? 1 : 0;
-        t = (node.left != null) ? t + 2 : t;
-        sb.append(indent).append(edge).append(horizontal).append(term[t]).append(endEdge).append(
-                split(node.element.toString(), dataCodeDelimiter)).append(System.lineSeparator());
-        step = (edge.equals(rightEdge)) ? vertical : " ";
-        sb.append(toTreeDraw(node.left, leftEdge, indent + step, dataCodeDelimiter));
-        return sb.toString();
+
+        BstNode<E> clone = copyNode(node);
+        clone.left = cloneRecursive(node.left);
+        clone.right = cloneRecursive(node.right);
+        return clone;
+    }
+
+    /**
+     * Copies the tree without recursion. The pairs of original and copied nodes whose
+     * children are not copied yet are kept in an array stack, which holds at most one
+     * pair per tree level, so any tree shape can be copied.
+     *
+     * @param node root of the copied tree
+     * @return root of the copy
+     */
+    protected BstNode<E> cloneIterative(BstNode<E> node) {
+        if (node == null) {
+            return null;
+        }
+        BstNode<E> clone = copyNode(node);
+        BstNode<E>[] originals = newNodeArray(16);
+        BstNode<E>[] copies = newNodeArray(16);
+        originals[0] = node;
+        copies[0] = clone;
+        int top = 1;
+        while (top > 0) {
+            top--;
+            BstNode<E> original = originals[top];
+            BstNode<E> copy = copies[top];
+            if (top + 2 > originals.length) {
+                originals = Arrays.copyOf(originals, originals.length * 2);
+                copies = Arrays.copyOf(copies, copies.length * 2);
+            }
+            if (original.left != null) {
+                copy.left = copyNode(original.left);
+                originals[top] = original.left;
+                copies[top++] = copy.left;
+            }
+            if (original.right != null) {
+                copy.right = copyNode(original.right);
+                originals[top] = original.right;
+                copies[top++] = copy.right;
+            }
+        }
+        return clone;
+    }
+
+    /**
+     * Copies a single node without its subtrees
+     *
+     * @param node copied node
+     * @return new node with the same element and subtree size
+     */
+    protected BstNode<E> copyNode(BstNode<E> node) {
+        BstNode<E> copy = new BstNode<>(node.element);
+        copy.count = node.count;
+        return copy;
     }
 
-    private String split(String s, String dataCodeDelimiter) {
-        int k = s.indexOf(dataCodeDelimiter);
-        if (k <= 0) {
-            return s;
-        }
-        return s.substring(0, k);
+    /**
+     * Returns the node state that a structure-preserving snapshot keeps besides the
+     * shape of the tree, 0 for a plain node
+     */
+    protected int nodeTag(BstNode<E> node) {
+        return 0;
     }
 
     /**
-     * Creates and returns a copy of the set.
-     *
-     * @return A copy of the set.
-     * @throws java.lang.CloneNotSupportedException
+     * Creates a detached node of a structure-preserving snapshot with its saved tag
      */
-    @Override
-    public Object clone() throws CloneNotSupportedException {
-        BstSet<E> cl = (BstSet<E>) super.clone();
-        if (root == null) {
-            return cl;
-        }
-        cl.root = cloneRecursive(root);
-        cl.size = this.size;
-        return cl;
+    protected BstNode<E> newNode(E element, int tag) {
+        return newNode(element);
     }
 
-    private BstNode<E> cloneRecursive(BstNode<E> node) {
-        if (node == null) {
-            return null;
-        }
+    /**
+     * Completes a restored node whose subtrees are already complete
+     */
+    protected void restoreNode(BstNode<E> node) {
+        updateCount(node);
+    }
 
-        BstNode<E> clone = new BstNode<>(node.element);
-        clone.left = cloneRecursive(node.left);
-        clone.right = cloneRecursive(node.right);
-        return clone;
+    // Replaces the tree with a restored tree of n nodes
+    void loadTree(BstNode<E> tree, int n) {
+        root = tree;
+        size = n;
+        maxSize = n;
+        modCount++;
     }
 
     /**
-     * Returns the subset comprising elements up to a limit defined in the parameter element in a sorted manner (natural order) excluding the element.
+     * Returns a view of the elements up to a limit defined in the parameter element excluding the element.
+     * The view is backed by the set: changes of the set are visible in the view and vice versa.
      *
      * @param element - limit element.
-     * @return the subset comprising elements up to a limit defined in the parameter element in a sorted manner (natural order) excluding the element.
+     * @return view of the elements less than the element.
      */
     @Override
-    public Set<E> headSet(E element) {
-        Set<E> resSet = new BstSet<>();
-        if(element == null){
+    public SortedSet<E> headSet(E element) {
+        if (element == null) {
             throw new IllegalArgumentException("Element is null in headSet(E element)");
         }
-
-        for(E e : this){
-            if(e.compareTo(element) < 0){
-                resSet.add(e);
-            }
-            else break;
-        }
-
-        return resSet;
+        return new RangeView(null, false, element, false);
     }
 
     /**
-     * Returns the subset comprising elements from element1 (inclusive) to element2 (exclusive) in a sorted manner (natural order).
+     * Returns a view of the elements from element1 (inclusive) to element2 (exclusive).
+     * The view is backed by the set: changes of the set are visible in the view and vice versa.
      *
      * @param element1 - start element.
      * @param element2 - end element.
-     * @return the subset comprising elements from element1 (inclusive) to element2 (exclusive) in a sorted manner (natural order).
+     * @return view of the elements from element1 (inclusive) to element2 (exclusive).
      */
     @Override
-    public Set<E> subSet(E element1, E element2) {
+    public SortedSet<E> subSet(E element1, E element2) {
         if (element1 == null || element2 == null) {
             throw new IllegalArgumentException("Element is null in subSet(E element1, E element2)");
         }
+        return new RangeView(element1, true, element2, false);
+    }
 
-        List<E> sortedList = new ArrayList<>();
-
-        for (E e : this) {
-            if (e.compareTo(element1) >= 0 && e.compareTo(element2) < 0) {
-                sortedList.add(e);
-            } else if (e.compareTo(element2) >= 0) {
-                break;
-            }
+    /**
+     * Returns a view of the elements starting from parameter element (inclusive) up to the end of the set.
+     * The view is backed by the set: changes of the set are visible in the view and vice versa.
+     *
+     * @param element - element of the set.
+     * @return view of the elements greater than or equal to the element.
+     */
+    @Override
+    public SortedSet<E> tailSet(E element) {
+        if (element == null) {
+            throw new IllegalArgumentException("Element is null in tailSet(E element)");
         }
+        return new RangeView(element, true, null, false);
+    }
 
-        BstSet<E> result = new BstSet<E>(this.c);
-        buildBalancedTree(result, sortedList, 0, sortedList.size() - 1);
-        return result;
+    /**
+     * Returns an iterator over the elements between the bounds, a null bound means no bound.
+     * The iterator descends to its first element in O(log n) and stops after the last element of the range.
+     *
+     * @param lo          lower bound
+     * @param loInclusive whether the lower bound belongs to the range
+     * @param hi          upper bound
+     * @param hiInclusive whether the upper bound belongs to the range
+     * @param ascending   iteration order
+     * @return range iterator
+     */
+    protected Iterator<E> rangeIterator(E lo, boolean loInclusive, E hi, boolean hiInclusive, boolean ascending) {
+        return ascending ? new IteratorBst(true, lo, loInclusive, hi, hiInclusive)
+                : new IteratorBst(false, hi, hiInclusive, lo, loInclusive);
     }
 
-    private void buildBalancedTree(BstSet<E> tree, List<E> sortedList, int start, int end) {
-        if (start > end) {
-            return;
+    /**
+     * Counts the elements less than the element, or not greater than it if inclusive is true
+     */
+    int countBelow(E element, boolean inclusive) {
+        int rank = 0;
+        BstNode<E> node = root;
+        while (node != null) {
+            int cmp = c.compare(element, node.element);
+            if (cmp < 0) {
+                node = node.left;
+            } else if (cmp > 0) {
+                rank += count(node.left) + 1;
+                node = node.right;
+            } else {
+                return rank + count(node.left) + (inclusive ? 1 : 0);
+            }
         }
-
-        int mid = start + (end - start) / 2;
-        tree.add(sortedList.get(mid));
-
-        buildBalancedTree(tree, sortedList, start, mid - 1);
-        buildBalancedTree(tree, sortedList, mid + 1, end);
+        return rank;
     }
 
     /**
-     * Returns the subset comprising elements starting from parameter element (inclusive) up to the end of the set in a sorted manner (natural order).
-     *
-     * @param element - element of the set.
-     * @return the subset comprising elements starting from parameter element (inclusive) up to the end of the set in a sorted manner (natural order).
+     * A live view of the elements of the set between two bounds, a null bound means no bound.
+     * The view keeps no elements: lookups and updates go to the tree, iterators seek to the
+     * lower bound in O(log n) and the size is computed from the subtree sizes in O(log n).
      */
-    @Override
-    public Set<E> tailSet(E element) {
-        if(element == null){
-            throw new IllegalArgumentException("Element is null in tailSet(E element)");
+    private class RangeView implements SortedSet<E> {
+
+        private final E lo;
+        private final boolean loInclusive;
+        private final E hi;
+        private final boolean hiInclusive;
+
+        RangeView(E lo, boolean loInclusive, E hi, boolean hiInclusive) {
+            this.lo = lo;
+            this.loInclusive = loInclusive;
+            this.hi = hi;
+            this.hiInclusive = hiInclusive;
+        }
+
+        private boolean tooLow(E element) {
+            if (lo == null) {
+                return false;
+            }
+            int cmp = c.compare(element, lo);
+            return cmp < 0 || (cmp == 0 && !loInclusive);
+        }
+
+        private boolean tooHigh(E element) {
+            if (hi == null) {
+                return false;
+            }
+            int cmp = c.compare(element, hi);
+            return cmp > 0 || (cmp == 0 && !hiInclusive);
+        }
+
+        private boolean inRange(E element) {
+            return !tooLow(element) && !tooHigh(element);
+        }
+
+        @Override
+        public boolean isEmpty() {
+            return firstOrNull() == null;
+        }
+
+        @Override
+        public int size() {
+            int below = (hi == null) ? BstSet.this.size : countBelow(hi, hiInclusive);
+            int before = (lo == null) ? 0 : countBelow(lo, !loInclusive);
+            return Math.max(below - before, 0);
+        }
+
+        @Override
+        @SuppressWarnings("unchecked")
+        public void clear() {
+            for (Object o : toArray()) {
+                BstSet.this.remove((E) o);
+            }
+        }
+
+        @Override
+        public void add(E element) {
+            if (element == null) {
+                throw new IllegalArgumentException("Element is null in add(E element)");
+            }
+            if (!inRange(element)) {
+                throw new IllegalArgumentException("Element is out of the view range in add(E element)");
+            }
+            BstSet.this.add(element);
+        }
+
+        @Override
+        public void addAll(Set<E> set) {
+            for (E element : set) {
+                add(element);
+            }
+        }
+
+        @Override
+        public void remove(E element) {
+            if (element == null) {
+                throw new IllegalArgumentException("Element is null in remove(E element)");
+            }
+            if (inRange(element)) {
+                BstSet.this.remove(element);
+            }
+        }
+
+        @Override
+        @SuppressWarnings("unchecked")
+        public void retainAll(Set<E> set) {
+            for (Object o : toArray()) {
+                E element = (E) o;
+                if (!set.contains(element)) {
+                    BstSet.this.remove(element);
+                }
+            }
+        }
+
+        @Override
+        public boolean contains(E element) {
+            if (element == null) {
+                throw new IllegalArgumentException("Element is null in contains(E element)");
+            }
+            return inRange(element) && BstSet.this.contains(element);
+        }
+
+        @Override
+        public boolean containsAll(Set<E> set) {
+            for (E element : set) {
+                if (!contains(element)) {
+                    return false;
+                }
+            }
+            return true;
+        }
+
+        @Override
+        public Object[] toArray() {
+            List<E> list = new ArrayList<>();
+            for (E element : this) {
+                list.add(element);
+            }
+            return list.toArray();
+        }
+
+        @Override
+        @SuppressWarnings("unchecked")
+        public E[] toArray(Class<E> clasz) {
+            Object[] elements = toArray();
+            E[] array = (E[]) Array.newInstance(clasz, elements.length);
+            System.arraycopy(elements, 0, array, 0, elements.length);
+            return array;
+        }
+
+        @Override
+        public String toVisualizedString(String dataCodeDelimiter) {
+            BstSet<E> copy = emptyCopy();
+            Object[] elements = toArray();
+            copy.loadSorted(elements, elements.length);
+            return copy.toVisualizedString(dataCodeDelimiter);
+        }
+
+        @Override
+        public String toString() {
+            StringBuilder sb = new StringBuilder();
+            for (E element : this) {
+                sb.append(element.toString()).append(System.lineSeparator());
+            }
+            return sb.toString();
+        }
+
+        @Override
+        public SortedSet<E> headSet(E element) {
+            if (element == null) {
+                throw new IllegalArgumentException("Element is null in headSet(E element)");
+            }
+            checkNarrower(element, false, "headSet(E element)");
+            return new RangeView(lo, loInclusive, element, false);
+        }
+
+        @Override
+        public SortedSet<E> subSet(E element1, E element2) {
+            if (element1 == null || element2 == null) {
+                throw new IllegalArgumentException("Element is null in subSet(E element1, E element2)");
+            }
+            checkNarrower(element1, true, "subSet(E element1, E element2)");
+            checkNarrower(element2, false, "subSet(E element1, E element2)");
+            return new RangeView(element1, true, element2, false);
+        }
+
+        @Override
+        public SortedSet<E> tailSet(E element) {
+            if (element == null) {
+                throw new IllegalArgumentException("Element is null in tailSet(E element)");
+            }
+            checkNarrower(element, true, "tailSet(E element)");
+            return new RangeView(element, true, hi, hiInclusive);
+        }
+
+        // A nested view may not reach outside of this view. An inclusive lower bound must be
+        // in the range, an exclusive upper bound may also be equal to either bound of the range.
+        private void checkNarrower(E bound, boolean lower, String method) {
+            boolean outside = lower ? !inRange(bound)
+                    : (lo != null && c.compare(bound, lo) < 0) || (hi != null && c.compare(bound, hi) > 0);
+            if (outside) {
+                throw new IllegalArgumentException("Element is out of the view range in " + method);
+            }
+        }
+
+        @Override
+        public Iterator<E> iterator() {
+            return rangeIterator(lo, loInclusive, hi, hiInclusive, true);
+        }
+
+        @Override
+        public Iterator<E> descendingIterator() {
+            return rangeIterator(lo, loInclusive, hi, hiInclusive, false);
+        }
+
+        private E firstOrNull() {
+            E element = (lo == null) ? (root == null ? null : getMin(root).element)
+                    : elementOf(higherNode(lo, loInclusive));
+            return (element == null || tooHigh(element)) ? null : element;
+        }
+
+        private E lastOrNull() {
+            E element = (hi == null) ? (root == null ? null : getMax(root).element)
+                    : elementOf(lowerNode(hi, hiInclusive));
+            return (element == null || tooLow(element)) ? null : element;
+        }
+
+        @Override
+        public E floor(E element) {
+            if (element == null) {
+                throw new IllegalArgumentException("Element is null in floor(E element)");
+            }
+            E found = tooHigh(element) ? lastOrNull() : BstSet.this.floor(element);
+            return (found == null || tooLow(found)) ? null : found;
+        }
+
+        @Override
+        public E ceiling(E element) {
+            if (element == null) {
+                throw new IllegalArgumentException("Element is null in ceiling(E element)");
+            }
+            E found = tooLow(element) ? firstOrNull() : BstSet.this.ceiling(element);
+            return (found == null || tooHigh(found)) ? null : found;
+        }
+
+        @Override
+        public E lower(E element) {
+            if (element == null) {
+                throw new IllegalArgumentException("Element is null in lower(E element)");
+            }
+            E found = tooHigh(element) ? lastOrNull() : BstSet.this.lower(element);
+            return (found == null || tooLow(found)) ? null : found;
+        }
+
+        @Override
+        public E higher(E element) {
+            if (element == null) {
+                throw new IllegalArgumentException("Element is null in higher(E element)");
+            }
+            E found = tooLow(element) ? firstOrNull() : BstSet.this.higher(element);
+            return (found == null || tooHigh(found)) ? null : found;
+        }
+
+        @Override
+        public E first() {
+            E element = firstOrNull();
+            if (element == null) {
+                throw new NoSuchElementException("Set is empty");
+            }
+            return element;
         }
 
-        Set<E> resSet = new BstSet<>();
+        @Override
+        public E last() {
+            E element = lastOrNull();
+            if (element == null) {
+                throw new NoSuchElementException("Set is empty");
+            }
+            return element;
+        }
 
-        for(E e : this){
-            if(e.compareTo(element) >= 0){
-                resSet.add(e);
+        @Override
+        public E pollFirst() {
+            E element = firstOrNull();
+            if (element != null) {
+                BstSet.this.remove(element);
             }
-            if (e.compareTo(element) < 0) break;
+            return element;
         }
 
-        return resSet;
+        @Override
+        public E pollLast() {
+            E element = lastOrNull();
+            if (element != null) {
+                BstSet.this.remove(element);
+            }
+            return element;
+        }
     }
 
     /**
@@ -484,50 +1944,186 @@ public class BstSet<E extends Comparable<E>> implements SortedSet<E>, Cloneable
         return new IteratorBst(false);
     }
 
+    /**
+     * Returns a spliterator that splits the set by element positions, using the subtree sizes.
+     * Every part knows its exact size, so parallel streams divide the work evenly.
+     *
+     * @return spliterator over the elements in ascending order
+     */
+    @Override
+    public Spliterator<E> spliterator() {
+        return new TreeSpliterator(0, size);
+    }
+
+    /**
+     * Spliterator over the elements with positions index..fence-1 of the ascending order.
+     * A split only halves the position range; the path to the first element is found
+     * by descending through the subtree sizes when the traversal starts.
+     */
+    private class TreeSpliterator implements Spliterator<E> {
+
+        private int index;
+        private final int fence;
+        private BstNode<E>[] stack;
+        private int top = -1;
+        private final int expectedModCount = modCount;
+
+        TreeSpliterator(int index, int fence) {
+            this.index = index;
+            this.fence = fence;
+        }
+
+        @Override
+        public Spliterator<E> trySplit() {
+            int mid = (index + fence) >>> 1;
+            if (top >= 0 || mid <= index) {
+                return null;
+            }
+            TreeSpliterator prefix = new TreeSpliterator(index, mid);
+            index = mid;
+            return prefix;
+        }
+
+        @Override
+        public boolean tryAdvance(Consumer<? super E> action) {
+            if (action == null) {
+                throw new NullPointerException();
+            }
+            if (index >= fence) {
+                return false;
+            }
+            if (modCount != expectedModCount) {
+                throw new ConcurrentModificationException();
+            }
+            action.accept(nextNode().element);
+            return true;
+        }
+
+        @Override
+        public void forEachRemaining(Consumer<? super E> action) {
+            if (action == null) {
+                throw new NullPointerException();
+            }
+            while (index < fence) {
+                action.accept(nextNode().element);
+            }
+            if (modCount != expectedModCount) {
+                throw new ConcurrentModificationException();
+            }
+        }
+
+        private BstNode<E> nextNode() {
+            if (top < 0) {
+                seekPosition(index);
+            }
+            BstNode<E> n = stack[top--];
+            for (BstNode<E> node = n.right; node != null; node = node.left) {
+                push(node);
+            }
+            index++;
+            return n;
+        }
+
+        // Puts on the stack the path to the element at position k and the ancestors still to be visited
+        private void seekPosition(int k) {
+            stack = newNodeArray(2 * (33 - Integer.numberOfLeadingZeros(size)));
+            BstNode<E> node = root;
+            while (node != null) {
+                int leftCount = count(node.left);
+                if (k < leftCount) {
+                    push(node);
+                    node = node.left;
+                } else if (k > leftCount) {
+                    k -= leftCount + 1;
+                    node = node.right;
+                } else {
+                    push(node);
+                    return;
+                }
+            }
+        }
+
+        private void push(BstNode<E> node) {
+            if (++top == stack.length) {
+                stack = Arrays.copyOf(stack, top * 2);
+            }
+            stack[top] = node;
+        }
+
+        @Override
+        public long estimateSize() {
+            return fence - index;
+        }
+
+        @Override
+        public int characteristics() {
+            return Spliterator.SIZED | Spliterator.SUBSIZED | Spliterator.SORTED | Spliterator.DISTINCT
+                    | Spliterator.ORDERED | Spliterator.NONNULL;
+        }
+
+        @Override
+        public Comparator<? super E> getComparator() {
+            // Natural order is reported as null, see Spliterator.getComparator
+            return c == Comparator.naturalOrder() ? null : c;
+        }
+    }
+
     /**
      * Internal iterator class. Iterators: ascending and
      * decreasing. The set is iterated by visiting each item once
-     * inorder. All visited items are stored on the stack.
-     * The stack is taken from the java.util package, but it is possible to create your own.
+     * inorder. The path to the next node is kept in an array stack
+     * preallocated for the height of a balanced tree; it grows only for degenerate trees.
+     * The iterator is fail-fast: a change of the set that was not made through
+     * the iterator makes next() throw ConcurrentModificationException.
      */
     private class IteratorBst implements Iterator<E> {
 
-        private final Stack<BstNode<E>> stack = new Stack<>();
+        private BstNode<E>[] stack;
+        private int top = 0;
         // Specifies the direction of the iterator, true for ascending, false for descending
         private final boolean ascending;
+        // The iteration stops after this element, null for no limit
+        private final E stop;
+        private final boolean stopInclusive;
         // Required for the remove() method.
-        private BstNode<E> lastInStack;
-        private BstNode<E> last;
+        private E last;
+        private int expectedModCount = modCount;
 
         IteratorBst(boolean ascendingOrder) {
+            this(ascendingOrder, null, false, null, false);
+        }
+
+        IteratorBst(boolean ascendingOrder, E start, boolean startInclusive, E stop, boolean stopInclusive) {
             this.ascending = ascendingOrder;
-            this.toStack(root);
+            this.stop = stop;
+            this.stopInclusive = stopInclusive;
+            // A red-black tree is at most 2 log2(n + 1) high, an AVL tree even lower
+            this.stack = newNodeArray(2 * (33 - Integer.numberOfLeadingZeros(size)));
+            if (start == null) {
+                toStack(root);
+            } else {
+                seek(start, startInclusive);
+            }
         }
 
         @Override
         public boolean hasNext() {
-            return !stack.empty();
+            return top > 0 && !pastStop(stack[top - 1].element);
         }
 
         @Override
-        public E next() {// If stack is empty
-            if (stack.empty()) {
-                lastInStack = root;
-                last = null;
-                return null;
-            } else {
-                // Returns the top element of the stack
-                BstNode<E> n = stack.pop();
-                // The last returned element is saved, as well as the last element in the stack.
-                // Needed for remove() method
-                lastInStack = stack.isEmpty() ? root : stack.peek();
-                last = n;
-                BstNode<E> node = ascending ? n.right : n.left;
-                // If ascending is true, the minimum element of the right sub-tree is searched,
-                // and all elements in the search path are placed on the stack
-                toStack(node);
-                return n.element;
+        public E next() {
+            if (modCount != expectedModCount) {
+                throw new ConcurrentModificationException();
             }
+            if (!hasNext()) {
+                throw new NoSuchElementException();
+            }
+            BstNode<E> n = stack[--top];
+            stack[top] = null;
+            last = n.element;
+            toStack(ascending ? n.right : n.left);
+            return last;
         }
 
         @Override
@@ -535,19 +2131,62 @@ public class BstSet<E extends Comparable<E>> implements SortedSet<E>, Cloneable
             if (last == null) {
                 throw new IllegalStateException("error in remove Iterator");
             }
-            root = removeNode(root, last.element);
-
-            stack.clear();
-            toStack(lastInStack);
+            if (modCount != expectedModCount) {
+                throw new ConcurrentModificationException();
+            }
+            BstSet.this.remove(last);
+            // Removal may move elements between nodes and rotate the tree, so the path
+            // to the next element is searched again from the root in O(log n)
+            top = 0;
+            seek(last, false);
+            expectedModCount = modCount;
             last = null;
         }
 
         private void toStack(BstNode<E> node) {
             while (node != null) {
-                stack.push(node);
+                push(node);
                 node = ascending ? node.left : node.right;
             }
         }
+
+        private void push(BstNode<E> node) {
+            if (top == stack.length) {
+                stack = Arrays.copyOf(stack, top * 2);
+            }
+            stack[top++] = node;
+        }
+
+        // Puts on the stack the path to the first element that follows the start in the iteration order
+        private void seek(E start, boolean inclusive) {
+            BstNode<E> node = root;
+            while (node != null) {
+                int cmp = c.compare(start, node.element);
+                if (!ascending) {
+                    cmp = -cmp;
+                }
+                if (cmp < 0 || (cmp == 0 && inclusive)) {
+                    push(node);
+                    if (cmp == 0) {
+                        return;
+                    }
+                    node = ascending ? node.left : node.right;
+                } else {
+                    node = ascending ? node.right : node.left;
+                }
+            }
+        }
+
+        private boolean pastStop(E element) {
+            if (stop == null) {
+                return false;
+            }
+            int cmp = c.compare(element, stop);
+            if (!ascending) {
+                cmp = -cmp;
+            }
+            return cmp > 0 || (cmp == 0 && !stopInclusive);
+        }
     }
 
     private BstNode<E> removeNode(BstNode<E> node, E element) {
@@ -556,7 +2195,7 @@ public class BstSet<E extends Comparable<E>> implements SortedSet<E>, Cloneable
             return null;
         }
 
-        int cmp = element.compareTo(node.element);
+        int cmp = c.compare(element, node.element);
         if (cmp < 0) {
             node.left = removeNode(node.left, element);
         } else if (cmp > 0) {
@@ -565,10 +2204,12 @@ public class BstSet<E extends Comparable<E>> implements SortedSet<E>, Cloneable
 
             if (node.left == null){
                 size--;
+                modCount++;
                 return node.right;
             }
             if (node.right == null){
                 size--;
+                modCount++;
                 return node.left;
 
             }
@@ -577,7 +2218,7 @@ public class BstSet<E extends Comparable<E>> implements SortedSet<E>, Cloneable
             node.element = successor.element;
             node.right = removeNode(node.right, successor.element);
         }
-
+        updateCount(node);
 
         return node;
     }
@@ -595,6 +2236,8 @@ public class BstSet<E extends Comparable<E>> implements SortedSet<E>, Cloneable
         protected BstNode<N> left;
         // Pointer to the right subtree
         protected BstNode<N> right;
+        // Number of nodes in the subtree rooted at this node
+        protected int count;
 
         protected BstNode() {
         }
@@ -603,6 +2246,7 @@ public class BstSet<E extends Comparable<E>> implements SortedSet<E>, Cloneable
             this.element = element;
             this.left = null;
             this.right = null;
+            this.count = 1;
         }
 
 
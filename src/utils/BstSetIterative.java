@@ -1,9 +1,15 @@
 package utils;
 
+import java.util.Arrays;
 import java.util.Comparator;
 
 /**
- * The class inherits the BstSet class and overwrites the add method with an iterative implementation
+ * The class inherits the BstSet class and overwrites the add, remove and clone methods
+ * with iterative implementations; the tree visualisation, the queries and the set
+ * operations of BstSet, which do not split and join a tree that is not height-balanced,
+ * are iterative as well. Recursion is left only where a balanced tree is built from
+ * sorted elements, O(log n) deep, so a degenerate tree (for example after adding sorted
+ * elements) cannot overflow the call stack.
  *
  * @param <E>
  * @author darius
@@ -29,30 +35,108 @@ public class BstSetIterative<E extends Comparable<E>> extends BstSet<E> implemen
             throw new IllegalArgumentException("Element is null in add(E element)");
         }
 
-        if (root == null) {
-            root = new BstNode<E>(element);
+        BstNode<E>[] path = newNodeArray(32);
+        int depth = 0;
+        int cmp = 0;
+        BstNode<E> node = root;
+        while (node != null) {
+            cmp = c.compare(element, node.element);
+            if (cmp == 0) {
+                return;
+            }
+            if (depth == path.length) {
+                path = Arrays.copyOf(path, depth * 2);
+            }
+            path[depth++] = node;
+            node = (cmp < 0) ? node.left : node.right;
+        }
+
+        node = new BstNode<E>(element);
+        if (depth == 0) {
+            root = node;
+        } else if (cmp < 0) {
+            path[depth - 1].left = node;
         } else {
-            BstNode<E> current = root;
-            BstNode<E> parent = null;
-            while (current != null) {
-                parent = current;
-                int cmp = c.compare(element, current.element);
-                if (cmp < 0) {
-                    current = current.left;
-                } else if (cmp > 0) {
-                    current = current.right;
-                } else {
-                    return;
-                }
+            path[depth - 1].right = node;
+        }
+        // The element is new, so every node on the search path gets one more node below it
+        for (int i = 0; i < depth; i++) {
+            path[i].count++;
+        }
+        size++;
+        modCount++;
+    }
+    /**
+     * Removes an element from the set. The search path is kept in a buffer; only if the
+     * node exists, the subtree sizes of the nodes on the path are decreased.
+     *
+     * @param element - element.
+     */
+    @Override
+    public void remove(E element) {
+        if (element == null) {
+            throw new IllegalArgumentException("Element is null in remove(E element)");
+        }
+
+        BstNode<E>[] path = newNodeArray(32);
+        int depth = 0;
+        BstNode<E> node = root;
+        while (node != null) {
+            int cmp = c.compare(element, node.element);
+            if (cmp == 0) {
+                break;
             }
+            if (depth == path.length) {
+                path = Arrays.copyOf(path, depth * 2);
+            }
+            path[depth++] = node;
+            node = (cmp < 0) ? node.left : node.right;
+        }
+        if (node == null) {
+            return;
+        }
 
-            int cmp = c.compare(element, parent.element);
-            if (cmp < 0) {
-                parent.left = new BstNode<E>(element);
-            } else if (cmp > 0) {
-                parent.right = new BstNode<E>(element);
+        for (int i = 0; i < depth; i++) {
+            path[i].count--;
+        }
+        BstNode<E> parent = (depth == 0) ? null : path[depth - 1];
+        node.count--;
+        if (node.left != null && node.right != null) {
+            // The node takes the element of its successor, which is removed instead
+            parent = node;
+            BstNode<E> successor = node.right;
+            while (successor.left != null) {
+                successor.count--;
+                parent = successor;
+                successor = successor.left;
             }
+            node.element = successor.element;
+            node = successor;
         }
-        size++;
+
+        BstNode<E> child = (node.left != null) ? node.left : node.right;
+        if (parent == null) {
+            root = child;
+        } else if (parent.left == node) {
+            parent.left = child;
+        } else {
+            parent.right = child;
+        }
+        size--;
+        modCount++;
+    }
+
+    /**
+     * Creates and returns a copy of the set, the tree is copied without recursion.
+     *
+     * @return A copy of the set.
+     * @throws java.lang.CloneNotSupportedException
+     */
+    @Override
+    public Object clone() throws CloneNotSupportedException {
+        BstSet<E> cl = emptyCopy();
+        cl.root = cloneIterative(root);
+        cl.size = size;
+        return cl;
     }
 }
@@ -0,0 +1,258 @@
+package utils;
+
+import utils.PathCopyingAvl.Node;
+
+import java.util.Comparator;
+import java.util.concurrent.locks.ReentrantLock;
+
+/**
+ * Thread-safe ordered set for read-mostly workloads.
+ * <p>
+ * The set is an AVL tree of immutable nodes (see {@link PathCopyingAvl}). Readers take
+ * the current root from a volatile field and search it without any locking: no node
+ * they can see is ever modified. Writers are serialized by a lock; a write copies the
+ * nodes on the search path and publishes the new root with one volatile write.
+ * Reads never block, not even while a write is in progress, and their cost does not
+ * depend on the number of reader threads.
+ * <p>
+ * Every read operation sees one consistent version of the set. Iterators and the
+ * range methods work on the version that was current when they were created.
+ *
+ * @param <E> Type of the set element. Must implement the Comparable<E> interface, or
+ *            an object that implements Comparator<E> interface must be passed through the class constructor
+ */
+public class ConcurrentSortedSet<E extends Comparable<E>> extends PathCopyingAvlSet<E> {
+
+    // Serializes the writers
+    private final ReentrantLock writeLock = new ReentrantLock();
+
+    /**
+     * Creates a set object, whereby comparator is defined by Comparable<E>
+     */
+    public ConcurrentSortedSet() {
+        this(Comparator.naturalOrder());
+    }
+
+    /**
+     * Creates a set object with custom Comparator<E> comparator
+     *
+     * @param c Comparator
+     */
+    public ConcurrentSortedSet(Comparator<? super E> c) {
+        super(c, null);
+    }
+
+    private ConcurrentSortedSet(Comparator<? super E> c, Node<E> root) {
+        super(c, root);
+    }
+
+    /**
+     * Clears the set.
+     */
+    @Override
+    public void clear() {
+        writeLock.lock();
+        try {
+            root = null;
+        } finally {
+            writeLock.unlock();
+        }
+    }
+
+    /**
+     * Adds a new element to the set.
+     *
+     * @param element - element.
+     */
+    @Override
+    public void add(E element) {
+        if (element == null) {
+            throw new IllegalArgumentException("Element is null in add(E element)");
+        }
+        writeLock.lock();
+        try {
+            Node<E> current = root;
+            Node<E> updated = PathCopyingAvl.insert(current, element, c);
+            if (updated != current) {
+                root = updated;
+            }
+        } finally {
+            writeLock.unlock();
+        }
+    }
+
+    /**
+     * Adds all elements of the input set to the set. The readers see either none
+     * or all of the new elements.
+     *
+     * @param set input set
+     */
+    @Override
+    public void addAll(Set<E> set) {
+        if (set == this) {
+            return;
+        }
+        writeLock.lock();
+        try {
+            Node<E> updated = root;
+            for (E element : set) {
+                if (element == null) {
+                    throw new IllegalArgumentException("Element is null in addAll(Set<E> set)");
+                }
+                updated = PathCopyingAvl.insert(updated, element, c);
+            }
+            root = updated;
+        } finally {
+            writeLock.unlock();
+        }
+    }
+
+    /**
+     * Removes an element from the set.
+     *
+     * @param element - element.
+     */
+    @Override
+    public void remove(E element) {
+        if (element == null) {
+            throw new IllegalArgumentException("Element is null in remove(E element)");
+        }
+        writeLock.lock();
+        try {
+            Node<E> current = root;
+            Node<E> updated = PathCopyingAvl.remove(current, element, c);
+            if (updated != current) {
+                root = updated;
+            }
+        } finally {
+            writeLock.unlock();
+        }
+    }
+
+    /**
+     * Only elements within the input set remain in the set. The readers see the set
+     * either before or after the whole operation.
+     *
+     * @param set input set
+     */
+    @Override
+    public void retainAll(Set<E> set) {
+        if (set == this) {
+            return;
+        }
+        writeLock.lock();
+        try {
+            root = retained(root, set);
+        } finally {
+            writeLock.unlock();
+        }
+    }
+
+    /**
+     * Returns a set of the elements less than the element, taken from the current version.
+     * The result is independent of this set; it shares the subtrees and is built in O(log n).
+     *
+     * @param element - limit element.
+     * @return the elements less than the element
+     */
+    @Override
+    public SortedSet<E> headSet(E element) {
+        if (element == null) {
+            throw new IllegalArgumentException("Element is null in headSet(E element)");
+        }
+        return copyRange(null, element);
+    }
+
+    /**
+     * Returns a set of the elements from element1 (inclusive) to element2 (exclusive),
+     * taken from the current version.
+     *
+     * @param element1 - start element.
+     * @param element2 - end element.
+     * @return the elements from element1 (inclusive) to element2 (exclusive)
+     */
+    @Override
+    public SortedSet<E> subSet(E element1, E element2) {
+        if (element1 == null || element2 == null) {
+            throw new IllegalArgumentException("Element is null in subSet(E element1, E element2)");
+        }
+        return copyRange(element1, element2);
+    }
+
+    /**
+     * Returns a set of the elements greater than or equal to the element, taken from the current version.
+     *
+     * @param element - element of the set.
+     * @return the elements greater than or equal to the element
+     */
+    @Override
+    public SortedSet<E> tailSet(E element) {
+        if (element == null) {
+            throw new IllegalArgumentException("Element is null in tailSet(E element)");
+        }
+        return copyRange(element, null);
+    }
+
+    private SortedSet<E> copyRange(E fromInclusive, E toExclusive) {
+        Node<E> range = root;
+        if (fromInclusive != null) {
+            range = PathCopyingAvl.tailTree(range, fromInclusive, true, c);
+        }
+        if (toExclusive != null) {
+            range = PathCopyingAvl.headTree(range, toExclusive, false, c);
+        }
+        return new ConcurrentSortedSet<E>(c, range);
+    }
+
+    /**
+     * Returns the current version of the set as a persistent set in O(1) without locking.
+     * The snapshot shares the nodes with this set and does not change when the set changes.
+     *
+     * @return snapshot of the current version
+     */
+    public PersistentAvlSet<E> snapshot() {
+        return new PersistentAvlSet<E>(c, root);
+    }
+
+    /**
+     * Removes and returns the smallest element as one atomic operation.
+     *
+     * @return the removed element or null if the set is empty
+     */
+    @Override
+    public E pollFirst() {
+        writeLock.lock();
+        try {
+            Node<E> current = root;
+            Node<E> node = PathCopyingAvl.min(current);
+            if (node == null) {
+                return null;
+            }
+            root = PathCopyingAvl.remove(current, node.element, c);
+            return node.element;
+        } finally {
+            writeLock.unlock();
+        }
+    }
+
+    /**
+     * Removes and returns the greatest element as one atomic operation.
+     *
+     * @return the removed element or null if the set is empty
+     */
+    @Override
+    public E pollLast() {
+        writeLock.lock();
+        try {
+            Node<E> current = root;
+            Node<E> node = PathCopyingAvl.max(current);
+            if (node == null) {
+                return null;
+            }
+            root = PathCopyingAvl.remove(current, node.element, c);
+            return node.element;
+        } finally {
+            writeLock.unlock();
+        }
+    }
+}
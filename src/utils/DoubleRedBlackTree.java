@@ -0,0 +1,249 @@
+package utils;
+
+import java.util.Arrays;
+import java.util.NoSuchElementException;
+import java.util.PrimitiveIterator;
+import java.util.function.DoubleConsumer;
+
+/**
+ * Red-black tree of unboxed double keys with set semantics.
+ * Keys are ordered by {@link Double#compare}, so -0.0 and 0.0 are distinct and NaN is the largest key.
+ * The nodes are kept in parallel arrays (see {@link PrimitiveRedBlackTree}),
+ * so insert, delete and lookups do not allocate once the arrays have grown.
+ */
+public class DoubleRedBlackTree extends PrimitiveRedBlackTree {
+
+    private double[] keys;
+
+    public DoubleRedBlackTree() {
+        this(DEFAULT_CAPACITY);
+    }
+
+    /**
+     * Creates a tree with storage preallocated for the given number of keys
+     *
+     * @param initialCapacity expected number of keys
+     */
+    public DoubleRedBlackTree(int initialCapacity) {
+        super(initialCapacity);
+        keys = new double[left.length];
+    }
+
+    @Override
+    protected void growKeys(int capacity) {
+        keys = Arrays.copyOf(keys, capacity);
+    }
+
+    /**
+     * Inserts the key into the tree.
+     *
+     * @param key key to insert
+     * @return true if the key was inserted, false if it already exists
+     */
+    public boolean insert(double key) {
+        int p = NIL;
+        int x = root;
+        int cmp = 0;
+        while (x != NIL) {
+            p = x;
+            cmp = Double.compare(key, keys[x]);
+            if (cmp == 0) {
+                return false;
+            }
+            x = (cmp < 0) ? left[x] : right[x];
+        }
+        int node = allocate();
+        keys[node] = key;
+        insertAt(node, p, cmp);
+        return true;
+    }
+
+    /**
+     * Removes the key from the tree.
+     *
+     * @param key key to remove
+     * @return true if the key was removed, false if it does not exist
+     */
+    public boolean delete(double key) {
+        int node = findNode(key);
+        if (node == NIL) {
+            return false;
+        }
+        deleteNode(node);
+        return true;
+    }
+
+    /**
+     * Checks whether the key exists in the tree.
+     *
+     * @param key key
+     * @return true if the key exists
+     */
+    public boolean contains(double key) {
+        return findNode(key) != NIL;
+    }
+
+    private int findNode(double key) {
+        int x = root;
+        while (x != NIL) {
+            int cmp = Double.compare(key, keys[x]);
+            if (cmp < 0) {
+                x = left[x];
+            } else if (cmp > 0) {
+                x = right[x];
+            } else {
+                return x;
+            }
+        }
+        return NIL;
+    }
+
+    /**
+     * Returns the largest key less than or equal to the given key.
+     *
+     * @param key          upper bound
+     * @param defaultValue value returned when there is no such key
+     * @return the found key or defaultValue
+     */
+    public double floor(double key, double defaultValue) {
+        int x = root;
+        int candidate = NIL;
+        while (x != NIL) {
+            int cmp = Double.compare(key, keys[x]);
+            if (cmp < 0) {
+                x = left[x];
+            } else if (cmp > 0) {
+                candidate = x;
+                x = right[x];
+            } else {
+                return keys[x];
+            }
+        }
+        return candidate == NIL ? defaultValue : keys[candidate];
+    }
+
+    /**
+     * Returns the smallest key greater than or equal to the given key.
+     *
+     * @param key          lower bound
+     * @param defaultValue value returned when there is no such key
+     * @return the found key or defaultValue
+     */
+    public double ceiling(double key, double defaultValue) {
+        int x = root;
+        int candidate = NIL;
+        while (x != NIL) {
+            int cmp = Double.compare(key, keys[x]);
+            if (cmp < 0) {
+                candidate = x;
+                x = left[x];
+            } else if (cmp > 0) {
+                x = right[x];
+            } else {
+                return keys[x];
+            }
+        }
+        return candidate == NIL ? defaultValue : keys[candidate];
+    }
+
+    /**
+     * @return the smallest key
+     * @throws NoSuchElementException if the tree is empty
+     */
+    public double first() {
+        if (root == NIL) {
+            throw new NoSuchElementException("Tree is empty");
+        }
+        return keys[firstNode()];
+    }
+
+    /**
+     * @return the largest key
+     * @throws NoSuchElementException if the tree is empty
+     */
+    public double last() {
+        if (root == NIL) {
+            throw new NoSuchElementException("Tree is empty");
+        }
+        return keys[lastNode()];
+    }
+
+    /**
+     * Passes every key to the action in ascending order without allocating.
+     *
+     * @param action key consumer
+     */
+    public void forEach(DoubleConsumer action) {
+        for (int x = firstNode(); x != NIL; x = successor(x)) {
+            action.accept(keys[x]);
+        }
+    }
+
+    /**
+     * @return keys in ascending order
+     */
+    public double[] toArray() {
+        double[] array = new double[size];
+        int i = 0;
+        for (int x = firstNode(); x != NIL; x = successor(x)) {
+            array[i++] = keys[x];
+        }
+        return array;
+    }
+
+    /**
+     * @return ascending iterator
+     */
+    public PrimitiveIterator.OfDouble iterator() {
+        return new IteratorDouble(true);
+    }
+
+    /**
+     * @return descending iterator
+     */
+    public PrimitiveIterator.OfDouble descendingIterator() {
+        return new IteratorDouble(false);
+    }
+
+    @Override
+    public String toString() {
+        return Arrays.toString(toArray());
+    }
+
+    private class IteratorDouble implements PrimitiveIterator.OfDouble {
+
+        private final boolean ascending;
+        private int next;
+        private int last = NIL;
+
+        IteratorDouble(boolean ascending) {
+            this.ascending = ascending;
+            this.next = ascending ? firstNode() : lastNode();
+        }
+
+        @Override
+        public boolean hasNext() {
+            return next != NIL;
+        }
+
+        @Override
+        public double nextDouble() {
+            if (next == NIL) {
+                throw new NoSuchElementException();
+            }
+            last = next;
+            next = ascending ? successor(next) : predecessor(next);
+            return keys[last];
+        }
+
+        @Override
+        public void remove() {
+            if (last == NIL) {
+                throw new IllegalStateException("error in remove Iterator");
+            }
+            // Nodes are unlinked without moving keys, so the next node stays valid
+            deleteNode(last);
+            last = NIL;
+        }
+    }
+}
@@ -0,0 +1,248 @@
+package utils;
+
+import java.util.Arrays;
+import java.util.NoSuchElementException;
+import java.util.PrimitiveIterator;
+import java.util.function.IntConsumer;
+
+/**
+ * Red-black tree of unboxed int keys with set semantics.
+ * The nodes are kept in parallel arrays (see {@link PrimitiveRedBlackTree}),
+ * so insert, delete and lookups do not allocate once the arrays have grown.
+ */
+public class IntRedBlackTree extends PrimitiveRedBlackTree {
+
+    private int[] keys;
+
+    public IntRedBlackTree() {
+        this(DEFAULT_CAPACITY);
+    }
+
+    /**
+     * Creates a tree with storage preallocated for the given number of keys
+     *
+     * @param initialCapacity expected number of keys
+     */
+    public IntRedBlackTree(int initialCapacity) {
+        super(initialCapacity);
+        keys = new int[left.length];
+    }
+
+    @Override
+    protected void growKeys(int capacity) {
+        keys = Arrays.copyOf(keys, capacity);
+    }
+
+    /**
+     * Inserts the key into the tree.
+     *
+     * @param key key to insert
+     * @return true if the key was inserted, false if it already exists
+     */
+    public boolean insert(int key) {
+        int p = NIL;
+        int x = root;
+        int cmp = 0;
+        while (x != NIL) {
+            p = x;
+            cmp = Integer.compare(key, keys[x]);
+            if (cmp == 0) {
+                return false;
+            }
+            x = (cmp < 0) ? left[x] : right[x];
+        }
+        int node = allocate();
+        keys[node] = key;
+        insertAt(node, p, cmp);
+        return true;
+    }
+
+    /**
+     * Removes the key from the tree.
+     *
+     * @param key key to remove
+     * @return true if the key was removed, false if it does not exist
+     */
+    public boolean delete(int key) {
+        int node = findNode(key);
+        if (node == NIL) {
+            return false;
+        }
+        deleteNode(node);
+        return true;
+    }
+
+    /**
+     * Checks whether the key exists in the tree.
+     *
+     * @param key key
+     * @return true if the key exists
+     */
+    public boolean contains(int key) {
+        return findNode(key) != NIL;
+    }
+
+    private int findNode(int key) {
+        int x = root;
+        while (x != NIL) {
+            int k = keys[x];
+            if (key < k) {
+                x = left[x];
+            } else if (key > k) {
+                x = right[x];
+            } else {
+                return x;
+            }
+        }
+        return NIL;
+    }
+
+    /**
+     * Returns the largest key less than or equal to the given key.
+     *
+     * @param key          upper bound
+     * @param defaultValue value returned when there is no such key
+     * @return the found key or defaultValue
+     */
+    public int floor(int key, int defaultValue) {
+        int x = root;
+        int candidate = NIL;
+        while (x != NIL) {
+            int k = keys[x];
+            if (key < k) {
+                x = left[x];
+            } else if (key > k) {
+                candidate = x;
+                x = right[x];
+            } else {
+                return k;
+            }
+        }
+        return candidate == NIL ? defaultValue : keys[candidate];
+    }
+
+    /**
+     * Returns the smallest key greater than or equal to the given key.
+     *
+     * @param key          lower bound
+     * @param defaultValue value returned when there is no such key
+     * @return the found key or defaultValue
+     */
+    public int ceiling(int key, int defaultValue) {
+        int x = root;
+        int candidate = NIL;
+        while (x != NIL) {
+            int k = keys[x];
+            if (key < k) {
+                candidate = x;
+                x = left[x];
+            } else if (key > k) {
+                x = right[x];
+            } else {
+                return k;
+            }
+        }
+        return candidate == NIL ? defaultValue : keys[candidate];
+    }
+
+    /**
+     * @return the smallest key
+     * @throws NoSuchElementException if the tree is empty
+     */
+    public int first() {
+        if (root == NIL) {
+            throw new NoSuchElementException("Tree is empty");
+        }
+        return keys[firstNode()];
+    }
+
+    /**
+     * @return the largest key
+     * @throws NoSuchElementException if the tree is empty
+     */
+    public int last() {
+        if (root == NIL) {
+            throw new NoSuchElementException("Tree is empty");
+        }
+        return keys[lastNode()];
+    }
+
+    /**
+     * Passes every key to the action in ascending order without allocating.
+     *
+     * @param action key consumer
+     */
+    public void forEach(IntConsumer action) {
+        for (int x = firstNode(); x != NIL; x = successor(x)) {
+            action.accept(keys[x]);
+        }
+    }
+
+    /**
+     * @return keys in ascending order
+     */
+    public int[] toArray() {
+        int[] array = new int[size];
+        int i = 0;
+        for (int x = firstNode(); x != NIL; x = successor(x)) {
+            array[i++] = keys[x];
+        }
+        return array;
+    }
+
+    /**
+     * @return ascending iterator
+     */
+    public PrimitiveIterator.OfInt iterator() {
+        return new IteratorInt(true);
+    }
+
+    /**
+     * @return descending iterator
+     */
+    public PrimitiveIterator.OfInt descendingIterator() {
+        return new IteratorInt(false);
+    }
+
+    @Override
+    public String toString() {
+        return Arrays.toString(toArray());
+    }
+
+    private class IteratorInt implements PrimitiveIterator.OfInt {
+
+        private final boolean ascending;
+        private int next;
+        private int last = NIL;
+
+        IteratorInt(boolean ascending) {
+            this.ascending = ascending;
+            this.next = ascending ? firstNode() : lastNode();
+        }
+
+        @Override
+        public boolean hasNext() {
+            return next != NIL;
+        }
+
+        @Override
+        public int nextInt() {
+            if (next == NIL) {
+                throw new NoSuchElementException();
+            }
+            last = next;
+            next = ascending ? successor(next) : predecessor(next);
+            return keys[last];
+        }
+
+        @Override
+        public void remove() {
+            if (last == NIL) {
+                throw new IllegalStateException("error in remove Iterator");
+            }
+            // Nodes are unlinked without moving keys, so the next node stays valid
+            deleteNode(last);
+            last = NIL;
+        }
+    }
+}
@@ -0,0 +1,675 @@
+package utils;
+
+import java.io.EOFException;
+import java.io.IOException;
+import java.lang.reflect.Array;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Paths;
+import java.nio.file.StandardOpenOption;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.Iterator;
+import java.util.NoSuchElementException;
+
+/**
+ * Read-only ordered set stored in a memory-mapped file.
+ * <p>
+ * The file is a static B+ tree of fixed-size pages. Page 0 is the header with the name of
+ * the comparator and the schema of the codec, both checked on open. Then come the
+ * leaf pages with the records of all elements in ascending order, packed without gaps,
+ * and then the inner levels up to the root page. An inner page holds the first record
+ * of each of its children; the children of a level lie in consecutive pages, so no
+ * page numbers are stored. A lookup reads one page per level and decodes only the
+ * O(log(page size)) records compared on each page. The element at position k is found
+ * directly in leaf page k / records per page.
+ * <p>
+ * The file is mapped, not read, so the heap use does not depend on the number of
+ * elements, and an existing file is opened without any rebuild. The file is written
+ * once from elements in ascending order by {@link #write}; the methods that change the
+ * set throw UnsupportedOperationException. The range methods return views of the same
+ * file in O(log n). The set can be read by many threads.
+ *
+ * @param <E> Type of the set element. Must implement the Comparable<E> interface, or
+ *            an object that implements Comparator<E> interface must be passed to write and open
+ */
+public class OffHeapSortedSet<E extends Comparable<E>> implements SortedSet<E>, AutoCloseable {
+
+    // File format identification, "OHSS"
+    private static final int MAGIC = 0x4F485353;
+    private static final int VERSION = 2;
+    // Bytes of the header before the comparator name and the codec schema
+    private static final int HEADER_FIXED = 20;
+    public static final int DEFAULT_PAGE_SIZE = 4096;
+    // Comparator name of the indexes ordered by Comparable<E>
+    public static final String NATURAL_ORDER = "natural";
+    // The header must fit in page 0
+    private static final int MIN_PAGE_SIZE = 64;
+    // Maximal size of one mapped region
+    private static final long MAX_CHUNK = 1L << 30;
+
+    // Mapped file shared by the set and its views
+    private final Storage<E> storage;
+    // The set contains the elements at positions [from, to)
+    private final int from;
+    private final int to;
+
+    private OffHeapSortedSet(Storage<E> storage, int from, int to) {
+        this.storage = storage;
+        this.from = from;
+        this.to = to;
+    }
+
+    /**
+     * Writes the elements into a new index file and opens it. The elements must be
+     * in ascending order of the comparator; equal neighbouring elements are stored once.
+     * The elements are written page by page, so they do not have to fit in the heap.
+     *
+     * @param filePath     file to create or to overwrite
+     * @param codec        record codec
+     * @param c            Comparator
+     * @param comparatorId name of the comparator, checked on open
+     * @param sorted       elements in ascending order
+     * @param pageSize     page size in bytes, at least two records and at least 64 bytes
+     * @return the opened set
+     * @throws IllegalArgumentException if the elements are not in ascending order
+     */
+    public static <E extends Comparable<E>> OffHeapSortedSet<E> write(String filePath, RecordCodec<E> codec,
+                                                                       Comparator<? super E> c, String comparatorId,
+                                                                       Iterable<? extends E> sorted,
+                                                                       int pageSize) throws IOException {
+        int recordSize = codec.recordSize();
+        if (recordSize <= 0 || pageSize < Math.max(2 * recordSize, MIN_PAGE_SIZE)) {
+            throw new IllegalArgumentException("Page size " + pageSize + " is too small for records of " + recordSize + " bytes");
+        }
+        // The names are put first, so that a header too long for the page fails before the file is written
+        ByteBuffer header = ByteBuffer.allocate(pageSize);
+        RecordCodec.putString(header, HEADER_FIXED, comparatorId, pageSize - HEADER_FIXED);
+        int schemaOffset = HEADER_FIXED + 1 + (header.get(HEADER_FIXED) & 0xFF);
+        RecordCodec.putString(header, schemaOffset, codec.schema(), pageSize - schemaOffset);
+        int perPage = pageSize / recordSize;
+        try (FileChannel channel = FileChannel.open(Paths.get(filePath), StandardOpenOption.CREATE,
+                StandardOpenOption.TRUNCATE_EXISTING, StandardOpenOption.READ, StandardOpenOption.WRITE)) {
+            ByteBuffer page = ByteBuffer.allocate(pageSize);
+            long pageNo = 1;
+            int slot = 0;
+            int count = 0;
+            E previous = null;
+            for (E element : sorted) {
+                if (element == null) {
+                    throw new IllegalArgumentException("Element is null in write");
+                }
+                if (previous != null) {
+                    int cmp = c.compare(previous, element);
+                    if (cmp > 0) {
+                        throw new IllegalArgumentException("Elements are not sorted at index " + count);
+                    }
+                    if (cmp == 0) {
+                        continue;
+                    }
+                }
+                if (count == Integer.MAX_VALUE) {
+                    throw new IllegalArgumentException("Too many elements");
+                }
+                codec.encode(element, page, slot * recordSize);
+                count++;
+                previous = element;
+                if (++slot == perPage) {
+                    writePage(channel, page, pageNo++, pageSize);
+                    slot = 0;
+                }
+            }
+            if (slot > 0) {
+                writePage(channel, page, pageNo, pageSize);
+            }
+
+            // Every inner level holds the first records of the pages of the level below
+            ByteBuffer record = ByteBuffer.allocate(recordSize);
+            long levelStart = 1;
+            long levelPages = (count + perPage - 1) / perPage;
+            while (levelPages > 1) {
+                long upperStart = levelStart + levelPages;
+                pageNo = upperStart;
+                slot = 0;
+                for (long p = 0; p < levelPages; p++) {
+                    record.clear();
+                    readFully(channel, record, (levelStart + p) * pageSize);
+                    page.position(slot * recordSize);
+                    page.put(record.array());
+                    if (++slot == perPage) {
+                        writePage(channel, page, pageNo++, pageSize);
+                        slot = 0;
+                    }
+                }
+                if (slot > 0) {
+                    writePage(channel, page, pageNo, pageSize);
+                }
+                levelStart = upperStart;
+                levelPages = (levelPages + perPage - 1) / perPage;
+            }
+
+            header.putInt(MAGIC).putInt(VERSION).putInt(pageSize).putInt(recordSize).putInt(count);
+            writePage(channel, header, 0, pageSize);
+        }
+        return open(filePath, codec, c, comparatorId);
+    }
+
+    /**
+     * Writes the elements into a new index file with the default page size and opens it.
+     *
+     * @see #write(String, RecordCodec, Comparator, String, Iterable, int)
+     */
+    public static <E extends Comparable<E>> OffHeapSortedSet<E> write(String filePath, RecordCodec<E> codec,
+                                                                       Comparator<? super E> c, String comparatorId,
+                                                                       Iterable<? extends E> sorted) throws IOException {
+        return write(filePath, codec, c, comparatorId, sorted, DEFAULT_PAGE_SIZE);
+    }
+
+    /**
+     * Writes the elements ordered by Comparable<E> into a new index file with the default page size and opens it.
+     *
+     * @see #write(String, RecordCodec, Comparator, String, Iterable, int)
+     */
+    public static <E extends Comparable<E>> OffHeapSortedSet<E> write(String filePath, RecordCodec<E> codec,
+                                                                       Iterable<? extends E> sorted) throws IOException {
+        return write(filePath, codec, Comparator.naturalOrder(), NATURAL_ORDER, sorted, DEFAULT_PAGE_SIZE);
+    }
+
+    private static void writePage(FileChannel channel, ByteBuffer page, long pageNo, int pageSize) throws IOException {
+        page.clear();
+        long position = pageNo * pageSize;
+        while (page.hasRemaining()) {
+            position += channel.write(page, position);
+        }
+        Arrays.fill(page.array(), (byte) 0);
+    }
+
+    private static void readFully(FileChannel channel, ByteBuffer buffer, long position) throws IOException {
+        while (buffer.hasRemaining()) {
+            int n = channel.read(buffer, position);
+            if (n < 0) {
+                throw new EOFException("Unexpected end of the index file");
+            }
+            position += n;
+        }
+    }
+
+    /**
+     * Opens an index file written by {@link #write}. Only the header is read; the pages
+     * are mapped into memory and read on demand.
+     *
+     * @param filePath     index file
+     * @param codec        record codec the file was written with
+     * @param c            Comparator the file was written with
+     * @param comparatorId name of the comparator
+     * @return the set of all elements of the file
+     * @throws IOException if the file cannot be read or is not an index of such records and comparator
+     */
+    public static <E extends Comparable<E>> OffHeapSortedSet<E> open(String filePath, RecordCodec<E> codec,
+                                                                      Comparator<? super E> c,
+                                                                      String comparatorId) throws IOException {
+        Storage<E> storage = new Storage<>(filePath, codec, c, comparatorId);
+        return new OffHeapSortedSet<>(storage, 0, storage.count);
+    }
+
+    /**
+     * Opens an index file of elements ordered by Comparable<E>.
+     *
+     * @see #open(String, RecordCodec, Comparator, String)
+     */
+    public static <E extends Comparable<E>> OffHeapSortedSet<E> open(String filePath, RecordCodec<E> codec) throws IOException {
+        return open(filePath, codec, Comparator.naturalOrder(), NATURAL_ORDER);
+    }
+
+    /**
+     * The mapped file with the tree geometry taken from the header
+     */
+    private static final class Storage<E> {
+
+        final FileChannel channel;
+        final RecordCodec<E> codec;
+        final Comparator<? super E> c;
+        final int pageSize;
+        final int recordSize;
+        // Records per page, in the leaves and in the inner pages
+        final int perPage;
+        final int count;
+        // First page and number of pages of every level, level 0 are the leaves
+        final long[] levelStart;
+        final long[] levelPages;
+        // The file is mapped in regions of pagesPerChunk pages
+        final MappedByteBuffer[] chunks;
+        final long pagesPerChunk;
+
+        Storage(String filePath, RecordCodec<E> codec, Comparator<? super E> c, String comparatorId) throws IOException {
+            this.channel = FileChannel.open(Paths.get(filePath), StandardOpenOption.READ);
+            try {
+                this.codec = codec;
+                this.c = c;
+                ByteBuffer header = ByteBuffer.allocate(HEADER_FIXED);
+                readFully(channel, header, 0);
+                header.flip();
+                if (header.getInt() != MAGIC || header.getInt() != VERSION) {
+                    throw new IOException("Not an index file: " + filePath);
+                }
+                pageSize = header.getInt();
+                recordSize = header.getInt();
+                count = header.getInt();
+                if (pageSize < MIN_PAGE_SIZE || recordSize <= 0 || count < 0) {
+                    throw new IOException("Corrupted index header: " + filePath);
+                }
+                ByteBuffer names = ByteBuffer.allocate(pageSize - HEADER_FIXED);
+                readFully(channel, names, HEADER_FIXED);
+                String savedComparator = RecordCodec.getString(names, 0);
+                if (!savedComparator.equals(comparatorId)) {
+                    throw new IOException("Index is ordered by " + savedComparator + ", not by " + comparatorId);
+                }
+                String savedSchema = RecordCodec.getString(names, 1 + (names.get(0) & 0xFF));
+                if (!savedSchema.equals(codec.schema()) || recordSize != codec.recordSize()) {
+                    throw new IOException("Index records are " + savedSchema + ", the codec reads " + codec.schema());
+                }
+                perPage = pageSize / recordSize;
+
+                int levels = 0;
+                for (long pages = (count + perPage - 1) / perPage; pages > 0; pages = (pages > 1) ? (pages + perPage - 1) / perPage : 0) {
+                    levels++;
+                }
+                levelStart = new long[levels];
+                levelPages = new long[levels];
+                long start = 1;
+                long pages = (count + perPage - 1) / perPage;
+                for (int level = 0; level < levels; level++) {
+                    levelStart[level] = start;
+                    levelPages[level] = pages;
+                    start += pages;
+                    pages = (pages + perPage - 1) / perPage;
+                }
+
+                pagesPerChunk = MAX_CHUNK / pageSize;
+                long fileSize = start * pageSize;
+                if (channel.size() < fileSize) {
+                    throw new IOException("Index file is truncated: " + filePath);
+                }
+                chunks = new MappedByteBuffer[(int) ((start + pagesPerChunk - 1) / pagesPerChunk)];
+                for (int i = 0; i < chunks.length; i++) {
+                    long position = i * pagesPerChunk * pageSize;
+                    chunks[i] = channel.map(FileChannel.MapMode.READ_ONLY, position,
+                            Math.min(pagesPerChunk * pageSize, fileSize - position));
+                }
+            } catch (IOException | RuntimeException e) {
+                channel.close();
+                throw e;
+            }
+        }
+
+        // Decodes the record in the slot of the page
+        E decode(long page, int slot) {
+            return codec.decode(chunks[(int) (page / pagesPerChunk)],
+                    (int) (page % pagesPerChunk) * pageSize + slot * recordSize);
+        }
+
+        // Decodes the element at position k of the ascending order
+        E get(int k) {
+            return decode(levelStart[0] + k / perPage, k % perPage);
+        }
+
+        /**
+         * Counts the elements less than the element, or not greater than it if inclusive is true.
+         * Each inner level selects the last child whose first record is counted.
+         */
+        int rank(E element, boolean inclusive) {
+            long child = 0;
+            for (int level = levelStart.length - 1; level >= 0; level--) {
+                long page = levelStart[level] + child;
+                long below = (level == 0) ? count : levelPages[level - 1];
+                int n = (int) Math.min(perPage, below - child * perPage);
+                int lo = 0;
+                int hi = n;
+                while (lo < hi) {
+                    int mid = (lo + hi) >>> 1;
+                    int cmp = c.compare(decode(page, mid), element);
+                    if (cmp < 0 || (inclusive && cmp == 0)) {
+                        lo = mid + 1;
+                    } else {
+                        hi = mid;
+                    }
+                }
+                if (level == 0) {
+                    return (int) (child * perPage + lo);
+                }
+                child = child * perPage + Math.max(lo - 1, 0);
+            }
+            return 0;
+        }
+    }
+
+    /**
+     * Checks if the set is empty.
+     *
+     * @return Returns true if the set is empty.
+     */
+    @Override
+    public boolean isEmpty() {
+        return from == to;
+    }
+
+    /**
+     * @return Returns the number of elements in the set.
+     */
+    @Override
+    public int size() {
+        return to - from;
+    }
+
+    /**
+     * Checks whether an element exists in the set.
+     *
+     * @param element - element of the set.
+     * @return true if an element exists in the set, else false.
+     */
+    @Override
+    public boolean contains(E element) {
+        if (element == null) {
+            throw new IllegalArgumentException("Element is null in contains(E element)");
+        }
+        int k = storage.rank(element, false);
+        return k >= from && k < to && storage.c.compare(storage.get(k), element) == 0;
+    }
+
+    /**
+     * Checks if all elements of the input set exist in the set
+     *
+     * @param set input set
+     * @return true if every element of the input set exists in the set
+     */
+    @Override
+    public boolean containsAll(Set<E> set) {
+        for (E element : set) {
+            if (!contains(element)) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    /**
+     * Returns the element at the given position of the ascending order in O(1).
+     *
+     * @param k position, 0 for the smallest element
+     * @return the k-th smallest element
+     */
+    public E select(int k) {
+        if (k < 0 || k >= size()) {
+            throw new IndexOutOfBoundsException("Index " + k + " out of bounds for size " + size());
+        }
+        return storage.get(from + k);
+    }
+
+    /**
+     * Returns the number of elements less than the element in O(log n).
+     *
+     * @param element - element.
+     * @return the position the element has or would have in the ascending order
+     */
+    public int rank(E element) {
+        if (element == null) {
+            throw new IllegalArgumentException("Element is null in rank(E element)");
+        }
+        return clamp(storage.rank(element, false)) - from;
+    }
+
+    private int clamp(int k) {
+        return Math.max(from, Math.min(to, k));
+    }
+
+    /**
+     * Decodes all elements into an array, which needs heap memory for the whole set.
+     *
+     * @return Returns an array of set elements.
+     */
+    @Override
+    public Object[] toArray() {
+        Object[] array = new Object[size()];
+        for (int i = 0; i < array.length; i++) {
+            array[i] = storage.get(from + i);
+        }
+        return array;
+    }
+
+    @Override
+    @SuppressWarnings("unchecked")
+    public E[] toArray(Class<E> clasz) {
+        E[] array = (E[]) Array.newInstance(clasz, size());
+        for (int i = 0; i < array.length; i++) {
+            array[i] = storage.get(from + i);
+        }
+        return array;
+    }
+
+    /**
+     * Forms an Inorder (ascending order) string of set elements.
+     *
+     * @return string of set elements
+     */
+    @Override
+    public String toString() {
+        StringBuilder sb = new StringBuilder();
+        for (E element : this) {
+            sb.append(element.toString()).append(System.lineSeparator());
+        }
+        return sb.toString();
+    }
+
+    /**
+     * Describes the page levels of the file, from the root to the leaves.
+     */
+    @Override
+    public String toVisualizedString(String dataCodeDelimiter) {
+        StringBuilder sb = new StringBuilder();
+        sb.append("pages of ").append(storage.pageSize).append(" bytes, ").append(storage.perPage)
+                .append(" records of ").append(storage.recordSize).append(" bytes per page, ")
+                .append(size()).append(" elements").append(System.lineSeparator());
+        for (int level = storage.levelStart.length - 1; level >= 0; level--) {
+            sb.append(level == 0 ? "leaves" : "level " + level).append(": ").append(storage.levelPages[level])
+                    .append(" pages from page ").append(storage.levelStart[level]).append(System.lineSeparator());
+        }
+        return sb.toString();
+    }
+
+    /**
+     * Returns a view of the elements less than the element, created in O(log n).
+     *
+     * @param element - limit element.
+     * @return view of the elements less than the element
+     */
+    @Override
+    public SortedSet<E> headSet(E element) {
+        if (element == null) {
+            throw new IllegalArgumentException("Element is null in headSet(E element)");
+        }
+        return new OffHeapSortedSet<>(storage, from, clamp(storage.rank(element, false)));
+    }
+
+    /**
+     * Returns a view of the elements from element1 (inclusive) to element2 (exclusive).
+     *
+     * @param element1 - start element.
+     * @param element2 - end element.
+     * @return view of the elements from element1 (inclusive) to element2 (exclusive)
+     */
+    @Override
+    public SortedSet<E> subSet(E element1, E element2) {
+        if (element1 == null || element2 == null) {
+            throw new IllegalArgumentException("Element is null in subSet(E element1, E element2)");
+        }
+        int lo = clamp(storage.rank(element1, false));
+        int hi = clamp(storage.rank(element2, false));
+        return new OffHeapSortedSet<>(storage, lo, Math.max(lo, hi));
+    }
+
+    /**
+     * Returns a view of the elements greater than or equal to the element.
+     *
+     * @param element - element of the set.
+     * @return view of the elements greater than or equal to the element
+     */
+    @Override
+    public SortedSet<E> tailSet(E element) {
+        if (element == null) {
+            throw new IllegalArgumentException("Element is null in tailSet(E element)");
+        }
+        return new OffHeapSortedSet<>(storage, clamp(storage.rank(element, false)), to);
+    }
+
+    @Override
+    public E floor(E element) {
+        if (element == null) {
+            throw new IllegalArgumentException("Element is null in floor(E element)");
+        }
+        return elementAt(clamp(storage.rank(element, true)) - 1);
+    }
+
+    @Override
+    public E ceiling(E element) {
+        if (element == null) {
+            throw new IllegalArgumentException("Element is null in ceiling(E element)");
+        }
+        return elementAt(clamp(storage.rank(element, false)));
+    }
+
+    @Override
+    public E lower(E element) {
+        if (element == null) {
+            throw new IllegalArgumentException("Element is null in lower(E element)");
+        }
+        return elementAt(clamp(storage.rank(element, false)) - 1);
+    }
+
+    @Override
+    public E higher(E element) {
+        if (element == null) {
+            throw new IllegalArgumentException("Element is null in higher(E element)");
+        }
+        return elementAt(clamp(storage.rank(element, true)));
+    }
+
+    // The element at position k of the file, or null if k is outside of the set
+    private E elementAt(int k) {
+        return (k >= from && k < to) ? storage.get(k) : null;
+    }
+
+    @Override
+    public E first() {
+        if (isEmpty()) {
+            throw new NoSuchElementException("Set is empty");
+        }
+        return storage.get(from);
+    }
+
+    @Override
+    public E last() {
+        if (isEmpty()) {
+            throw new NoSuchElementException("Set is empty");
+        }
+        return storage.get(to - 1);
+    }
+
+    /**
+     * Returns the natural iterator, every element is decoded when it is returned.
+     *
+     * @return natural iterator.
+     */
+    @Override
+    public Iterator<E> iterator() {
+        return new Iterator<E>() {
+            private int k = from;
+
+            @Override
+            public boolean hasNext() {
+                return k < to;
+            }
+
+            @Override
+            public E next() {
+                if (k >= to) {
+                    throw new NoSuchElementException();
+                }
+                return storage.get(k++);
+            }
+        };
+    }
+
+    /**
+     * Returns the inverse iterator.
+     *
+     * @return inverse iterator.
+     */
+    @Override
+    public Iterator<E> descendingIterator() {
+        return new Iterator<E>() {
+            private int k = to;
+
+            @Override
+            public boolean hasNext() {
+                return k > from;
+            }
+
+            @Override
+            public E next() {
+                if (k <= from) {
+                    throw new NoSuchElementException();
+                }
+                return storage.get(--k);
+            }
+        };
+    }
+
+    /**
+     * Closes the file. The mapped pages are released by the garbage collector,
+     * the set and its views must not be used after closing.
+     */
+    @Override
+    public void close() throws IOException {
+        storage.channel.close();
+    }
+
+    private static UnsupportedOperationException readOnly() {
+        return new UnsupportedOperationException("The set is read-only, write a new index with OffHeapSortedSet.write");
+    }
+
+    @Override
+    public void clear() {
+        throw readOnly();
+    }
+
+    @Override
+    public void add(E element) {
+        throw readOnly();
+    }
+
+    @Override
+    public void addAll(Set<E> set) {
+        throw readOnly();
+    }
+
+    @Override
+    public void remove(E element) {
+        throw readOnly();
+    }
+
+    @Override
+    public void retainAll(Set<E> set) {
+        throw readOnly();
+    }
+
+    @Override
+    public E pollFirst() {
+        throw readOnly();
+    }
+
+    @Override
+    public E pollLast() {
+        throw readOnly();
+    }
+}
@@ -0,0 +1,407 @@
+package utils;
+
+import utils.BstSet.BstNode;
+import utils.BstSet.Split;
+
+import java.util.ArrayDeque;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Comparator;
+import java.util.Deque;
+import java.util.List;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveTask;
+import java.util.function.Predicate;
+
+/**
+ * Parallel set operations on tree sets, run on a ForkJoinPool.
+ * <p>
+ * Union, intersection and difference split the first tree by the root element of the
+ * second one; the two halves are independent and are processed by separate tasks, the
+ * results are joined back (see {@link BstSet#split}, {@link BstSet#join}). Below the
+ * sequential cutoff the sequential algorithms of {@link BstSet} are used.
+ * The operations are meant for {@link AvlSet} and {@link RedBlackSet}, whose joins keep
+ * the tree balanced. Split and join recurse as deep as the trees are high, and a scapegoat
+ * join rebuilds whole subtrees, so for the other sets union, intersection and difference
+ * fall back to the sequential methods of BstSet, and filter collects the elements iteratively.
+ * <p>
+ * The second set of an operation is only read. Neither set may be modified by other
+ * threads while an operation runs.
+ */
+public final class ParallelSetOps {
+
+    // Subproblems with fewer elements are solved sequentially
+    public static final int SEQUENTIAL_CUTOFF = 1 << 12;
+    // Balanced trees are never this high; deeper subtrees are filtered without recursion
+    private static final int MAX_TASK_DEPTH = 64;
+
+    private ParallelSetOps() {
+    }
+
+    private enum Operation {UNION, INTERSECTION, DIFFERENCE}
+
+    /**
+     * Returns a new set with the elements of both sets. Neither set is modified.
+     *
+     * @param set1 first set
+     * @param set2 second set, must use the same comparator
+     * @return union of the sets, of the same class as set1
+     */
+    public static <E extends Comparable<E>> BstSet<E> union(BstSet<E> set1, BstSet<E> set2) {
+        BstSet<E> result = copy(set1);
+        addAll(result, set2);
+        return result;
+    }
+
+    /**
+     * Returns a new set with the elements present in both sets. Neither set is modified.
+     *
+     * @param set1 first set
+     * @param set2 second set, must use the same comparator
+     * @return intersection of the sets, of the same class as set1
+     */
+    public static <E extends Comparable<E>> BstSet<E> intersection(BstSet<E> set1, BstSet<E> set2) {
+        BstSet<E> result = copy(set1);
+        retainAll(result, set2);
+        return result;
+    }
+
+    /**
+     * Returns a new set with the elements of set1 missing from set2. Neither set is modified.
+     *
+     * @param set1 first set
+     * @param set2 second set, must use the same comparator
+     * @return difference of the sets, of the same class as set1
+     */
+    public static <E extends Comparable<E>> BstSet<E> difference(BstSet<E> set1, BstSet<E> set2) {
+        BstSet<E> result = copy(set1);
+        removeAll(result, set2);
+        return result;
+    }
+
+    /**
+     * Adds all elements of the source set to the target set (in-place union).
+     *
+     * @param target set to be modified
+     * @param source set to be read, must use the same comparator
+     */
+    public static <E extends Comparable<E>> void addAll(BstSet<E> target, BstSet<E> source) {
+        checkComparators(target, source);
+        if (target == source) {
+            return;
+        }
+        if (!isJoinable(target, source)) {
+            target.addAll(source);
+            return;
+        }
+        SetOpTask<E> task = new SetOpTask<>(target, Operation.UNION, target.root, source.root);
+        target.root = target.asRoot(ForkJoinPool.commonPool().invoke(task));
+        target.size += source.size - task.matches;
+        target.modCount++;
+    }
+
+    /**
+     * Only elements of the source set remain in the target set (in-place intersection).
+     *
+     * @param target set to be modified
+     * @param source set to be read, must use the same comparator
+     */
+    public static <E extends Comparable<E>> void retainAll(BstSet<E> target, BstSet<E> source) {
+        checkComparators(target, source);
+        if (target == source) {
+            return;
+        }
+        if (!isJoinable(target, source)) {
+            target.retainAll(source);
+            return;
+        }
+        SetOpTask<E> task = new SetOpTask<>(target, Operation.INTERSECTION, target.root, source.root);
+        target.root = target.asRoot(ForkJoinPool.commonPool().invoke(task));
+        target.size = task.matches;
+        target.modCount++;
+    }
+
+    /**
+     * Removes the elements of the source set from the target set (in-place difference).
+     *
+     * @param target set to be modified
+     * @param source set to be read, must use the same comparator
+     */
+    public static <E extends Comparable<E>> void removeAll(BstSet<E> target, BstSet<E> source) {
+        checkComparators(target, source);
+        if (target == source) {
+            target.clear();
+            return;
+        }
+        if (!isJoinable(target, source)) {
+            target.removeAll(source);
+            return;
+        }
+        SetOpTask<E> task = new SetOpTask<>(target, Operation.DIFFERENCE, target.root, source.root);
+        target.root = target.asRoot(ForkJoinPool.commonPool().invoke(task));
+        target.size -= task.matches;
+        target.modCount++;
+    }
+
+    /**
+     * Merges many sets, e.g. per-region sets, into one by a parallel pairwise reduction.
+     * The input sets are not modified.
+     *
+     * @param sets sets with the same comparator, at least one
+     * @return union of the sets, of the same class as the first set
+     */
+    public static <E extends Comparable<E>> BstSet<E> unionAll(Collection<? extends BstSet<E>> sets) {
+        if (sets.isEmpty()) {
+            throw new IllegalArgumentException("No sets in unionAll(sets)");
+        }
+        @SuppressWarnings({"unchecked", "rawtypes"})
+        BstSet<E>[] array = sets.toArray(new BstSet[0]);
+        for (BstSet<E> set : array) {
+            checkComparators(array[0], set);
+        }
+        return ForkJoinPool.commonPool().invoke(new UnionAllTask<>(array, 0, array.length));
+    }
+
+    /**
+     * Returns a new set with the elements that satisfy the predicate.
+     * The subtrees are filtered in parallel and the kept parts are joined back. Small or
+     * deep subtrees are traversed without recursion and their kept elements are built
+     * into balanced subtrees.
+     *
+     * @param set       set to be read
+     * @param predicate condition of the kept elements, called concurrently
+     * @return filtered set, of the same class as the input set
+     */
+    public static <E extends Comparable<E>> BstSet<E> filter(BstSet<E> set, Predicate<? super E> predicate) {
+        BstSet<E> result = set.emptyCopy();
+        FilterTask<E> task = new FilterTask<>(result, set.root, predicate, 0);
+        result.root = result.asRoot(ForkJoinPool.commonPool().invoke(task));
+        result.size = task.kept;
+        result.modCount++;
+        return result;
+    }
+
+    /**
+     * Replaces the contents of the set with the given elements, which may be in any order.
+     * The elements are sorted with Arrays.parallelSort and the subtrees of the balanced tree
+     * are built concurrently.
+     *
+     * @param set      set to be loaded
+     * @param elements elements of the new set
+     */
+    @SuppressWarnings("unchecked")
+    public static <E extends Comparable<E>> void bulkLoad(BstSet<E> set, E[] elements) {
+        Object[] sorted = Arrays.copyOf(elements, elements.length, Object[].class);
+        Arrays.parallelSort(sorted, (Comparator<Object>) set.c);
+        int n = BstSet.distinctSorted(sorted, set.c);
+        set.root = set.asRoot(ForkJoinPool.commonPool().invoke(new BuildTask<>(set, sorted, 0, n - 1)));
+        set.size = n;
+        set.modCount++;
+    }
+
+    /**
+     * @see #bulkLoad(BstSet, Comparable[])
+     */
+    @SuppressWarnings({"unchecked", "rawtypes"})
+    public static <E extends Comparable<E>> void bulkLoad(BstSet<E> set, List<? extends E> elements) {
+        bulkLoad(set, (E[]) elements.toArray(new Comparable[0]));
+    }
+
+    @SuppressWarnings("unchecked")
+    private static <E extends Comparable<E>> BstSet<E> copy(BstSet<E> set) {
+        try {
+            return (BstSet<E>) set.clone();
+        } catch (CloneNotSupportedException e) {
+            throw new IllegalStateException(e);
+        }
+    }
+
+    // Split and join keep their bounds only on trees with a join in O(log n)
+    private static boolean isJoinable(BstSet<?> set1, BstSet<?> set2) {
+        return set1.isHeightBalanced() && set2.isHeightBalanced();
+    }
+
+    private static void checkComparators(BstSet<?> set1, BstSet<?> set2) {
+        if (set1.c != set2.c) {
+            throw new IllegalArgumentException("Sets are ordered by different comparators");
+        }
+    }
+
+    private static final class SetOpTask<E extends Comparable<E>> extends RecursiveTask<BstNode<E>> {
+
+        private static final long serialVersionUID = 1L;
+
+        private final BstSet<E> set;
+        private final Operation operation;
+        private final BstNode<E> t1;
+        private final BstNode<E> t2;
+        // Number of elements found in both trees
+        private int matches;
+
+        SetOpTask(BstSet<E> set, Operation operation, BstNode<E> t1, BstNode<E> t2) {
+            this.set = set;
+            this.operation = operation;
+            this.t1 = t1;
+            this.t2 = t2;
+        }
+
+        @Override
+        protected BstNode<E> compute() {
+            if (t1 == null || t2 == null || BstSet.count(t1) + BstSet.count(t2) <= SEQUENTIAL_CUTOFF) {
+                int[] found = {0};
+                BstNode<E> result;
+                switch (operation) {
+                    case UNION:
+                        result = set.union(t1, t2, found);
+                        break;
+                    case INTERSECTION:
+                        result = set.intersection(t1, t2, found);
+                        break;
+                    default:
+                        result = set.difference(t1, t2, found);
+                }
+                matches = found[0];
+                return result;
+            }
+
+            Split<E> s = set.split(t1, t2.element);
+            SetOpTask<E> leftTask = new SetOpTask<>(set, operation, s.left, t2.left);
+            SetOpTask<E> rightTask = new SetOpTask<>(set, operation, s.right, t2.right);
+            leftTask.fork();
+            BstNode<E> r = rightTask.compute();
+            BstNode<E> l = leftTask.join();
+            matches = leftTask.matches + rightTask.matches + (s.node != null ? 1 : 0);
+
+            switch (operation) {
+                case UNION:
+                    return set.join(l, s.node != null ? s.node : set.newNode(t2.element), r);
+                case INTERSECTION:
+                    return s.node != null ? set.join(l, s.node, r) : set.join2(l, r);
+                default:
+                    return set.join2(l, r);
+            }
+        }
+    }
+
+    private static final class UnionAllTask<E extends Comparable<E>> extends RecursiveTask<BstSet<E>> {
+
+        private static final long serialVersionUID = 1L;
+
+        private final BstSet<E>[] sets;
+        private final int from;
+        private final int to;
+
+        UnionAllTask(BstSet<E>[] sets, int from, int to) {
+            this.sets = sets;
+            this.from = from;
+            this.to = to;
+        }
+
+        @Override
+        protected BstSet<E> compute() {
+            if (to - from == 1) {
+                return copy(sets[from]);
+            }
+            int mid = (from + to) >>> 1;
+            UnionAllTask<E> leftTask = new UnionAllTask<>(sets, from, mid);
+            leftTask.fork();
+            BstSet<E> right = new UnionAllTask<>(sets, mid, to).compute();
+            BstSet<E> left = leftTask.join();
+            // The result of the larger half is reused, the smaller one is only read
+            if (left.size < right.size) {
+                BstSet<E> t = left;
+                left = right;
+                right = t;
+            }
+            addAll(left, right);
+            return left;
+        }
+    }
+
+    private static final class FilterTask<E extends Comparable<E>> extends RecursiveTask<BstNode<E>> {
+
+        private static final long serialVersionUID = 1L;
+
+        private final BstSet<E> result;
+        private final BstNode<E> tree;
+        private final Predicate<? super E> predicate;
+        // Depth of the subtree root in the filtered tree
+        private final int depth;
+        private int kept;
+
+        FilterTask(BstSet<E> result, BstNode<E> tree, Predicate<? super E> predicate, int depth) {
+            this.result = result;
+            this.tree = tree;
+            this.predicate = predicate;
+            this.depth = depth;
+        }
+
+        @Override
+        protected BstNode<E> compute() {
+            if (BstSet.count(tree) <= SEQUENTIAL_CUTOFF || depth >= MAX_TASK_DEPTH) {
+                return filter(tree);
+            }
+            FilterTask<E> leftTask = new FilterTask<>(result, tree.left, predicate, depth + 1);
+            FilterTask<E> rightTask = new FilterTask<>(result, tree.right, predicate, depth + 1);
+            leftTask.fork();
+            BstNode<E> r = rightTask.compute();
+            BstNode<E> l = leftTask.join();
+            kept = leftTask.kept + rightTask.kept;
+            if (predicate.test(tree.element)) {
+                kept++;
+                return result.join(l, result.newNode(tree.element), r);
+            }
+            return result.join2(l, r);
+        }
+
+        // Collects the kept elements by an inorder traversal with a stack and builds a balanced tree of them
+        private BstNode<E> filter(BstNode<E> node) {
+            Object[] elements = new Object[BstSet.count(node)];
+            Deque<BstNode<E>> stack = new ArrayDeque<>();
+            while (node != null || !stack.isEmpty()) {
+                while (node != null) {
+                    stack.push(node);
+                    node = node.left;
+                }
+                node = stack.pop();
+                if (predicate.test(node.element)) {
+                    elements[kept++] = node.element;
+                }
+                node = node.right;
+            }
+            return result.buildTree(elements, 0, kept - 1);
+        }
+    }
+
+    private static final class BuildTask<E extends Comparable<E>> extends RecursiveTask<BstNode<E>> {
+
+        private static final long serialVersionUID = 1L;
+
+        private final BstSet<E> set;
+        private final Object[] sorted;
+        private final int lo;
+        private final int hi;
+
+        BuildTask(BstSet<E> set, Object[] sorted, int lo, int hi) {
+            this.set = set;
+            this.sorted = sorted;
+            this.lo = lo;
+            this.hi = hi;
+        }
+
+        @Override
+        @SuppressWarnings("unchecked")
+        protected BstNode<E> compute() {
+            if (hi - lo < SEQUENTIAL_CUTOFF) {
+                return set.buildTree(sorted, lo, hi);
+            }
+            int mid = (lo + hi) >>> 1;
+            BuildTask<E> leftTask = new BuildTask<>(set, sorted, lo, mid - 1);
+            leftTask.fork();
+            BstNode<E> r = new BuildTask<>(set, sorted, mid + 1, hi).compute();
+            BstNode<E> l = leftTask.join();
+            // Both halves have almost the same height, so the join is O(1)
+            return set.join(l, set.newNode((E) sorted[mid]), r);
+        }
+    }
+}
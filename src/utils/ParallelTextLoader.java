@@ -0,0 +1,331 @@
+package utils;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Paths;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.List;
+import java.util.concurrent.ForkJoinTask;
+import java.util.concurrent.RecursiveTask;
+import java.util.function.Function;
+
+/**
+ * Loads tree sets from UTF-8 text files with one element per line.
+ * <p>
+ * The file is split into byte ranges that start at line boundaries. The ranges are
+ * memory-mapped and parsed by separate ForkJoin tasks into sorted element arrays, the
+ * arrays are merged pairwise in parallel, and the tree is built from the merged array in
+ * O(n) (see {@link BstSet#loadSorted}). Lines are trimmed and empty lines are skipped.
+ * A line whose create function throws a RuntimeException or returns null is counted as
+ * bad and skipped; the counts and the throughput are returned as {@link Stats}.
+ * <p>
+ * Of equal elements the one from the earliest line is kept, as with adding the lines
+ * one by one. Files smaller than a chunk are parsed by one task in line order.
+ */
+public final class ParallelTextLoader {
+
+    // Smallest and largest byte range parsed by one task
+    public static final int MIN_CHUNK_BYTES = 4 << 20;
+    private static final int MAX_CHUNK_BYTES = 256 << 20;
+    // Ranges per worker thread, so that uneven ranges still keep all threads busy
+    private static final int CHUNKS_PER_THREAD = 4;
+
+    private ParallelTextLoader() {
+    }
+
+    /**
+     * Statistics of one load
+     */
+    public static final class Stats {
+
+        private final long bytes;
+        private final long lines;
+        private final int elements;
+        private final long badLines;
+        private final String firstBadLine;
+        private final long nanos;
+
+        Stats(long bytes, long lines, int elements, long badLines, String firstBadLine, long nanos) {
+            this.bytes = bytes;
+            this.lines = lines;
+            this.elements = elements;
+            this.badLines = badLines;
+            this.firstBadLine = firstBadLine;
+            this.nanos = nanos;
+        }
+
+        public long getBytes() {
+            return bytes;
+        }
+
+        // Non-empty lines, including the bad ones
+        public long getLines() {
+            return lines;
+        }
+
+        // Distinct elements loaded into the set
+        public int getElements() {
+            return elements;
+        }
+
+        public long getBadLines() {
+            return badLines;
+        }
+
+        // The first bad line of the earliest range with bad lines, null if there are none
+        public String getFirstBadLine() {
+            return firstBadLine;
+        }
+
+        public long getNanos() {
+            return nanos;
+        }
+
+        public double getMegabytesPerSecond() {
+            return (nanos == 0) ? 0 : bytes * 1000.0 / nanos;
+        }
+
+        @Override
+        public String toString() {
+            return String.format("%d bytes, %d lines, %d elements, %d bad lines in %.1f ms (%.1f MB/s)",
+                    bytes, lines, elements, badLines, nanos / 1e6, getMegabytesPerSecond());
+        }
+    }
+
+    /**
+     * Replaces the elements of the set with the elements parsed from the file.
+     *
+     * @param set            loaded set
+     * @param filePath       UTF-8 text file
+     * @param createFunction creates an element from a trimmed non-empty line
+     * @return load statistics
+     * @throws IOException if the file cannot be read
+     */
+    public static <E extends Comparable<E>> Stats load(BstSet<E> set, String filePath,
+                                                       Function<String, ? extends E> createFunction) throws IOException {
+        long start = System.nanoTime();
+        try (FileChannel channel = FileChannel.open(Paths.get(filePath), StandardOpenOption.READ)) {
+            long size = channel.size();
+            long[] bounds = chunkBounds(channel, size);
+
+            List<ParseTask<E>> tasks = new ArrayList<>();
+            for (int i = 0; i + 1 < bounds.length; i++) {
+                tasks.add(new ParseTask<>(channel, bounds[i], bounds[i + 1], createFunction, set.c));
+            }
+            try {
+                ForkJoinTask.invokeAll(tasks);
+            } catch (UncheckedIOException e) {
+                throw e.getCause();
+            }
+
+            Chunk[] chunks = new Chunk[tasks.size()];
+            long lines = 0;
+            long badLines = 0;
+            String firstBadLine = null;
+            for (int i = 0; i < chunks.length; i++) {
+                chunks[i] = tasks.get(i).join();
+                lines += chunks[i].lines;
+                badLines += chunks[i].badLines;
+                if (firstBadLine == null) {
+                    firstBadLine = chunks[i].firstBadLine;
+                }
+            }
+            Object[] sorted = (chunks.length == 0) ? new Object[0]
+                    : new MergeTask<>(chunks, 0, chunks.length, set.c).invoke().elements;
+            set.loadSorted(sorted, BstSet.distinctSorted(sorted, set.c));
+            return new Stats(size, lines, set.size(), badLines, firstBadLine, System.nanoTime() - start);
+        }
+    }
+
+    /**
+     * Splits the file into ranges of about equal size; every range but the first starts
+     * after a line feed.
+     *
+     * @return range bounds, the last one is the file size
+     */
+    private static long[] chunkBounds(FileChannel channel, long size) throws IOException {
+        if (size == 0) {
+            return new long[0];
+        }
+        int threads = Runtime.getRuntime().availableProcessors();
+        long chunkBytes = Math.max(MIN_CHUNK_BYTES, size / ((long) threads * CHUNKS_PER_THREAD));
+        chunkBytes = Math.min(chunkBytes, MAX_CHUNK_BYTES);
+        long[] bounds = new long[(int) ((size + chunkBytes - 1) / chunkBytes) + 1];
+        int n = 0;
+        bounds[n++] = 0;
+        ByteBuffer buffer = ByteBuffer.allocate(8192);
+        for (long target = chunkBytes; target < size; target += chunkBytes) {
+            long lineStart = nextLineStart(channel, Math.max(target, bounds[n - 1]), size, buffer);
+            if (lineStart < size && lineStart > bounds[n - 1]) {
+                bounds[n++] = lineStart;
+            }
+        }
+        bounds[n++] = size;
+        return Arrays.copyOf(bounds, n);
+    }
+
+    // Returns the position after the first line feed at or after position - 1
+    private static long nextLineStart(FileChannel channel, long position, long size, ByteBuffer buffer) throws IOException {
+        long p = position - 1;
+        while (p < size) {
+            buffer.clear();
+            int read = channel.read(buffer, p);
+            if (read <= 0) {
+                break;
+            }
+            for (int i = 0; i < read; i++) {
+                if (buffer.get(i) == '\n') {
+                    return p + i + 1;
+                }
+            }
+            p += read;
+        }
+        return size;
+    }
+
+    /**
+     * Elements parsed from a range, sorted
+     */
+    private static final class Chunk {
+
+        final Object[] elements;
+        long lines;
+        long badLines;
+        String firstBadLine;
+
+        Chunk(Object[] elements) {
+            this.elements = elements;
+        }
+    }
+
+    private static final class ParseTask<E> extends RecursiveTask<Chunk> {
+
+        private static final long serialVersionUID = 1L;
+
+        private final FileChannel channel;
+        private final long from;
+        private final long to;
+        private final Function<String, ? extends E> createFunction;
+        private final Comparator<? super E> c;
+
+        ParseTask(FileChannel channel, long from, long to, Function<String, ? extends E> createFunction,
+                  Comparator<? super E> c) {
+            this.channel = channel;
+            this.from = from;
+            this.to = to;
+            this.createFunction = createFunction;
+            this.c = c;
+        }
+
+        @Override
+        @SuppressWarnings("unchecked")
+        protected Chunk compute() {
+            MappedByteBuffer buffer;
+            try {
+                buffer = channel.map(FileChannel.MapMode.READ_ONLY, from, to - from);
+            } catch (IOException e) {
+                throw new UncheckedIOException(e);
+            }
+            int length = (int) (to - from);
+            Object[] elements = new Object[Math.max(16, length / 64)];
+            int n = 0;
+            long lines = 0;
+            long badLines = 0;
+            String firstBadLine = null;
+            byte[] line = new byte[256];
+            int lineLength = 0;
+            for (int i = 0; i <= length; i++) {
+                byte b = (i < length) ? buffer.get(i) : (byte) '\n';
+                if (b != '\n') {
+                    if (lineLength == line.length) {
+                        line = Arrays.copyOf(line, 2 * lineLength);
+                    }
+                    line[lineLength++] = b;
+                    continue;
+                }
+                String data = new String(line, 0, lineLength, StandardCharsets.UTF_8).trim();
+                lineLength = 0;
+                if (data.isEmpty()) {
+                    continue;
+                }
+                lines++;
+                E element;
+                try {
+                    element = createFunction.apply(data);
+                } catch (RuntimeException e) {
+                    element = null;
+                }
+                if (element == null) {
+                    if (badLines++ == 0) {
+                        firstBadLine = data;
+                    }
+                    continue;
+                }
+                if (n == elements.length) {
+                    elements = Arrays.copyOf(elements, 2 * n);
+                }
+                elements[n++] = element;
+            }
+            // A stable sort keeps equal elements in line order
+            Arrays.sort((E[]) elements, 0, n, c);
+            Chunk chunk = new Chunk(Arrays.copyOf(elements, n));
+            chunk.lines = lines;
+            chunk.badLines = badLines;
+            chunk.firstBadLine = firstBadLine;
+            return chunk;
+        }
+    }
+
+    /**
+     * Merges the sorted chunks [lo, hi); on ties the element of the earlier chunk comes first
+     */
+    private static final class MergeTask<E> extends RecursiveTask<Chunk> {
+
+        private static final long serialVersionUID = 1L;
+
+        private final Chunk[] chunks;
+        private final int lo;
+        private final int hi;
+        private final Comparator<? super E> c;
+
+        MergeTask(Chunk[] chunks, int lo, int hi, Comparator<? super E> c) {
+            this.chunks = chunks;
+            this.lo = lo;
+            this.hi = hi;
+            this.c = c;
+        }
+
+        @Override
+        @SuppressWarnings("unchecked")
+        protected Chunk compute() {
+            if (hi - lo == 1) {
+                return chunks[lo];
+            }
+            int mid = (lo + hi) >>> 1;
+            MergeTask<E> left = new MergeTask<>(chunks, lo, mid, c);
+            left.fork();
+            Chunk b = new MergeTask<>(chunks, mid, hi, c).compute();
+            Chunk a = left.join();
+
+            Object[] x = a.elements;
+            Object[] y = b.elements;
+            Object[] merged = new Object[x.length + y.length];
+            int i = 0;
+            int j = 0;
+            int k = 0;
+            while (i < x.length && j < y.length) {
+                merged[k++] = (c.compare((E) y[j], (E) x[i]) < 0) ? y[j++] : x[i++];
+            }
+            System.arraycopy(x, i, merged, k, x.length - i);
+            System.arraycopy(y, j, merged, k + x.length - i, y.length - j);
+            return new Chunk(merged);
+        }
+    }
+}
@@ -7,18 +7,16 @@ package utils;
 
 
 
-import java.io.BufferedReader;
-import java.io.FileNotFoundException;
 import java.io.IOException;
-import java.nio.charset.StandardCharsets;
-import java.nio.file.Files;
-import java.nio.file.Paths;
+import java.nio.file.NoSuchFileException;
 import java.util.Comparator;
 import java.util.Optional;
 import java.util.function.Function;
 
 public class ParsableBstSet<E extends Parsable<E>> extends BstSet<E> implements ParsableSortedSet<E> {
+    // Creates an element of a line as given by the caller; load() counts a line as bad only if it throws
     private final Function<String, E> createFunction;
+    private ParallelTextLoader.Stats loadStats;
 
     public ParsableBstSet(Function<String, E> createFunction) {
         this.createFunction = createFunction;
@@ -29,45 +27,41 @@ public class ParsableBstSet<E extends Parsable<E>> extends BstSet<E> implements
         this.createFunction = createFunction;
     }
 
+    public ParsableBstSet(Function<String, E> createFunction, Comparator<? super E> c, Balancing balancing) {
+        super(c, balancing);
+        this.createFunction = createFunction;
+    }
+
     public void add(String dataString) {
         super.add(this.createElement(dataString));
     }
 
     public void load(String filePath) {
         if (filePath != null && filePath.length() != 0) {
+            if (this.createFunction == null) {
+                throw new IllegalStateException("Set element creation function is missing");
+            }
             this.clear();
 
             try {
-                BufferedReader fReader = Files.newBufferedReader(Paths.get(filePath), StandardCharsets.UTF_8);
-
-                try {
-                    fReader.lines().map(String::trim).filter((line) -> {
-                        return !line.isEmpty();
-                    }).forEach(this::add);
-                } catch (Throwable var6) {
-                    if (fReader != null) {
-                        try {
-                            fReader.close();
-                        } catch (Throwable var5) {
-                            var6.addSuppressed(var5);
-                        }
-                    }
-
-                    throw var6;
-                }
-
-                if (fReader != null) {
-                    fReader.close();
+                this.loadStats = ParallelTextLoader.load(this, filePath, this.createFunction);
+                if (this.loadStats.getBadLines() > 0) {
+                    Ks.ern("File " + filePath + ": " + this.loadStats.getBadLines() + " bad lines skipped, first -> "
+                            + this.loadStats.getFirstBadLine());
                 }
-            } catch (FileNotFoundException var7) {
+            } catch (NoSuchFileException var3) {
                 Ks.ern("Data file " + filePath + " not found");
-            } catch (IOException var8) {
+            } catch (IOException var4) {
                 Ks.ern("File " + filePath + " reading error");
             }
 
         }
     }
 
+    public ParallelTextLoader.Stats getLoadStats() {
+        return this.loadStats;
+    }
+
     protected E createElement(String data) {
         return Optional.ofNullable(createFunction)
                 .map(f -> f.apply(data))
@@ -5,5 +5,7 @@ public interface ParsableSortedSet<E> extends SortedSet<E> {
 
     void load(String var1);
 
+    ParallelTextLoader.Stats getLoadStats();
+
     Object clone() throws CloneNotSupportedException;
 }
\ No newline at end of file
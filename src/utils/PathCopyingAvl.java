@@ -0,0 +1,488 @@
+package utils;
+
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.Iterator;
+import java.util.NoSuchElementException;
+
+/**
+ * Immutable AVL tree nodes and the path-copying algorithms on them.
+ * A node never changes after it is created: an insert or a remove creates new copies of
+ * the nodes on the search path only (O(log n) of them) and shares all other subtrees
+ * with the previous version. A root that was read once therefore stays a valid tree,
+ * which any thread can read without locking. Every node keeps the height and the
+ * size of its subtree.
+ */
+final class PathCopyingAvl {
+
+    private PathCopyingAvl() {
+    }
+
+    /**
+     * Immutable tree node
+     *
+     * @param <N> node element data type
+     */
+    static final class Node<N> {
+
+        final N element;
+        final Node<N> left;
+        final Node<N> right;
+        final int height;
+        // Number of nodes in the subtree rooted at this node
+        final int count;
+
+        Node(N element, Node<N> left, Node<N> right) {
+            this.element = element;
+            this.left = left;
+            this.right = right;
+            this.height = Math.max(height(left), height(right)) + 1;
+            this.count = count(left) + count(right) + 1;
+        }
+    }
+
+    static int height(Node<?> node) {
+        return (node == null) ? -1 : node.height;
+    }
+
+    static int count(Node<?> node) {
+        return (node == null) ? 0 : node.count;
+    }
+
+    /**
+     * Returns the tree with the element added. If the element already exists,
+     * the same root is returned, so a change is detected by comparing the roots.
+     */
+    static <E> Node<E> insert(Node<E> node, E element, Comparator<? super E> c) {
+        if (node == null) {
+            return new Node<>(element, null, null);
+        }
+        int cmp = c.compare(element, node.element);
+        if (cmp < 0) {
+            Node<E> left = insert(node.left, element, c);
+            return (left == node.left) ? node : balance(node.element, left, node.right);
+        } else if (cmp > 0) {
+            Node<E> right = insert(node.right, element, c);
+            return (right == node.right) ? node : balance(node.element, node.left, right);
+        }
+        return node;
+    }
+
+    /**
+     * Returns the tree without the element. If the element does not exist, the same root is returned.
+     */
+    static <E> Node<E> remove(Node<E> node, E element, Comparator<? super E> c) {
+        if (node == null) {
+            return null;
+        }
+        int cmp = c.compare(element, node.element);
+        if (cmp < 0) {
+            Node<E> left = remove(node.left, element, c);
+            return (left == node.left) ? node : balance(node.element, left, node.right);
+        } else if (cmp > 0) {
+            Node<E> right = remove(node.right, element, c);
+            return (right == node.right) ? node : balance(node.element, node.left, right);
+        }
+        if (node.left == null) {
+            return node.right;
+        }
+        if (node.right == null) {
+            return node.left;
+        }
+        return balance(min(node.right).element, node.left, removeMin(node.right));
+    }
+
+    private static <E> Node<E> removeMin(Node<E> node) {
+        if (node.left == null) {
+            return node.right;
+        }
+        return balance(node.element, removeMin(node.left), node.right);
+    }
+
+    /**
+     * Creates a node from an element and two subtrees whose heights differ by at most 2.
+     * An AVL imbalance is fixed by a single or double rotation, which here means
+     * creating the rotated nodes instead of relinking the old ones.
+     */
+    static <E> Node<E> balance(E element, Node<E> left, Node<E> right) {
+        int hl = height(left);
+        int hr = height(right);
+        if (hl > hr + 1) {
+            if (height(left.left) >= height(left.right)) {
+                return new Node<>(left.element, left.left, new Node<>(element, left.right, right));
+            }
+            Node<E> lr = left.right;
+            return new Node<>(lr.element, new Node<>(left.element, left.left, lr.left),
+                    new Node<>(element, lr.right, right));
+        }
+        if (hr > hl + 1) {
+            if (height(right.right) >= height(right.left)) {
+                return new Node<>(right.element, new Node<>(element, left, right.left), right.right);
+            }
+            Node<E> rl = right.left;
+            return new Node<>(rl.element, new Node<>(element, left, rl.left),
+                    new Node<>(right.element, rl.right, right.right));
+        }
+        return new Node<>(element, left, right);
+    }
+
+    /**
+     * Joins two trees and an element into a new tree. Every element of the left tree must be
+     * smaller than the element and every element of the right tree greater. Only the nodes on
+     * the spine of the taller tree down to the height of the other tree are copied, see AvlSet.join.
+     */
+    static <E> Node<E> join(Node<E> left, E element, Node<E> right) {
+        if (height(left) > height(right) + 1) {
+            return joinRight(left, element, right);
+        }
+        if (height(right) > height(left) + 1) {
+            return joinLeft(left, element, right);
+        }
+        return new Node<>(element, left, right);
+    }
+
+    private static <E> Node<E> joinRight(Node<E> tl, E element, Node<E> tr) {
+        Node<E> c = tl.right;
+        if (height(c) <= height(tr) + 1) {
+            Node<E> t = new Node<>(element, c, tr);
+            if (height(t) <= height(tl.left) + 1) {
+                return new Node<>(tl.element, tl.left, t);
+            }
+            return rotateLeft(new Node<>(tl.element, tl.left, rotateRight(t)));
+        }
+        Node<E> t = joinRight(c, element, tr);
+        Node<E> joined = new Node<>(tl.element, tl.left, t);
+        return (height(t) <= height(tl.left) + 1) ? joined : rotateLeft(joined);
+    }
+
+    private static <E> Node<E> joinLeft(Node<E> tl, E element, Node<E> tr) {
+        Node<E> c = tr.left;
+        if (height(c) <= height(tl) + 1) {
+            Node<E> t = new Node<>(element, tl, c);
+            if (height(t) <= height(tr.right) + 1) {
+                return new Node<>(tr.element, t, tr.right);
+            }
+            return rotateRight(new Node<>(tr.element, rotateLeft(t), tr.right));
+        }
+        Node<E> t = joinLeft(tl, element, c);
+        Node<E> joined = new Node<>(tr.element, t, tr.right);
+        return (height(t) <= height(tr.right) + 1) ? joined : rotateRight(joined);
+    }
+
+    private static <E> Node<E> rotateLeft(Node<E> n) {
+        Node<E> r = n.right;
+        return new Node<>(r.element, new Node<>(n.element, n.left, r.left), r.right);
+    }
+
+    private static <E> Node<E> rotateRight(Node<E> n) {
+        Node<E> l = n.left;
+        return new Node<>(l.element, l.left, new Node<>(n.element, l.right, n.right));
+    }
+
+    /**
+     * Returns a tree of the elements below the bound, or equal to it if inclusive is true.
+     * The subtrees entirely below the bound are shared, O(log n) nodes are created.
+     */
+    static <E> Node<E> headTree(Node<E> node, E bound, boolean inclusive, Comparator<? super E> c) {
+        if (node == null) {
+            return null;
+        }
+        int cmp = c.compare(bound, node.element);
+        if (cmp < 0) {
+            return headTree(node.left, bound, inclusive, c);
+        }
+        if (cmp == 0) {
+            return inclusive ? join(node.left, node.element, null) : node.left;
+        }
+        return join(node.left, node.element, headTree(node.right, bound, inclusive, c));
+    }
+
+    /**
+     * Returns a tree of the elements above the bound, or equal to it if inclusive is true.
+     */
+    static <E> Node<E> tailTree(Node<E> node, E bound, boolean inclusive, Comparator<? super E> c) {
+        if (node == null) {
+            return null;
+        }
+        int cmp = c.compare(bound, node.element);
+        if (cmp > 0) {
+            return tailTree(node.right, bound, inclusive, c);
+        }
+        if (cmp == 0) {
+            return inclusive ? join(null, node.element, node.right) : node.right;
+        }
+        return join(tailTree(node.left, bound, inclusive, c), node.element, node.right);
+    }
+
+    /**
+     * Builds a perfectly balanced tree of the sorted distinct elements sorted[lo..hi]
+     */
+    @SuppressWarnings("unchecked")
+    static <E> Node<E> build(Object[] sorted, int lo, int hi) {
+        if (lo > hi) {
+            return null;
+        }
+        int mid = (lo + hi) >>> 1;
+        return new Node<>((E) sorted[mid], build(sorted, lo, mid - 1), build(sorted, mid + 1, hi));
+    }
+
+    @SuppressWarnings({"unchecked", "rawtypes"})
+    private static <E> Node<E>[] newStack(int length) {
+        return new Node[length];
+    }
+
+    static <E> Node<E> find(Node<E> node, E element, Comparator<? super E> c) {
+        while (node != null) {
+            int cmp = c.compare(element, node.element);
+            if (cmp < 0) {
+                node = node.left;
+            } else if (cmp > 0) {
+                node = node.right;
+            } else {
+                return node;
+            }
+        }
+        return null;
+    }
+
+    static <E> Node<E> min(Node<E> node) {
+        if (node != null) {
+            while (node.left != null) {
+                node = node.left;
+            }
+        }
+        return node;
+    }
+
+    static <E> Node<E> max(Node<E> node) {
+        if (node != null) {
+            while (node.right != null) {
+                node = node.right;
+            }
+        }
+        return node;
+    }
+
+    /**
+     * Finds the node with the greatest element below the element, or equal to it if inclusive is true
+     */
+    static <E> Node<E> lowerNode(Node<E> node, E element, boolean inclusive, Comparator<? super E> c) {
+        Node<E> candidate = null;
+        while (node != null) {
+            int cmp = c.compare(element, node.element);
+            if (cmp == 0 && inclusive) {
+                return node;
+            }
+            if (cmp > 0) {
+                candidate = node;
+                node = node.right;
+            } else {
+                node = node.left;
+            }
+        }
+        return candidate;
+    }
+
+    /**
+     * Finds the node with the smallest element above the element, or equal to it if inclusive is true
+     */
+    static <E> Node<E> higherNode(Node<E> node, E element, boolean inclusive, Comparator<? super E> c) {
+        Node<E> candidate = null;
+        while (node != null) {
+            int cmp = c.compare(element, node.element);
+            if (cmp == 0 && inclusive) {
+                return node;
+            }
+            if (cmp < 0) {
+                candidate = node;
+                node = node.left;
+            } else {
+                node = node.right;
+            }
+        }
+        return candidate;
+    }
+
+    static <E> E elementOf(Node<E> node) {
+        return (node == null) ? null : node.element;
+    }
+
+    /**
+     * Returns the element at position k of the ascending order, k must be in [0, count(node))
+     */
+    static <E> E select(Node<E> node, int k) {
+        while (true) {
+            int leftCount = count(node.left);
+            if (k < leftCount) {
+                node = node.left;
+            } else if (k > leftCount) {
+                k -= leftCount + 1;
+                node = node.right;
+            } else {
+                return node.element;
+            }
+        }
+    }
+
+    /**
+     * Counts the elements less than the element, or not greater than it if inclusive is true
+     */
+    static <E> int countBelow(Node<E> node, E element, boolean inclusive, Comparator<? super E> c) {
+        int rank = 0;
+        while (node != null) {
+            int cmp = c.compare(element, node.element);
+            if (cmp < 0) {
+                node = node.left;
+            } else if (cmp > 0) {
+                rank += count(node.left) + 1;
+                node = node.right;
+            } else {
+                return rank + count(node.left) + (inclusive ? 1 : 0);
+            }
+        }
+        return rank;
+    }
+
+    /**
+     * Copies the elements of the tree between the bounds into an array in ascending order,
+     * a null bound means no bound
+     */
+    static <E> Object[] toArray(Node<E> root, E lo, boolean loInclusive, E hi, boolean hiInclusive,
+                                Comparator<? super E> c) {
+        int n = (hi == null ? count(root) : countBelow(root, hi, hiInclusive, c))
+                - (lo == null ? 0 : countBelow(root, lo, !loInclusive, c));
+        Object[] array = new Object[Math.max(n, 0)];
+        NodeIterator<E> it = new NodeIterator<>(root, c, true, lo, loInclusive, hi, hiInclusive);
+        for (int i = 0; i < array.length; i++) {
+            array[i] = it.next();
+        }
+        return array;
+    }
+
+    /**
+     * Draws the tree in the same way as {@link BstSet#toVisualizedString(String)}
+     */
+    static <E> String toVisualizedString(Node<E> root, String dataCodeDelimiter) {
+        String horizontal = BstSet.term[0] + BstSet.term[0];
+        return root == null ? ">" + horizontal
+                : toTreeDraw(root, ">", "", horizontal, dataCodeDelimiter);
+    }
+
+    private static <E> String toTreeDraw(Node<E> node, String edge, String indent, String horizontal,
+                                         String dataCodeDelimiter) {
+        if (node == null) {
+            return "";
+        }
+        String step = (edge.equals(BstSet.leftEdge)) ? BstSet.vertical : " ";
+        StringBuilder sb = new StringBuilder();
+        sb.append(toTreeDraw(node.right, BstSet.rightEdge, indent + step, horizontal, dataCodeDelimiter));
+        int t = (node.right != null) ? 1 : 0;
+        t = (node.left != null) ? t + 2 : t;
+        String label = node.element.toString();
+        int k = label.indexOf(dataCodeDelimiter);
+        if (k > 0) {
+            label = label.substring(0, k);
+        }
+        sb.append(indent).append(edge).append(horizontal).append(BstSet.term[t]).append(BstSet.endEdge)
+                .append(label).append(System.lineSeparator());
+        step = (edge.equals(BstSet.rightEdge)) ? BstSet.vertical : " ";
+        sb.append(toTreeDraw(node.left, BstSet.leftEdge, indent + step, horizontal, dataCodeDelimiter));
+        return sb.toString();
+    }
+
+    /**
+     * Iterator over one version of the tree. The version never changes, so the iterator
+     * needs no locking and is not affected by later updates. The path to the next node
+     * is kept in an array stack; removing is left to the owners of the tree.
+     *
+     * @param <E> element type
+     */
+    static class NodeIterator<E> implements Iterator<E> {
+
+        private final Comparator<? super E> c;
+        // Specifies the direction of the iterator, true for ascending, false for descending
+        private final boolean ascending;
+        // The iteration stops after this element, null for no limit
+        private final E stop;
+        private final boolean stopInclusive;
+        private Node<E>[] stack;
+        private int top = 0;
+        // The last returned element
+        protected E last;
+
+        NodeIterator(Node<E> root, Comparator<? super E> c, boolean ascending,
+                     E lo, boolean loInclusive, E hi, boolean hiInclusive) {
+            this.c = c;
+            this.ascending = ascending;
+            this.stop = ascending ? hi : lo;
+            this.stopInclusive = ascending ? hiInclusive : loInclusive;
+            // An AVL tree is lower than 1.45 log2(n + 2)
+            this.stack = newStack(height(root) + 1);
+            E start = ascending ? lo : hi;
+            if (start == null) {
+                toStack(root);
+            } else {
+                seek(root, start, ascending ? loInclusive : hiInclusive);
+            }
+        }
+
+        @Override
+        public boolean hasNext() {
+            if (top == 0) {
+                return false;
+            }
+            if (stop == null) {
+                return true;
+            }
+            int cmp = c.compare(stack[top - 1].element, stop);
+            if (!ascending) {
+                cmp = -cmp;
+            }
+            return cmp < 0 || (cmp == 0 && stopInclusive);
+        }
+
+        @Override
+        public E next() {
+            if (!hasNext()) {
+                throw new NoSuchElementException();
+            }
+            Node<E> n = stack[--top];
+            stack[top] = null;
+            toStack(ascending ? n.right : n.left);
+            last = n.element;
+            return last;
+        }
+
+        private void toStack(Node<E> node) {
+            while (node != null) {
+                push(node);
+                node = ascending ? node.left : node.right;
+            }
+        }
+
+        private void seek(Node<E> node, E start, boolean inclusive) {
+            while (node != null) {
+                int cmp = c.compare(start, node.element);
+                if (!ascending) {
+                    cmp = -cmp;
+                }
+                if (cmp < 0 || (cmp == 0 && inclusive)) {
+                    push(node);
+                    if (cmp == 0) {
+                        return;
+                    }
+                    node = ascending ? node.left : node.right;
+                } else {
+                    node = ascending ? node.right : node.left;
+                }
+            }
+        }
+
+        private void push(Node<E> node) {
+            if (top == stack.length) {
+                stack = Arrays.copyOf(stack, top * 2 + 1);
+            }
+            stack[top++] = node;
+        }
+    }
+}
@@ -0,0 +1,230 @@
+package utils;
+
+import utils.PathCopyingAvl.Node;
+import utils.PathCopyingAvl.NodeIterator;
+
+import java.lang.reflect.Array;
+import java.util.Comparator;
+import java.util.Iterator;
+import java.util.NoSuchElementException;
+import java.util.Spliterator;
+import java.util.Spliterators;
+
+/**
+ * Common read side of the sets on a tree of immutable nodes (see {@link PathCopyingAvl}).
+ * Every read takes the root from the volatile field once and works on that version of
+ * the tree only, so it needs no locking. The changes are left to the subclasses, which
+ * publish a new version by writing the root.
+ *
+ * @param <E> Type of the set element
+ */
+abstract class PathCopyingAvlSet<E extends Comparable<E>> implements SortedSet<E> {
+
+    // The root of the current version of the tree
+    protected volatile Node<E> root = null;
+    // Pointer to comparator
+    protected final Comparator<? super E> c;
+
+    protected PathCopyingAvlSet(Comparator<? super E> c, Node<E> root) {
+        this.c = c;
+        this.root = root;
+    }
+
+    /**
+     * Checks if the set is empty.
+     *
+     * @return Returns true if the set is empty.
+     */
+    @Override
+    public boolean isEmpty() {
+        return root == null;
+    }
+
+    /**
+     * @return Returns the number of elements in the set.
+     */
+    @Override
+    public int size() {
+        return PathCopyingAvl.count(root);
+    }
+
+    // Returns the tree of the elements of the version that are in the set, or the version itself if all are
+    protected Node<E> retained(Node<E> version, Set<E> set) {
+        Object[] kept = new Object[PathCopyingAvl.count(version)];
+        int n = 0;
+        for (NodeIterator<E> it = iterator(version, true); it.hasNext(); ) {
+            E element = it.next();
+            if (set.contains(element)) {
+                kept[n++] = element;
+            }
+        }
+        return (n < kept.length) ? PathCopyingAvl.build(kept, 0, n - 1) : version;
+    }
+
+    /**
+     * Checks whether an element exists in the set. The method never blocks.
+     *
+     * @param element - element of the set.
+     * @return true if an element exists in the set, else false.
+     */
+    @Override
+    public boolean contains(E element) {
+        if (element == null) {
+            throw new IllegalArgumentException("Element is null in contains(E element)");
+        }
+        return PathCopyingAvl.find(root, element, c) != null;
+    }
+
+    /**
+     * Checks if all elements of the input set exist in one version of the set
+     *
+     * @param set input set
+     * @return true if every element of the input set exists in the set
+     */
+    @Override
+    public boolean containsAll(Set<E> set) {
+        Node<E> current = root;
+        for (E element : set) {
+            if (PathCopyingAvl.find(current, element, c) == null) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    /**
+     * Converts set to an array.
+     *
+     * @return Returns an array of set elements.
+     */
+    @Override
+    public Object[] toArray() {
+        return PathCopyingAvl.toArray(root, null, false, null, false, c);
+    }
+
+    @Override
+    @SuppressWarnings("unchecked")
+    public E[] toArray(Class<E> clasz) {
+        Object[] elements = toArray();
+        E[] array = (E[]) Array.newInstance(clasz, elements.length);
+        System.arraycopy(elements, 0, array, 0, elements.length);
+        return array;
+    }
+
+    /**
+     * Forms an Inorder (ascending order) string of set elements.
+     *
+     * @return string of set elements
+     */
+    @Override
+    public String toString() {
+        StringBuilder sb = new StringBuilder();
+        for (E element : this) {
+            sb.append(element.toString()).append(System.lineSeparator());
+        }
+        return sb.toString();
+    }
+
+    @Override
+    public String toVisualizedString(String dataCodeDelimiter) {
+        return PathCopyingAvl.toVisualizedString(root, dataCodeDelimiter);
+    }
+
+    @Override
+    public E floor(E element) {
+        if (element == null) {
+            throw new IllegalArgumentException("Element is null in floor(E element)");
+        }
+        return PathCopyingAvl.elementOf(PathCopyingAvl.lowerNode(root, element, true, c));
+    }
+
+    @Override
+    public E ceiling(E element) {
+        if (element == null) {
+            throw new IllegalArgumentException("Element is null in ceiling(E element)");
+        }
+        return PathCopyingAvl.elementOf(PathCopyingAvl.higherNode(root, element, true, c));
+    }
+
+    @Override
+    public E lower(E element) {
+        if (element == null) {
+            throw new IllegalArgumentException("Element is null in lower(E element)");
+        }
+        return PathCopyingAvl.elementOf(PathCopyingAvl.lowerNode(root, element, false, c));
+    }
+
+    @Override
+    public E higher(E element) {
+        if (element == null) {
+            throw new IllegalArgumentException("Element is null in higher(E element)");
+        }
+        return PathCopyingAvl.elementOf(PathCopyingAvl.higherNode(root, element, false, c));
+    }
+
+    @Override
+    public E first() {
+        Node<E> node = PathCopyingAvl.min(root);
+        if (node == null) {
+            throw new NoSuchElementException("Set is empty");
+        }
+        return node.element;
+    }
+
+    @Override
+    public E last() {
+        Node<E> node = PathCopyingAvl.max(root);
+        if (node == null) {
+            throw new NoSuchElementException("Set is empty");
+        }
+        return node.element;
+    }
+
+    /**
+     * Returns an iterator over the version of the set current at the time of the call.
+     * Later changes are not visible to the iterator and do not disturb it;
+     * remove() removes the last returned element from the set.
+     *
+     * @return natural iterator.
+     */
+    @Override
+    public Iterator<E> iterator() {
+        return iterator(root, true);
+    }
+
+    /**
+     * Returns the inverse iterator over the current version of the set.
+     *
+     * @return inverse iterator.
+     */
+    @Override
+    public Iterator<E> descendingIterator() {
+        return iterator(root, false);
+    }
+
+    /**
+     * Returns a spliterator over the current version, so its size and elements always agree.
+     *
+     * @return spliterator over the elements in ascending order
+     */
+    @Override
+    public Spliterator<E> spliterator() {
+        Node<E> version = root;
+        return Spliterators.spliterator(iterator(version, true), PathCopyingAvl.count(version),
+                Spliterator.DISTINCT | Spliterator.ORDERED | Spliterator.NONNULL);
+    }
+
+    // Iterator over the version, remove() goes through the remove of the subclass
+    private NodeIterator<E> iterator(Node<E> version, boolean ascending) {
+        return new NodeIterator<E>(version, c, ascending, null, false, null, false) {
+            @Override
+            public void remove() {
+                if (last == null) {
+                    throw new IllegalStateException("error in remove Iterator");
+                }
+                PathCopyingAvlSet.this.remove(last);
+                last = null;
+            }
+        };
+    }
+}
@@ -0,0 +1,258 @@
+package utils;
+
+import utils.PathCopyingAvl.Node;
+
+import java.util.Comparator;
+
+/**
+ * Persistent ordered set on an AVL tree of immutable nodes (see {@link PathCopyingAvl}).
+ * <p>
+ * A change never modifies a node: add and remove copy the O(log n) nodes on the search
+ * path and share all other subtrees with the previous version. Therefore
+ * {@link #snapshot()} and {@link #clone()} take O(1) time and memory: the copy just shares
+ * the root. The copy and the original can be changed independently afterwards, and
+ * n snapshots of a slowly changing set take memory in proportion to the number of
+ * changes, not n times the size of the set.
+ * <p>
+ * {@link #with(Comparable)} and {@link #without(Comparable)} return a new version and
+ * leave the set unchanged. A version that is not changed any more (for example a snapshot)
+ * can be read by any number of threads without locking. Changing one set object from
+ * several threads still requires external synchronization, see {@link ConcurrentSortedSet}.
+ *
+ * @param <E> Type of the set element. Must implement the Comparable<E> interface, or
+ *            an object that implements Comparator<E> interface must be passed through the class constructor
+ */
+public class PersistentAvlSet<E extends Comparable<E>> extends PathCopyingAvlSet<E> implements Cloneable {
+
+    /**
+     * Creates a set object, whereby comparator is defined by Comparable<E>
+     */
+    public PersistentAvlSet() {
+        this(Comparator.naturalOrder());
+    }
+
+    /**
+     * Creates a set object with custom Comparator<E> comparator
+     *
+     * @param c Comparator
+     */
+    public PersistentAvlSet(Comparator<? super E> c) {
+        super(c, null);
+    }
+
+    PersistentAvlSet(Comparator<? super E> c, Node<E> root) {
+        super(c, root);
+    }
+
+    /**
+     * Returns a set with the same elements in O(1). The snapshot does not change when
+     * this set changes, and vice versa.
+     *
+     * @return snapshot of the current version
+     */
+    public PersistentAvlSet<E> snapshot() {
+        return new PersistentAvlSet<E>(c, root);
+    }
+
+    /**
+     * Returns a new version with the element added, the set itself is not changed.
+     *
+     * @param element - element.
+     * @return the new version, or this set if the element already exists
+     */
+    public PersistentAvlSet<E> with(E element) {
+        if (element == null) {
+            throw new IllegalArgumentException("Element is null in with(E element)");
+        }
+        Node<E> current = root;
+        Node<E> updated = PathCopyingAvl.insert(current, element, c);
+        return (updated == current) ? this : new PersistentAvlSet<E>(c, updated);
+    }
+
+    /**
+     * Returns a new version with the element removed, the set itself is not changed.
+     *
+     * @param element - element.
+     * @return the new version, or this set if the element does not exist
+     */
+    public PersistentAvlSet<E> without(E element) {
+        if (element == null) {
+            throw new IllegalArgumentException("Element is null in without(E element)");
+        }
+        Node<E> current = root;
+        Node<E> updated = PathCopyingAvl.remove(current, element, c);
+        return (updated == current) ? this : new PersistentAvlSet<E>(c, updated);
+    }
+
+    /**
+     * Clears the set.
+     */
+    @Override
+    public void clear() {
+        root = null;
+    }
+
+    /**
+     * Adds a new element to the set.
+     *
+     * @param element - element.
+     */
+    @Override
+    public void add(E element) {
+        if (element == null) {
+            throw new IllegalArgumentException("Element is null in add(E element)");
+        }
+        root = PathCopyingAvl.insert(root, element, c);
+    }
+
+    /**
+     * Adds all elements of the input set to the set.
+     *
+     * @param set input set
+     */
+    @Override
+    public void addAll(Set<E> set) {
+        if (set == this) {
+            return;
+        }
+        Node<E> updated = root;
+        for (E element : set) {
+            if (element == null) {
+                throw new IllegalArgumentException("Element is null in addAll(Set<E> set)");
+            }
+            updated = PathCopyingAvl.insert(updated, element, c);
+        }
+        root = updated;
+    }
+
+    /**
+     * Removes an element from the set.
+     *
+     * @param element - element.
+     */
+    @Override
+    public void remove(E element) {
+        if (element == null) {
+            throw new IllegalArgumentException("Element is null in remove(E element)");
+        }
+        root = PathCopyingAvl.remove(root, element, c);
+    }
+
+    /**
+     * Only elements within the input set remain in the set.
+     *
+     * @param set input set
+     */
+    @Override
+    public void retainAll(Set<E> set) {
+        if (set == this) {
+            return;
+        }
+        root = retained(root, set);
+    }
+
+    /**
+     * Returns the element at the given position of the ascending order in O(log n).
+     *
+     * @param k position, 0 for the smallest element
+     * @return the k-th smallest element
+     */
+    public E select(int k) {
+        Node<E> current = root;
+        if (k < 0 || k >= PathCopyingAvl.count(current)) {
+            throw new IndexOutOfBoundsException("Index " + k + " out of bounds for size "
+                    + PathCopyingAvl.count(current));
+        }
+        return PathCopyingAvl.select(current, k);
+    }
+
+    /**
+     * Returns the number of elements less than the element in O(log n).
+     *
+     * @param element - element.
+     * @return the position the element has or would have in the ascending order
+     */
+    public int rank(E element) {
+        if (element == null) {
+            throw new IllegalArgumentException("Element is null in rank(E element)");
+        }
+        return PathCopyingAvl.countBelow(root, element, false, c);
+    }
+
+    /**
+     * Creates and returns a copy of the set in O(1), the copy shares all nodes with the set.
+     *
+     * @return A copy of the set.
+     */
+    @Override
+    public PersistentAvlSet<E> clone() {
+        return snapshot();
+    }
+
+    /**
+     * Returns a set of the elements less than the element. The result shares the subtrees
+     * with this set and is created in O(log n).
+     *
+     * @param element - limit element.
+     * @return the elements less than the element
+     */
+    @Override
+    public PersistentAvlSet<E> headSet(E element) {
+        if (element == null) {
+            throw new IllegalArgumentException("Element is null in headSet(E element)");
+        }
+        return new PersistentAvlSet<E>(c, PathCopyingAvl.headTree(root, element, false, c));
+    }
+
+    /**
+     * Returns a set of the elements from element1 (inclusive) to element2 (exclusive) in O(log n).
+     *
+     * @param element1 - start element.
+     * @param element2 - end element.
+     * @return the elements from element1 (inclusive) to element2 (exclusive)
+     */
+    @Override
+    public PersistentAvlSet<E> subSet(E element1, E element2) {
+        if (element1 == null || element2 == null) {
+            throw new IllegalArgumentException("Element is null in subSet(E element1, E element2)");
+        }
+        Node<E> tail = PathCopyingAvl.tailTree(root, element1, true, c);
+        return new PersistentAvlSet<E>(c, PathCopyingAvl.headTree(tail, element2, false, c));
+    }
+
+    /**
+     * Returns a set of the elements greater than or equal to the element in O(log n).
+     *
+     * @param element - element of the set.
+     * @return the elements greater than or equal to the element
+     */
+    @Override
+    public PersistentAvlSet<E> tailSet(E element) {
+        if (element == null) {
+            throw new IllegalArgumentException("Element is null in tailSet(E element)");
+        }
+        return new PersistentAvlSet<E>(c, PathCopyingAvl.tailTree(root, element, true, c));
+    }
+
+    @Override
+    public E pollFirst() {
+        Node<E> current = root;
+        Node<E> node = PathCopyingAvl.min(current);
+        if (node == null) {
+            return null;
+        }
+        root = PathCopyingAvl.remove(current, node.element, c);
+        return node.element;
+    }
+
+    @Override
+    public E pollLast() {
+        Node<E> current = root;
+        Node<E> node = PathCopyingAvl.max(current);
+        if (node == null) {
+            return null;
+        }
+        root = PathCopyingAvl.remove(current, node.element, c);
+        return node.element;
+    }
+}
@@ -0,0 +1,182 @@
+package utils;
+
+import java.util.Arrays;
+import java.util.Comparator;
+
+/**
+ * The AVL-tree implementation of a ordered set with array-backed node storage.
+ * The node heights are kept in a byte[] next to the element and children arrays
+ * of {@link PooledBstSet}; an AVL tree of any size that fits in an array is lower than 127.
+ *
+ * @param <E> Type of the set element. Must implement the Comparable<E> interface, or
+ *            an object that implements Comparator<E> interface must be passed through the class constructor
+ */
+public class PooledAvlSet<E extends Comparable<E>> extends PooledBstSet<E> implements SortedSet<E> {
+
+    // Node heights
+    protected byte[] heights;
+
+    public PooledAvlSet() {
+        this(Comparator.naturalOrder(), DEFAULT_CAPACITY);
+    }
+
+    public PooledAvlSet(Comparator<? super E> c) {
+        this(c, DEFAULT_CAPACITY);
+    }
+
+    public PooledAvlSet(Comparator<? super E> c, int initialCapacity) {
+        super(c, initialCapacity);
+        heights = new byte[elements.length];
+    }
+
+    @Override
+    protected int newNode(E element) {
+        int node = super.newNode(element);
+        heights[node] = 0;
+        return node;
+    }
+
+    @Override
+    protected void grow(int capacity) {
+        super.grow(capacity);
+        heights = Arrays.copyOf(heights, capacity);
+    }
+
+    /**
+     * Adds a new element to the set.
+     *
+     * @param element
+     */
+    @Override
+    public void add(E element) {
+        if (element == null) {
+            throw new IllegalArgumentException("Element is null in add(E element)");
+        }
+        root = addRecursive(element, root);
+    }
+
+    private int addRecursive(E element, int node) {
+        if (node == NIL) {
+            return newNode(element);
+        }
+        int cmp = c.compare(element, element(node));
+
+        if (cmp < 0) {
+            // The arrays may grow during the call, so the child is stored afterwards
+            int child = addRecursive(element, left[node]);
+            left[node] = child;
+            if ((height(left[node]) - height(right[node])) == 2) {
+                int cmp2 = c.compare(element, element(left[node]));
+                node = cmp2 < 0 ? rightRotation(node) : doubleRightRotation(node);
+            }
+        } else if (cmp > 0) {
+            int child = addRecursive(element, right[node]);
+            right[node] = child;
+            if ((height(right[node]) - height(left[node])) == 2) {
+                int cmp2 = c.compare(element(right[node]), element);
+                node = cmp2 < 0 ? leftRotation(node) : doubleLeftRotation(node);
+            }
+        }
+        updateHeight(node);
+        return node;
+    }
+
+    /**
+     * Removes an element from the set.
+     *
+     * @param element
+     */
+    @Override
+    public void remove(E element) {
+        if (element == null) {
+            throw new IllegalArgumentException("Element is null in remove(E element)");
+        }
+        root = removeRecursive(element, root);
+    }
+
+    private int removeRecursive(E element, int n) {
+        if (n == NIL) {
+            return NIL;
+        }
+
+        int cmp = c.compare(element, element(n));
+        if (cmp < 0) {
+            left[n] = removeRecursive(element, left[n]);
+        } else if (cmp > 0) {
+            right[n] = removeRecursive(element, right[n]);
+        } else if (left[n] != NIL && right[n] != NIL) {
+            int minNode = getMin(right[n]);
+            elements[n] = elements[minNode];
+            right[n] = removeRecursive(element(minNode), right[n]);
+        } else {
+            int child = (left[n] != NIL) ? left[n] : right[n];
+            freeNode(n);
+            return child;
+        }
+        return balance(n);
+    }
+
+    private int balance(int n) {
+        if (height(left[n]) - height(right[n]) == 2) {
+            int leftChild = left[n];
+            n = height(left[leftChild]) >= height(right[leftChild]) ? rightRotation(n) : doubleRightRotation(n);
+        } else if (height(right[n]) - height(left[n]) == 2) {
+            int rightChild = right[n];
+            n = height(right[rightChild]) >= height(left[rightChild]) ? leftRotation(n) : doubleLeftRotation(n);
+        } else {
+            updateHeight(n);
+        }
+        return n;
+    }
+
+    // AVL tree rotation methods, see AvlSet
+
+    private int rightRotation(int n2) {
+        int n1 = left[n2];
+        left[n2] = right[n1];
+        right[n1] = n2;
+        updateHeight(n2);
+        updateHeight(n1);
+        return n1;
+    }
+
+    private int leftRotation(int n1) {
+        int n2 = right[n1];
+        right[n1] = left[n2];
+        left[n2] = n1;
+        updateHeight(n1);
+        updateHeight(n2);
+        return n2;
+    }
+
+    private int doubleRightRotation(int n3) {
+        left[n3] = leftRotation(left[n3]);
+        return rightRotation(n3);
+    }
+
+    private int doubleLeftRotation(int n1) {
+        right[n1] = rightRotation(right[n1]);
+        return leftRotation(n1);
+    }
+
+    private void updateHeight(int n) {
+        heights[n] = (byte) (Math.max(height(left[n]), height(right[n])) + 1);
+    }
+
+    private int height(int n) {
+        return (n == NIL) ? -1 : heights[n];
+    }
+
+    @Override
+    @SuppressWarnings("unchecked")
+    public Object clone() throws CloneNotSupportedException {
+        PooledAvlSet<E> cl = (PooledAvlSet<E>) super.clone();
+        cl.heights = heights.clone();
+        return cl;
+    }
+
+    @Override
+    protected PooledBstSet<E> emptySet() {
+        return new PooledAvlSet<E>(c);
+    }
+}
@@ -0,0 +1,714 @@
+package utils;
+
+import java.lang.reflect.Array;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.Iterator;
+import java.util.NoSuchElementException;
+
+/**
+ * The binary search tree implementation of a ordered set with array-backed node storage.
+ * The set behaves like {@link BstSet}, but a node is an index into parallel arrays:
+ * element references are kept in an Object[] and the children in int[] arrays.
+ * Removed nodes are chained into a free list and reused by later inserts, so no
+ * node objects are allocated and traversals read neighbouring array cells.
+ *
+ * @param <E> Type of the set element. Must implement the Comparable<E> interface, or
+ *            an object that implements Comparator<E> interface must be passed through the class constructor
+ */
+public class PooledBstSet<E extends Comparable<E>> implements SortedSet<E>, Cloneable {
+
+    // Index of the missing node
+    protected static final int NIL = -1;
+    protected static final int DEFAULT_CAPACITY = 16;
+
+    // Node elements
+    protected Object[] elements;
+    // Left children indexes, also used to chain the free list
+    protected int[] left;
+    // Right children indexes
+    protected int[] right;
+    // The root node index
+    protected int root = NIL;
+    // Tree size
+    protected int size = 0;
+    // Pointer to comparator
+    protected Comparator<? super E> c;
+    // Head of the free list
+    private int freeHead = NIL;
+    // First index that has never been used
+    private int nextIndex = 0;
+
+    /**
+     * Creates a set object, whereby comparator is defined by Comparable<E>
+     */
+    public PooledBstSet() {
+        this(Comparator.naturalOrder(), DEFAULT_CAPACITY);
+    }
+
+    /**
+     * Creates a set object with custom Comparator<E> comparator
+     *
+     * @param c Comparator
+     */
+    public PooledBstSet(Comparator<? super E> c) {
+        this(c, DEFAULT_CAPACITY);
+    }
+
+    /**
+     * Creates a set object with custom Comparator<E> comparator and preallocated node storage
+     *
+     * @param c               Comparator
+     * @param initialCapacity number of nodes to preallocate
+     */
+    public PooledBstSet(Comparator<? super E> c, int initialCapacity) {
+        if (initialCapacity < 0) {
+            throw new IllegalArgumentException("Negative capacity in PooledBstSet(c, " + initialCapacity + ")");
+        }
+        this.c = c;
+        int capacity = Math.max(initialCapacity, 1);
+        elements = new Object[capacity];
+        left = new int[capacity];
+        right = new int[capacity];
+    }
+
+    /**
+     * Checks if the set is empty.
+     *
+     * @return Returns true if the set is empty.
+     */
+    @Override
+    public boolean isEmpty() {
+        return root == NIL;
+    }
+
+    /**
+     * @return Returns the number of elements in the set.
+     */
+    @Override
+    public int size() {
+        return size;
+    }
+
+    /**
+     * Clears the set. The node storage is kept for reuse.
+     */
+    @Override
+    public void clear() {
+        Arrays.fill(elements, 0, nextIndex, null);
+        root = NIL;
+        size = 0;
+        freeHead = NIL;
+        nextIndex = 0;
+    }
+
+    @SuppressWarnings("unchecked")
+    protected final E element(int node) {
+        return (E) elements[node];
+    }
+
+    /**
+     * Takes a node from the free list or from the unused part of the arrays
+     *
+     * @param element node element
+     * @return index of the new node
+     */
+    protected int newNode(E element) {
+        int node;
+        if (freeHead != NIL) {
+            node = freeHead;
+            freeHead = left[node];
+        } else {
+            if (nextIndex == elements.length) {
+                grow(elements.length + (elements.length >> 1) + 1);
+            }
+            node = nextIndex++;
+        }
+        elements[node] = element;
+        left[node] = NIL;
+        right[node] = NIL;
+        size++;
+        return node;
+    }
+
+    /**
+     * Puts the node on the free list
+     *
+     * @param node index of an unlinked node
+     */
+    protected void freeNode(int node) {
+        elements[node] = null;
+        left[node] = freeHead;
+        freeHead = node;
+        size--;
+    }
+
+    /**
+     * Grows the node storage
+     *
+     * @param capacity new capacity
+     */
+    protected void grow(int capacity) {
+        elements = Arrays.copyOf(elements, capacity);
+        left = Arrays.copyOf(left, capacity);
+        right = Arrays.copyOf(right, capacity);
+    }
+
+    /**
+     * Checks whether an element exists in the set.
+     *
+     * @param element - element of the set.
+     * @return true if an element exists in the set, else false.
+     */
+    @Override
+    public boolean contains(E element) {
+        if (element == null) {
+            throw new IllegalArgumentException("Element is null in contains(E element)");
+        }
+        return findNode(element) != NIL;
+    }
+
+    protected int findNode(E element) {
+        int node = root;
+        while (node != NIL) {
+            int cmp = c.compare(element, element(node));
+            if (cmp < 0) {
+                node = left[node];
+            } else if (cmp > 0) {
+                node = right[node];
+            } else {
+                return node;
+            }
+        }
+        return NIL;
+    }
+
+    /**
+     * Checks if all elements of the input set exist in the set
+     *
+     * @param set input set
+     * @return true if every element of the input set exists in the set
+     */
+    @Override
+    public boolean containsAll(Set<E> set) {
+        for (E element : set) {
+            if (!contains(element)) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    /**
+     * Adds a new element to the set.
+     *
+     * @param element - element.
+     */
+    @Override
+    public void add(E element) {
+        if (element == null) {
+            throw new IllegalArgumentException("Element is null in add(E element)");
+        }
+        root = addRecursive(element, root);
+    }
+
+    private int addRecursive(E element, int node) {
+        if (node == NIL) {
+            return newNode(element);
+        }
+
+        int cmp = c.compare(element, element(node));
+        if (cmp < 0) {
+            // The arrays may grow during the call, so the child is stored afterwards
+            int child = addRecursive(element, left[node]);
+            left[node] = child;
+        } else if (cmp > 0) {
+            int child = addRecursive(element, right[node]);
+            right[node] = child;
+        }
+        return node;
+    }
+
+    /**
+     * Adds all elements of the input set to the set
+     *
+     * @param set input set
+     */
+    @Override
+    public void addAll(Set<E> set) {
+        for (E element : set) {
+            add(element);
+        }
+    }
+
+    /**
+     * Removes an element from the set.
+     *
+     * @param element - element.
+     */
+    @Override
+    public void remove(E element) {
+        if (element == null) {
+            throw new IllegalArgumentException("Element is null in remove(E element)");
+        }
+        root = removeRecursive(element, root);
+    }
+
+    private int removeRecursive(E element, int node) {
+        if (node == NIL) {
+            return NIL;
+        }
+
+        int cmp = c.compare(element, element(node));
+        if (cmp < 0) {
+            left[node] = removeRecursive(element, left[node]);
+        } else if (cmp > 0) {
+            right[node] = removeRecursive(element, right[node]);
+        } else if (left[node] == NIL || right[node] == NIL) {
+            int child = (left[node] != NIL) ? left[node] : right[node];
+            freeNode(node);
+            return child;
+        } else {
+            int successor = getMin(right[node]);
+            elements[node] = elements[successor];
+            right[node] = removeRecursive(element(successor), right[node]);
+        }
+        return node;
+    }
+
+    /**
+     * Only elements within the input set remain in the set.
+     *
+     * @param set input set
+     */
+    @Override
+    public void retainAll(Set<E> set) {
+        Object[] current = toArray();
+        for (Object o : current) {
+            @SuppressWarnings("unchecked")
+            E element = (E) o;
+            if (!set.contains(element)) {
+                remove(element);
+            }
+        }
+    }
+
+    /**
+     * Returns the greatest element less than or equal to the given element.
+     *
+     * @param element - element.
+     * @return the found element or null if there is no such element
+     */
+    @Override
+    public E floor(E element) {
+        if (element == null) {
+            throw new IllegalArgumentException("Element is null in floor(E element)");
+        }
+        return elementOrNull(lowerNode(element, true));
+    }
+
+    /**
+     * Returns the smallest element greater than or equal to the given element.
+     *
+     * @param element - element.
+     * @return the found element or null if there is no such element
+     */
+    @Override
+    public E ceiling(E element) {
+        if (element == null) {
+            throw new IllegalArgumentException("Element is null in ceiling(E element)");
+        }
+        return elementOrNull(higherNode(element, true));
+    }
+
+    /**
+     * Returns the greatest element strictly less than the given element.
+     *
+     * @param element - element.
+     * @return the found element or null if there is no such element
+     */
+    @Override
+    public E lower(E element) {
+        if (element == null) {
+            throw new IllegalArgumentException("Element is null in lower(E element)");
+        }
+        return elementOrNull(lowerNode(element, false));
+    }
+
+    /**
+     * Returns the smallest element strictly greater than the given element.
+     *
+     * @param element - element.
+     * @return the found element or null if there is no such element
+     */
+    @Override
+    public E higher(E element) {
+        if (element == null) {
+            throw new IllegalArgumentException("Element is null in higher(E element)");
+        }
+        return elementOrNull(higherNode(element, false));
+    }
+
+    /**
+     * @return the smallest element of the set
+     * @throws NoSuchElementException if the set is empty
+     */
+    @Override
+    public E first() {
+        if (root == NIL) {
+            throw new NoSuchElementException("Set is empty");
+        }
+        return element(getMin(root));
+    }
+
+    /**
+     * @return the greatest element of the set
+     * @throws NoSuchElementException if the set is empty
+     */
+    @Override
+    public E last() {
+        if (root == NIL) {
+            throw new NoSuchElementException("Set is empty");
+        }
+        return element(getMax(root));
+    }
+
+    /**
+     * Removes and returns the smallest element of the set.
+     *
+     * @return the removed element or null if the set is empty
+     */
+    @Override
+    public E pollFirst() {
+        if (root == NIL) {
+            return null;
+        }
+        E element = element(getMin(root));
+        remove(element);
+        return element;
+    }
+
+    /**
+     * Removes and returns the greatest element of the set.
+     *
+     * @return the removed element or null if the set is empty
+     */
+    @Override
+    public E pollLast() {
+        if (root == NIL) {
+            return null;
+        }
+        E element = element(getMax(root));
+        remove(element);
+        return element;
+    }
+
+    // The last node where the descent turned right is the greatest node below the element
+    private int lowerNode(E element, boolean inclusive) {
+        int node = root;
+        int candidate = NIL;
+        while (node != NIL) {
+            int cmp = c.compare(element, element(node));
+            if (cmp == 0 && inclusive) {
+                return node;
+            }
+            if (cmp > 0) {
+                candidate = node;
+                node = right[node];
+            } else {
+                node = left[node];
+            }
+        }
+        return candidate;
+    }
+
+    // The last node where the descent turned left is the smallest node above the element
+    private int higherNode(E element, boolean inclusive) {
+        int node = root;
+        int candidate = NIL;
+        while (node != NIL) {
+            int cmp = c.compare(element, element(node));
+            if (cmp == 0 && inclusive) {
+                return node;
+            }
+            if (cmp < 0) {
+                candidate = node;
+                node = left[node];
+            } else {
+                node = right[node];
+            }
+        }
+        return candidate;
+    }
+
+    private E elementOrNull(int node) {
+        return (node == NIL) ? null : element(node);
+    }
+
+    protected int getMin(int node) {
+        while (left[node] != NIL) {
+            node = left[node];
+        }
+        return node;
+    }
+
+    protected int getMax(int node) {
+        while (right[node] != NIL) {
+            node = right[node];
+        }
+        return node;
+    }
+
+    /**
+     * Converts set to an array.
+     *
+     * @return Returns an array of set elements.
+     */
+    @Override
+    public Object[] toArray() {
+        Object[] array = new Object[size];
+        int i = 0;
+        for (E o : this) {
+            array[i++] = o;
+        }
+        return array;
+    }
+
+    @Override
+    @SuppressWarnings("unchecked")
+    public E[] toArray(Class<E> clasz) {
+        E[] array = (E[]) Array.newInstance(clasz, size);
+        int i = 0;
+        for (E o : this) {
+            array[i++] = o;
+        }
+        return array;
+    }
+
+    /**
+     * Forms an Inorder (ascending order) string of set elements.
+     *
+     * @return string of set elements
+     */
+    @Override
+    public String toString() {
+        StringBuilder sb = new StringBuilder();
+        for (E element : this) {
+            sb.append(element.toString()).append(System.lineSeparator());
+        }
+        return sb.toString();
+    }
+
+    /*
+     * Method for tree visualisation, same drawing as in BstSet.
+     */
+    @Override
+    public String toVisualizedString(String dataCodeDelimiter) {
+        String horizontal = BstSet.term[0] + BstSet.term[0];
+        return root == NIL ? ">" + horizontal
+                : toTreeDraw(root, ">", "", horizontal, dataCodeDelimiter);
+    }
+
+    private String toTreeDraw(int node, String edge, String indent, String horizontal, String dataCodeDelimiter) {
+        if (node == NIL) {
+            return "";
+        }
+        String step = (edge.equals(BstSet.leftEdge)) ? BstSet.vertical : " ";
+        StringBuilder sb = new StringBuilder();
+        sb.append(toTreeDraw(right[node], BstSet.rightEdge, indent + step, horizontal, dataCodeDelimiter));
+        int t = (right[node] != NIL) ? 1 : 0;
+        t = (left[node] != NIL) ? t + 2 : t;
+        String s = elements[node].toString();
+        int k = s.indexOf(dataCodeDelimiter);
+        sb.append(indent).append(edge).append(horizontal).append(BstSet.term[t]).append(BstSet.endEdge)
+                .append(k <= 0 ? s : s.substring(0, k)).append(System.lineSeparator());
+        step = (edge.equals(BstSet.rightEdge)) ? BstSet.vertical : " ";
+        sb.append(toTreeDraw(left[node], BstSet.leftEdge, indent + step, horizontal, dataCodeDelimiter));
+        return sb.toString();
+    }
+
+    /**
+     * Creates and returns a copy of the set. The node arrays are copied as a whole.
+     *
+     * @return A copy of the set.
+     * @throws java.lang.CloneNotSupportedException
+     */
+    @Override
+    @SuppressWarnings("unchecked")
+    public Object clone() throws CloneNotSupportedException {
+        PooledBstSet<E> cl = (PooledBstSet<E>) super.clone();
+        cl.elements = elements.clone();
+        cl.left = left.clone();
+        cl.right = right.clone();
+        return cl;
+    }
+
+    /**
+     * Creates an empty set of the same kind with the same comparator
+     */
+    protected PooledBstSet<E> emptySet() {
+        return new PooledBstSet<E>(c);
+    }
+
+    /**
+     * Returns the subset comprising elements up to a limit defined in the parameter element in a sorted manner excluding the element.
+     *
+     * @param element - limit element.
+     * @return the subset comprising elements up to a limit defined in the parameter element in a sorted manner excluding the element.
+     */
+    @Override
+    public SortedSet<E> headSet(E element) {
+        if (element == null) {
+            throw new IllegalArgumentException("Element is null in headSet(E element)");
+        }
+        return copyRange(null, element);
+    }
+
+    /**
+     * Returns the subset comprising elements from element1 (inclusive) to element2 (exclusive) in a sorted manner.
+     *
+     * @param element1 - start element.
+     * @param element2 - end element.
+     * @return the subset comprising elements from element1 (inclusive) to element2 (exclusive) in a sorted manner.
+     */
+    @Override
+    public SortedSet<E> subSet(E element1, E element2) {
+        if (element1 == null || element2 == null) {
+            throw new IllegalArgumentException("Element is null in subSet(E element1, E element2)");
+        }
+        return copyRange(element1, element2);
+    }
+
+    /**
+     * Returns the subset comprising elements starting from parameter element (inclusive) up to the end of the set in a sorted manner.
+     *
+     * @param element - element of the set.
+     * @return the subset comprising elements starting from parameter element (inclusive) up to the end of the set in a sorted manner.
+     */
+    @Override
+    public SortedSet<E> tailSet(E element) {
+        if (element == null) {
+            throw new IllegalArgumentException("Element is null in tailSet(E element)");
+        }
+        return copyRange(element, null);
+    }
+
+    private SortedSet<E> copyRange(E fromInclusive, E toExclusive) {
+        PooledBstSet<E> result = emptySet();
+        IteratorPooled it = new IteratorPooled(true);
+        if (fromInclusive != null) {
+            it.seek(fromInclusive, true);
+        }
+        while (it.hasNext()) {
+            E e = it.next();
+            if (toExclusive != null && c.compare(e, toExclusive) >= 0) {
+                break;
+            }
+            result.add(e);
+        }
+        return result;
+    }
+
+    /**
+     * Returns a natural iterator.
+     *
+     * @return natural interator.
+     */
+    @Override
+    public Iterator<E> iterator() {
+        return new IteratorPooled(true);
+    }
+
+    /**
+     * Returns the inverse iterator.
+     *
+     * @return inverse iterator.
+     */
+    @Override
+    public Iterator<E> descendingIterator() {
+        return new IteratorPooled(false);
+    }
+
+    /**
+     * Internal iterator class. The path to the next node is kept in an int array stack,
+     * which grows when the tree is deeper than expected.
+     */
+    private class IteratorPooled implements Iterator<E> {
+
+        // Specifies the direction of the iterator, true for ascending, false for descending
+        private final boolean ascending;
+        private int[] stack = new int[16];
+        private int top = 0;
+        // Required for the remove() method.
+        private E last;
+
+        IteratorPooled(boolean ascendingOrder) {
+            this.ascending = ascendingOrder;
+            toStack(root);
+        }
+
+        @Override
+        public boolean hasNext() {
+            return top > 0;
+        }
+
+        @Override
+        public E next() {
+            if (top == 0) {
+                throw new NoSuchElementException();
+            }
+            int n = stack[--top];
+            last = element(n);
+            toStack(ascending ? right[n] : left[n]);
+            return last;
+        }
+
+        @Override
+        public void remove() {
+            if (last == null) {
+                throw new IllegalStateException("error in remove Iterator");
+            }
+            PooledBstSet.this.remove(last);
+            // Nodes may have moved, so the path is searched again from the root
+            seek(last, false);
+            last = null;
+        }
+
+        /**
+         * Positions the iterator before the first element that follows the bound in the iteration order
+         */
+        void seek(E bound, boolean inclusive) {
+            top = 0;
+            int node = root;
+            while (node != NIL) {
+                int cmp = c.compare(bound, element(node));
+                if (!ascending) {
+                    cmp = -cmp;
+                }
+                if (cmp < 0 || (cmp == 0 && inclusive)) {
+                    push(node);
+                    if (cmp == 0) {
+                        return;
+                    }
+                    node = ascending ? left[node] : right[node];
+                } else {
+                    node = ascending ? right[node] : left[node];
+                }
+            }
+        }
+
+        private void toStack(int node) {
+            while (node != NIL) {
+                push(node);
+                node = ascending ? left[node] : right[node];
+            }
+        }
+
+        private void push(int node) {
+            if (top == stack.length) {
+                stack = Arrays.copyOf(stack, top * 2);
+            }
+            stack[top++] = node;
+        }
+    }
+}
@@ -0,0 +1,397 @@
+package utils;
+
+import java.util.Arrays;
+
+/**
+ * Common structure of the red-black trees with primitive keys.
+ * Nodes are not objects: a node is an index into parallel arrays holding the
+ * left child, the right child and the parent index, while the colors are packed
+ * into a bitset. Index 0 is the black sentinel (NIL), so the algorithms follow
+ * the textbook (Cormen) version without null checks. Removed nodes are chained
+ * into a free list through the left array and reused by later inserts.
+ * The key arrays are kept by the subclasses.
+ */
+abstract class PrimitiveRedBlackTree {
+
+    protected static final int NIL = 0;
+    protected static final int DEFAULT_CAPACITY = 16;
+
+    protected int[] left;
+    protected int[] right;
+    protected int[] parent;
+    // Bit i is set when node i is red
+    protected long[] red;
+
+    protected int root = NIL;
+    protected int size = 0;
+    // Head of the list of removed nodes, chained through left[]
+    private int freeHead = NIL;
+    // First index that has never been used
+    private int nextIndex = 1;
+
+    protected PrimitiveRedBlackTree(int initialCapacity) {
+        if (initialCapacity < 0) {
+            throw new IllegalArgumentException("Negative capacity " + initialCapacity);
+        }
+        int capacity = Math.max(initialCapacity + 1, 2);
+        left = new int[capacity];
+        right = new int[capacity];
+        parent = new int[capacity];
+        red = new long[(capacity + 63) >>> 6];
+    }
+
+    /**
+     * Grows the key storage of the subclass to the given capacity.
+     *
+     * @param capacity new capacity
+     */
+    protected abstract void growKeys(int capacity);
+
+    /**
+     * Checks if the tree is empty.
+     *
+     * @return Returns true if the tree is empty.
+     */
+    public boolean isEmpty() {
+        return size == 0;
+    }
+
+    /**
+     * @return Returns the number of keys in the tree.
+     */
+    public int size() {
+        return size;
+    }
+
+    /**
+     * Removes all keys. The allocated arrays are kept for reuse.
+     */
+    public void clear() {
+        root = NIL;
+        size = 0;
+        freeHead = NIL;
+        nextIndex = 1;
+        Arrays.fill(red, 0L);
+    }
+
+    protected final boolean isRed(int node) {
+        return (red[node >>> 6] & (1L << node)) != 0;
+    }
+
+    protected final void setRed(int node) {
+        red[node >>> 6] |= 1L << node;
+    }
+
+    protected final void setBlack(int node) {
+        red[node >>> 6] &= ~(1L << node);
+    }
+
+    protected final void setColor(int node, boolean isRed) {
+        if (isRed) {
+            setRed(node);
+        } else {
+            setBlack(node);
+        }
+    }
+
+    /**
+     * Takes a node index from the free list or from the unused part of the arrays
+     *
+     * @return index of the new node
+     */
+    protected final int allocate() {
+        int node;
+        if (freeHead != NIL) {
+            node = freeHead;
+            freeHead = left[node];
+        } else {
+            if (nextIndex == left.length) {
+                grow();
+            }
+            node = nextIndex++;
+        }
+        left[node] = NIL;
+        right[node] = NIL;
+        parent[node] = NIL;
+        return node;
+    }
+
+    private void release(int node) {
+        left[node] = freeHead;
+        freeHead = node;
+    }
+
+    private void grow() {
+        int capacity = left.length + (left.length >> 1) + 1;
+        left = Arrays.copyOf(left, capacity);
+        right = Arrays.copyOf(right, capacity);
+        parent = Arrays.copyOf(parent, capacity);
+        red = Arrays.copyOf(red, (capacity + 63) >>> 6);
+        growKeys(capacity);
+    }
+
+    /**
+     * Links the new node below the parent found by the descent and restores the red-black properties.
+     *
+     * @param node   new node
+     * @param p      parent node, NIL for an empty tree
+     * @param cmp    result of the last comparison of the descent
+     */
+    protected final void insertAt(int node, int p, int cmp) {
+        parent[node] = p;
+        if (p == NIL) {
+            root = node;
+        } else if (cmp < 0) {
+            left[p] = node;
+        } else {
+            right[p] = node;
+        }
+        setRed(node);
+        size++;
+        insertFixUp(node);
+    }
+
+    private void insertFixUp(int z) {
+        while (isRed(parent[z])) {
+            int p = parent[z];
+            int g = parent[p];
+            if (p == left[g]) {
+                int y = right[g];
+                if (isRed(y)) {
+                    setBlack(p);
+                    setBlack(y);
+                    setRed(g);
+                    z = g;
+                } else {
+                    if (z == right[p]) {
+                        z = p;
+                        leftRotation(z);
+                        p = parent[z];
+                    }
+                    setBlack(p);
+                    setRed(g);
+                    rightRotation(g);
+                }
+            } else {
+                int y = left[g];
+                if (isRed(y)) {
+                    setBlack(p);
+                    setBlack(y);
+                    setRed(g);
+                    z = g;
+                } else {
+                    if (z == left[p]) {
+                        z = p;
+                        rightRotation(z);
+                        p = parent[z];
+                    }
+                    setBlack(p);
+                    setRed(g);
+                    leftRotation(g);
+                }
+            }
+        }
+        setBlack(root);
+    }
+
+    /**
+     * Unlinks the node from the tree, restores the red-black properties and
+     * puts the node on the free list.
+     *
+     * @param z node to remove
+     */
+    protected final void deleteNode(int z) {
+        int y = z;
+        boolean yWasRed = isRed(y);
+        int x;
+        if (left[z] == NIL) {
+            x = right[z];
+            transplant(z, right[z]);
+        } else if (right[z] == NIL) {
+            x = left[z];
+            transplant(z, left[z]);
+        } else {
+            y = minimum(right[z]);
+            yWasRed = isRed(y);
+            x = right[y];
+            if (parent[y] == z) {
+                parent[x] = y;
+            } else {
+                transplant(y, right[y]);
+                right[y] = right[z];
+                parent[right[y]] = y;
+            }
+            transplant(z, y);
+            left[y] = left[z];
+            parent[left[y]] = y;
+            setColor(y, isRed(z));
+        }
+        if (!yWasRed) {
+            deleteFixUp(x);
+        }
+        setBlack(z);
+        release(z);
+        size--;
+    }
+
+    private void transplant(int u, int v) {
+        if (parent[u] == NIL) {
+            root = v;
+        } else if (u == left[parent[u]]) {
+            left[parent[u]] = v;
+        } else {
+            right[parent[u]] = v;
+        }
+        parent[v] = parent[u];
+    }
+
+    private void deleteFixUp(int x) {
+        while (x != root && !isRed(x)) {
+            int p = parent[x];
+            if (x == left[p]) {
+                int w = right[p];
+                if (isRed(w)) {
+                    setBlack(w);
+                    setRed(p);
+                    leftRotation(p);
+                    w = right[p];
+                }
+                if (!isRed(left[w]) && !isRed(right[w])) {
+                    setRed(w);
+                    x = p;
+                } else {
+                    if (!isRed(right[w])) {
+                        setBlack(left[w]);
+                        setRed(w);
+                        rightRotation(w);
+                        w = right[p];
+                    }
+                    setColor(w, isRed(p));
+                    setBlack(p);
+                    setBlack(right[w]);
+                    leftRotation(p);
+                    x = root;
+                }
+            } else {
+                int w = left[p];
+                if (isRed(w)) {
+                    setBlack(w);
+                    setRed(p);
+                    rightRotation(p);
+                    w = left[p];
+                }
+                if (!isRed(right[w]) && !isRed(left[w])) {
+                    setRed(w);
+                    x = p;
+                } else {
+                    if (!isRed(left[w])) {
+                        setBlack(right[w]);
+                        setRed(w);
+                        leftRotation(w);
+                        w = left[p];
+                    }
+                    setColor(w, isRed(p));
+                    setBlack(p);
+                    setBlack(left[w]);
+                    rightRotation(p);
+                    x = root;
+                }
+            }
+        }
+        setBlack(x);
+    }
+
+    private void leftRotation(int x) {
+        int y = right[x];
+        right[x] = left[y];
+        if (left[y] != NIL) {
+            parent[left[y]] = x;
+        }
+        parent[y] = parent[x];
+        if (parent[x] == NIL) {
+            root = y;
+        } else if (x == left[parent[x]]) {
+            left[parent[x]] = y;
+        } else {
+            right[parent[x]] = y;
+        }
+        left[y] = x;
+        parent[x] = y;
+    }
+
+    private void rightRotation(int x) {
+        int y = left[x];
+        left[x] = right[y];
+        if (right[y] != NIL) {
+            parent[right[y]] = x;
+        }
+        parent[y] = parent[x];
+        if (parent[x] == NIL) {
+            root = y;
+        } else if (x == right[parent[x]]) {
+            right[parent[x]] = y;
+        } else {
+            left[parent[x]] = y;
+        }
+        right[y] = x;
+        parent[x] = y;
+    }
+
+    protected final int minimum(int node) {
+        while (left[node] != NIL) {
+            node = left[node];
+        }
+        return node;
+    }
+
+    protected final int maximum(int node) {
+        while (right[node] != NIL) {
+            node = right[node];
+        }
+        return node;
+    }
+
+    /**
+     * Returns the in-order successor of the node, NIL for the last node
+     */
+    protected final int successor(int node) {
+        if (right[node] != NIL) {
+            return minimum(right[node]);
+        }
+        int p = parent[node];
+        while (p != NIL && node == right[p]) {
+            node = p;
+            p = parent[p];
+        }
+        return p;
+    }
+
+    /**
+     * Returns the in-order predecessor of the node, NIL for the first node
+     */
+    protected final int predecessor(int node) {
+        if (left[node] != NIL) {
+            return maximum(left[node]);
+        }
+        int p = parent[node];
+        while (p != NIL && node == left[p]) {
+            node = p;
+            p = parent[p];
+        }
+        return p;
+    }
+
+    /**
+     * @return index of the node with the smallest key, NIL for an empty tree
+     */
+    protected final int firstNode() {
+        return root == NIL ? NIL : minimum(root);
+    }
+
+    /**
+     * @return index of the node with the largest key, NIL for an empty tree
+     */
+    protected final int lastNode() {
+        return root == NIL ? NIL : maximum(root);
+    }
+}
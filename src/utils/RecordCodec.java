@@ -0,0 +1,73 @@
+package utils;
+
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+
+/**
+ * Converts elements to records of a fixed number of bytes and back.
+ * The methods use absolute positions only, so one buffer can be read by many threads.
+ *
+ * @param <E> element type
+ */
+public interface RecordCodec<E> {
+
+    /**
+     * @return the number of bytes of every record
+     */
+    int recordSize();
+
+    /**
+     * Writes the element as a record of recordSize() bytes
+     *
+     * @param element element
+     * @param buffer  target buffer
+     * @param offset  position of the record in the buffer
+     */
+    void encode(E element, ByteBuffer buffer, int offset);
+
+    /**
+     * Reads the element from a record
+     *
+     * @param buffer source buffer
+     * @param offset position of the record in the buffer
+     * @return new element
+     */
+    E decode(ByteBuffer buffer, int offset);
+
+    /**
+     * Returns a stable name and version of the record layout, e.g. "Car/1", stored in the
+     * files written with the codec and checked when they are read. The version is changed
+     * with the layout.
+     *
+     * @return name and version of the record layout
+     */
+    String schema();
+
+    /**
+     * Writes a string into a field of the given width: one byte with the length
+     * of the UTF-8 encoded string, then the bytes.
+     *
+     * @throws IllegalArgumentException if the encoded string does not fit the field
+     */
+    static void putString(ByteBuffer buffer, int offset, String s, int width) {
+        byte[] bytes = s.getBytes(StandardCharsets.UTF_8);
+        if (bytes.length > Math.min(width - 1, 255)) {
+            throw new IllegalArgumentException("String is longer than " + (width - 1) + " bytes: " + s);
+        }
+        buffer.put(offset, (byte) bytes.length);
+        for (int i = 0; i < bytes.length; i++) {
+            buffer.put(offset + 1 + i, bytes[i]);
+        }
+    }
+
+    /**
+     * Reads a string written by {@link #putString(ByteBuffer, int, String, int)}
+     */
+    static String getString(ByteBuffer buffer, int offset) {
+        byte[] bytes = new byte[buffer.get(offset) & 0xFF];
+        for (int i = 0; i < bytes.length; i++) {
+            bytes[i] = buffer.get(offset + 1 + i);
+        }
+        return new String(bytes, StandardCharsets.UTF_8);
+    }
+}
@@ -0,0 +1,803 @@
+package utils;
+
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.ConcurrentModificationException;
+import java.util.Iterator;
+import java.util.List;
+import java.util.NoSuchElementException;
+
+/**
+ * The red-black tree implementation of a ordered set.
+ * Unlike {@link BstSet} every operation is O(log n) in the worst case,
+ * regardless of the order in which the elements are added.
+ *
+ * @param <E> Type of the set element. Must implement the Comparable<E> interface, or
+ *            an object that implements Comparator<E> interface must be passed through the class constructor
+ */
+public class RedBlackSet<E extends Comparable<E>> extends BstSet<E> implements SortedSet<E> {
+
+    protected static final boolean RED = false;
+    protected static final boolean BLACK = true;
+
+    public RedBlackSet() {
+    }
+
+    public RedBlackSet(Comparator<? super E> c) {
+        super(c);
+    }
+
+    /**
+     * Adds a new element to the set.
+     *
+     * @param element
+     */
+    @Override
+    public void add(E element) {
+        if (element == null) {
+            throw new IllegalArgumentException("Element is null in add(E element)");
+        }
+
+        RBNode<E> parent = null;
+        RBNode<E> node = (RBNode<E>) root;
+        int cmp = 0;
+        while (node != null) {
+            parent = node;
+            cmp = c.compare(element, node.element);
+            if (cmp < 0) {
+                node = node.getLeft();
+            } else if (cmp > 0) {
+                node = node.getRight();
+            } else {
+                return;
+            }
+        }
+
+        RBNode<E> newNode = new RBNode<>(element, parent);
+        if (parent == null) {
+            root = newNode;
+        } else if (cmp < 0) {
+            parent.left = newNode;
+        } else {
+            parent.right = newNode;
+        }
+        for (RBNode<E> p = parent; p != null; p = p.parent) {
+            p.count++;
+        }
+        size++;
+        modCount++;
+        root = insertFixUp(newNode, (RBNode<E>) root);
+    }
+
+    /**
+     * Creates a red-black set from elements sorted by the comparator in O(n).
+     * Equal neighbouring elements are stored once.
+     *
+     * @param sorted elements in ascending order
+     * @param c      Comparator
+     * @return a new set
+     * @throws IllegalArgumentException if the elements are not in ascending order
+     */
+    public static <E extends Comparable<E>> RedBlackSet<E> fromSorted(E[] sorted, Comparator<? super E> c) {
+        RedBlackSet<E> set = new RedBlackSet<E>(c);
+        Object[] copy = Arrays.copyOf(sorted, sorted.length, Object[].class);
+        set.loadSorted(copy, distinctSorted(copy, c));
+        return set;
+    }
+
+    /**
+     * Creates a red-black set from a list sorted by the comparator in O(n).
+     *
+     * @param sorted elements in ascending order
+     * @param c      Comparator
+     * @return a new set
+     * @throws IllegalArgumentException if the elements are not in ascending order
+     */
+    public static <E extends Comparable<E>> RedBlackSet<E> fromSorted(List<? extends E> sorted, Comparator<? super E> c) {
+        RedBlackSet<E> set = new RedBlackSet<E>(c);
+        Object[] copy = sorted.toArray();
+        set.loadSorted(copy, distinctSorted(copy, c));
+        return set;
+    }
+
+    /**
+     * Builds a balanced tree from sorted distinct elements. All nodes are black,
+     * except the nodes on the lowest level of an incomplete tree, which are red.
+     */
+    @Override
+    protected BstNode<E> buildTree(Object[] sorted, int lo, int hi) {
+        int redLevel = 0;
+        for (int m = hi - lo; m >= 0; m = m / 2 - 1) {
+            redLevel++;
+        }
+        return buildTree(sorted, lo, hi, 0, redLevel);
+    }
+
+    @SuppressWarnings("unchecked")
+    private RBNode<E> buildTree(Object[] sorted, int lo, int hi, int level, int redLevel) {
+        if (lo > hi) {
+            return null;
+        }
+        int mid = (lo + hi) >>> 1;
+        RBNode<E> node = new RBNode<>((E) sorted[mid], null);
+        node.color = (level == redLevel) ? RED : BLACK;
+        node.left = buildTree(sorted, lo, mid - 1, level + 1, redLevel);
+        node.right = buildTree(sorted, mid + 1, hi, level + 1, redLevel);
+        if (node.left != null) {
+            node.getLeft().parent = node;
+        }
+        if (node.right != null) {
+            node.getRight().parent = node;
+        }
+        node.count = hi - lo + 1;
+        return node;
+    }
+
+    @Override
+    protected BstNode<E> newNode(E element) {
+        return new RBNode<>(element, null);
+    }
+
+    @Override
+    protected boolean isHeightBalanced() {
+        return true;
+    }
+
+    /**
+     * Joins two red-black trees and a node. The tree with the larger black height is
+     * descended along its inner spine to a black node of the other tree's black height;
+     * the node is attached there as red and the red-red violation is fixed as after an insert.
+     */
+    @Override
+    protected BstNode<E> join(BstNode<E> left, BstNode<E> node, BstNode<E> right) {
+        RBNode<E> l = (RBNode<E>) asRoot(left);
+        RBNode<E> r = (RBNode<E>) asRoot(right);
+        RBNode<E> k = (RBNode<E>) node;
+        k.parent = null;
+        int hl = blackHeight(l);
+        int hr = blackHeight(r);
+
+        if (hl == hr) {
+            link(k, l, r);
+            k.color = BLACK;
+            return k;
+        }
+
+        k.color = RED;
+        if (hl > hr) {
+            RBNode<E> p = null;
+            RBNode<E> cur = l;
+            for (int h = hl; colorOf(cur) == RED || h != hr; cur = cur.getRight()) {
+                if (cur.color == BLACK) {
+                    h--;
+                }
+                p = cur;
+            }
+            link(k, cur, r);
+            p.right = k;
+            k.parent = p;
+            updateCountsUp(p);
+            return insertFixUp(k, l);
+        } else {
+            RBNode<E> p = null;
+            RBNode<E> cur = r;
+            for (int h = hr; colorOf(cur) == RED || h != hl; cur = cur.getLeft()) {
+                if (cur.color == BLACK) {
+                    h--;
+                }
+                p = cur;
+            }
+            link(k, l, cur);
+            p.left = k;
+            k.parent = p;
+            updateCountsUp(p);
+            return insertFixUp(k, r);
+        }
+    }
+
+    private static <E> void link(RBNode<E> node, RBNode<E> left, RBNode<E> right) {
+        node.left = left;
+        node.right = right;
+        if (left != null) {
+            left.parent = node;
+        }
+        if (right != null) {
+            right.parent = node;
+        }
+        updateCount(node);
+    }
+
+    // Recomputes the subtree sizes on the path from the node up to the root of its tree
+    private static <E> void updateCountsUp(RBNode<E> node) {
+        for (; node != null; node = node.parent) {
+            updateCount(node);
+        }
+    }
+
+    // Number of black nodes on a path from the node down to a leaf
+    private static <E> int blackHeight(RBNode<E> node) {
+        int h = 0;
+        for (; node != null; node = node.getLeft()) {
+            if (node.color == BLACK) {
+                h++;
+            }
+        }
+        return h;
+    }
+
+    /**
+     * A subtree becomes a standalone red-black tree when it is detached from its parent and its root is black
+     */
+    @Override
+    protected BstNode<E> asRoot(BstNode<E> node) {
+        if (node != null) {
+            RBNode<E> n = (RBNode<E>) node;
+            n.parent = null;
+            n.color = BLACK;
+        }
+        return node;
+    }
+
+    /**
+     * Removes an element from the set.
+     *
+     * @param element
+     */
+    @Override
+    public void remove(E element) {
+        if (element == null) {
+            throw new IllegalArgumentException("Element is null in remove(E element)");
+        }
+        RBNode<E> node = findNode(element);
+        if (node != null) {
+            deleteNode(node);
+        }
+    }
+
+    RBNode<E> findNode(E element) {
+        RBNode<E> node = (RBNode<E>) root;
+        while (node != null) {
+            int cmp = c.compare(element, node.element);
+            if (cmp < 0) {
+                node = node.getLeft();
+            } else if (cmp > 0) {
+                node = node.getRight();
+            } else {
+                return node;
+            }
+        }
+        return null;
+    }
+
+    /**
+     * Removes and returns the smallest element of the set, the found node is unlinked directly.
+     *
+     * @return the removed element or null if the set is empty
+     */
+    @Override
+    public E pollFirst() {
+        if (root == null) {
+            return null;
+        }
+        RBNode<E> node = (RBNode<E>) getMin(root);
+        E element = node.element;
+        deleteNode(node);
+        return element;
+    }
+
+    /**
+     * Removes and returns the greatest element of the set, the found node is unlinked directly.
+     *
+     * @return the removed element or null if the set is empty
+     */
+    @Override
+    public E pollLast() {
+        if (root == null) {
+            return null;
+        }
+        RBNode<E> node = (RBNode<E>) getMax(root);
+        E element = node.element;
+        deleteNode(node);
+        return element;
+    }
+
+    /**
+     * Unlinks the node from the tree and restores the red-black properties.
+     * If the node has two children, its successor's element is moved into it
+     * and the successor node is unlinked instead.
+     *
+     * @param node node to be removed
+     */
+    void deleteNode(RBNode<E> node) {
+        size--;
+        modCount++;
+
+        if (node.left != null && node.right != null) {
+            RBNode<E> s = successor(node);
+            node.element = s.element;
+            node = s;
+        }
+
+        RBNode<E> replacement = (node.left != null) ? node.getLeft() : node.getRight();
+        if (replacement != null) {
+            replacement.parent = node.parent;
+            if (node.parent == null) {
+                root = replacement;
+            } else if (node == node.parent.left) {
+                node.parent.left = replacement;
+            } else {
+                node.parent.right = replacement;
+            }
+            node.left = node.right = node.parent = null;
+            decrementCountsUp(replacement.parent);
+
+            if (node.color == BLACK) {
+                deleteFixUp(replacement);
+            }
+        } else if (node.parent == null) {
+            root = null;
+        } else {
+            // The node stays linked during the fix-up, so it must not be counted by the rotations
+            node.count = 0;
+            decrementCountsUp(node.parent);
+            if (node.color == BLACK) {
+                deleteFixUp(node);
+            }
+            if (node.parent != null) {
+                if (node == node.parent.left) {
+                    node.parent.left = null;
+                } else if (node == node.parent.right) {
+                    node.parent.right = null;
+                }
+                node.parent = null;
+            }
+        }
+    }
+
+    private static <E> void decrementCountsUp(RBNode<E> node) {
+        for (; node != null; node = node.parent) {
+            node.count--;
+        }
+    }
+
+    /**
+     * Restores the red-black properties after a red node x was attached to the tree.
+     * The tree is not necessarily the whole set, so the rotations report the new root of the tree.
+     *
+     * @param x   attached red node
+     * @param top root of the tree
+     * @return root of the tree after the rotations
+     */
+    private static <E> RBNode<E> insertFixUp(RBNode<E> x, RBNode<E> top) {
+        while (x != null && x != top && colorOf(parentOf(x)) == RED) {
+            if (parentOf(x) == leftOf(parentOf(parentOf(x)))) {
+                RBNode<E> y = rightOf(parentOf(parentOf(x)));
+                if (colorOf(y) == RED) {
+                    setColor(parentOf(x), BLACK);
+                    setColor(y, BLACK);
+                    setColor(parentOf(parentOf(x)), RED);
+                    x = parentOf(parentOf(x));
+                } else {
+                    if (x == rightOf(parentOf(x))) {
+                        x = parentOf(x);
+                        top = rotated(rotateLeft(x), top);
+                    }
+                    setColor(parentOf(x), BLACK);
+                    setColor(parentOf(parentOf(x)), RED);
+                    top = rotated(rotateRight(parentOf(parentOf(x))), top);
+                }
+            } else {
+                RBNode<E> y = leftOf(parentOf(parentOf(x)));
+                if (colorOf(y) == RED) {
+                    setColor(parentOf(x), BLACK);
+                    setColor(y, BLACK);
+                    setColor(parentOf(parentOf(x)), RED);
+                    x = parentOf(parentOf(x));
+                } else {
+                    if (x == leftOf(parentOf(x))) {
+                        x = parentOf(x);
+                        top = rotated(rotateRight(x), top);
+                    }
+                    setColor(parentOf(x), BLACK);
+                    setColor(parentOf(parentOf(x)), RED);
+                    top = rotated(rotateLeft(parentOf(parentOf(x))), top);
+                }
+            }
+        }
+        top.color = BLACK;
+        return top;
+    }
+
+    // Only the root of the tree has no parent
+    private static <E> RBNode<E> rotated(RBNode<E> subtree, RBNode<E> top) {
+        return (subtree != null && subtree.parent == null) ? subtree : top;
+    }
+
+    private void deleteFixUp(RBNode<E> x) {
+        while (x != root && colorOf(x) == BLACK) {
+            if (x == leftOf(parentOf(x))) {
+                RBNode<E> sib = rightOf(parentOf(x));
+
+                if (colorOf(sib) == RED) {
+                    setColor(sib, BLACK);
+                    setColor(parentOf(x), RED);
+                    leftRotation(parentOf(x));
+                    sib = rightOf(parentOf(x));
+                }
+
+                if (colorOf(leftOf(sib)) == BLACK && colorOf(rightOf(sib)) == BLACK) {
+                    setColor(sib, RED);
+                    x = parentOf(x);
+                } else {
+                    if (colorOf(rightOf(sib)) == BLACK) {
+                        setColor(leftOf(sib), BLACK);
+                        setColor(sib, RED);
+                        rightRotation(sib);
+                        sib = rightOf(parentOf(x));
+                    }
+                    setColor(sib, colorOf(parentOf(x)));
+                    setColor(parentOf(x), BLACK);
+                    setColor(rightOf(sib), BLACK);
+                    leftRotation(parentOf(x));
+                    x = (RBNode<E>) root;
+                }
+            } else {
+                RBNode<E> sib = leftOf(parentOf(x));
+
+                if (colorOf(sib) == RED) {
+                    setColor(sib, BLACK);
+                    setColor(parentOf(x), RED);
+                    rightRotation(parentOf(x));
+                    sib = leftOf(parentOf(x));
+                }
+
+                if (colorOf(rightOf(sib)) == BLACK && colorOf(leftOf(sib)) == BLACK) {
+                    setColor(sib, RED);
+                    x = parentOf(x);
+                } else {
+                    if (colorOf(leftOf(sib)) == BLACK) {
+                        setColor(rightOf(sib), BLACK);
+                        setColor(sib, RED);
+                        leftRotation(sib);
+                        sib = leftOf(parentOf(x));
+                    }
+                    setColor(sib, colorOf(parentOf(x)));
+                    setColor(parentOf(x), BLACK);
+                    setColor(leftOf(sib), BLACK);
+                    rightRotation(parentOf(x));
+                    x = (RBNode<E>) root;
+                }
+            }
+        }
+        setColor(x, BLACK);
+    }
+
+    // Red-black tree rotation methods
+
+    //         n1                     n2
+    //        /  \                   /  \
+    //       a    n2      ==>       n1   c
+    //           /  \              /  \
+    //          b    c            a    b
+
+    private void leftRotation(RBNode<E> n1) {
+        RBNode<E> n2 = rotateLeft(n1);
+        if (n2 != null && n2.parent == null) {
+            root = n2;
+        }
+    }
+
+    private void rightRotation(RBNode<E> n2) {
+        RBNode<E> n1 = rotateRight(n2);
+        if (n1 != null && n1.parent == null) {
+            root = n1;
+        }
+    }
+
+    /**
+     * Rotates the subtree left and links the new subtree root to the old parent
+     *
+     * @return new root of the subtree
+     */
+    private static <E> RBNode<E> rotateLeft(RBNode<E> n1) {
+        if (n1 == null) {
+            return null;
+        }
+        RBNode<E> n2 = n1.getRight();
+        n1.right = n2.left;
+        if (n2.left != null) {
+            n2.getLeft().parent = n1;
+        }
+        n2.parent = n1.parent;
+        if (n1.parent != null) {
+            if (n1.parent.left == n1) {
+                n1.parent.left = n2;
+            } else {
+                n1.parent.right = n2;
+            }
+        }
+        n2.left = n1;
+        n1.parent = n2;
+        updateCount(n1);
+        updateCount(n2);
+        return n2;
+    }
+
+    /**
+     * Rotates the subtree right and links the new subtree root to the old parent
+     *
+     * @return new root of the subtree
+     */
+    private static <E> RBNode<E> rotateRight(RBNode<E> n2) {
+        if (n2 == null) {
+            return null;
+        }
+        RBNode<E> n1 = n2.getLeft();
+        n2.left = n1.right;
+        if (n1.right != null) {
+            n1.getRight().parent = n2;
+        }
+        n1.parent = n2.parent;
+        if (n2.parent != null) {
+            if (n2.parent.right == n2) {
+                n2.parent.right = n1;
+            } else {
+                n2.parent.left = n1;
+            }
+        }
+        n1.right = n2;
+        n2.parent = n1;
+        updateCount(n2);
+        updateCount(n1);
+        return n1;
+    }
+
+    private static <E> boolean colorOf(RBNode<E> n) {
+        return (n == null) ? BLACK : n.color;
+    }
+
+    private static <E> RBNode<E> parentOf(RBNode<E> n) {
+        return (n == null) ? null : n.parent;
+    }
+
+    private static <E> void setColor(RBNode<E> n, boolean color) {
+        if (n != null) {
+            n.color = color;
+        }
+    }
+
+    private static <E> RBNode<E> leftOf(RBNode<E> n) {
+        return (n == null) ? null : n.getLeft();
+    }
+
+    private static <E> RBNode<E> rightOf(RBNode<E> n) {
+        return (n == null) ? null : n.getRight();
+    }
+
+    /**
+     * Returns the in-order successor of the node, found through parent pointers
+     */
+    static <E> RBNode<E> successor(RBNode<E> n) {
+        if (n == null) {
+            return null;
+        } else if (n.right != null) {
+            RBNode<E> p = n.getRight();
+            while (p.left != null) {
+                p = p.getLeft();
+            }
+            return p;
+        } else {
+            RBNode<E> p = n.parent;
+            RBNode<E> ch = n;
+            while (p != null && ch == p.right) {
+                ch = p;
+                p = p.parent;
+            }
+            return p;
+        }
+    }
+
+    /**
+     * Returns the in-order predecessor of the node, found through parent pointers
+     */
+    static <E> RBNode<E> predecessor(RBNode<E> n) {
+        if (n == null) {
+            return null;
+        } else if (n.left != null) {
+            RBNode<E> p = n.getLeft();
+            while (p.right != null) {
+                p = p.getRight();
+            }
+            return p;
+        } else {
+            RBNode<E> p = n.parent;
+            RBNode<E> ch = n;
+            while (p != null && ch == p.left) {
+                ch = p;
+                p = p.parent;
+            }
+            return p;
+        }
+    }
+
+    @Override
+    protected BstNode<E> cloneRecursive(BstNode<E> node) {
+        if (node == null) {
+            return null;
+        }
+
+        RBNode<E> original = (RBNode<E>) node;
+        RBNode<E> clone = new RBNode<>(original.element, null);
+        clone.color = original.color;
+        clone.count = original.count;
+        clone.left = cloneRecursive(original.left);
+        clone.right = cloneRecursive(original.right);
+        if (clone.left != null) {
+            clone.getLeft().parent = clone;
+        }
+        if (clone.right != null) {
+            clone.getRight().parent = clone;
+        }
+        return clone;
+    }
+
+    @Override
+    protected int nodeTag(BstNode<E> node) {
+        return ((RBNode<E>) node).color == BLACK ? 1 : 0;
+    }
+
+    @Override
+    protected BstNode<E> newNode(E element, int tag) {
+        RBNode<E> node = new RBNode<>(element, null);
+        node.color = (tag == 1) ? BLACK : RED;
+        return node;
+    }
+
+    @Override
+    protected void restoreNode(BstNode<E> node) {
+        RBNode<E> n = (RBNode<E>) node;
+        if (n.left != null) {
+            n.getLeft().parent = n;
+        }
+        if (n.right != null) {
+            n.getRight().parent = n;
+        }
+        updateCount(n);
+    }
+
+    @Override
+    protected String nodeLabel(BstNode<E> node, String dataCodeDelimiter) {
+        String label = super.nodeLabel(node, dataCodeDelimiter);
+        return ((RBNode<E>) node).color == RED ? RedBlackTree.RED1 + label + RedBlackTree.RESET : label;
+    }
+
+    /**
+     * Returns a natural iterator.
+     *
+     * @return natural interator.
+     */
+    @Override
+    public Iterator<E> iterator() {
+        return new IteratorRb(true);
+    }
+
+    /**
+     * Returns the inverse iterator.
+     *
+     * @return inverse iterator.
+     */
+    @Override
+    public Iterator<E> descendingIterator() {
+        return new IteratorRb(false);
+    }
+
+    /**
+     * The first node of the range is found by one descent, the iterator then walks the parent pointers.
+     */
+    @Override
+    protected Iterator<E> rangeIterator(E lo, boolean loInclusive, E hi, boolean hiInclusive, boolean ascending) {
+        if (ascending) {
+            BstNode<E> first = (lo == null) ? getMin(root) : higherNode(lo, loInclusive);
+            return new IteratorRb(true, (RBNode<E>) first, hi, hiInclusive);
+        }
+        BstNode<E> first = (hi == null) ? getMax(root) : lowerNode(hi, hiInclusive);
+        return new IteratorRb(false, (RBNode<E>) first, lo, loInclusive);
+    }
+
+    /**
+     * Internal iterator class. The tree is walked through the parent pointers,
+     * so the iterator needs no stack and uses O(1) additional memory.
+     * Like the BstSet iterator it is fail-fast.
+     */
+    private class IteratorRb implements Iterator<E> {
+
+        // Specifies the direction of the iterator, true for ascending, false for descending
+        private final boolean ascending;
+        private RBNode<E> next;
+        // The iteration stops after this element, null for no limit
+        private final E stop;
+        private final boolean stopInclusive;
+        // Required for the remove() method.
+        private RBNode<E> last;
+        private int expectedModCount = modCount;
+
+        IteratorRb(boolean ascendingOrder) {
+            this(ascendingOrder, (RBNode<E>) (ascendingOrder ? getMin(root) : getMax(root)), null, false);
+        }
+
+        IteratorRb(boolean ascendingOrder, RBNode<E> first, E stop, boolean stopInclusive) {
+            this.ascending = ascendingOrder;
+            this.next = first;
+            this.stop = stop;
+            this.stopInclusive = stopInclusive;
+        }
+
+        @Override
+        public boolean hasNext() {
+            if (next == null || stop == null) {
+                return next != null;
+            }
+            int cmp = c.compare(next.element, stop);
+            if (!ascending) {
+                cmp = -cmp;
+            }
+            return cmp < 0 || (cmp == 0 && stopInclusive);
+        }
+
+        @Override
+        public E next() {
+            if (modCount != expectedModCount) {
+                throw new ConcurrentModificationException();
+            }
+            if (!hasNext()) {
+                throw new NoSuchElementException();
+            }
+            last = next;
+            next = ascending ? successor(next) : predecessor(next);
+            return last.element;
+        }
+
+        @Override
+        public void remove() {
+            if (last == null) {
+                throw new IllegalStateException("error in remove Iterator");
+            }
+            if (modCount != expectedModCount) {
+                throw new ConcurrentModificationException();
+            }
+            // The successor's element is moved into a node with two children,
+            // so the ascending iterator has to continue from that node
+            if (ascending && last.left != null && last.right != null) {
+                next = last;
+            }
+            deleteNode(last);
+            expectedModCount = modCount;
+            last = null;
+        }
+    }
+
+    /**
+     * Inner class of tree node
+     *
+     * @param <N> node element data type
+     */
+    protected static class RBNode<N> extends BstNode<N> {
+
+        protected boolean color;
+        protected RBNode<N> parent;
+
+        protected RBNode(N element, RBNode<N> parent) {
+            super(element);
+            this.color = RED;
+            this.parent = parent;
+        }
+
+        protected RBNode<N> getLeft() {
+            return (RBNode<N>) left;
+        }
+
+        protected RBNode<N> getRight() {
+            return (RBNode<N>) right;
+        }
+    }
+}
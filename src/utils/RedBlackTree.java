@@ -2,12 +2,15 @@ package utils;
 
 import java.util.ArrayList;
 import java.util.Collections;
+import java.util.Comparator;
 import java.util.List;
 import java.util.Objects;
 
 public class RedBlackTree<E extends Comparable<E>> {
 
     private RedBlackNode<E> root = null;
+    // Pointer to comparator
+    private final Comparator<? super E> c;
     public static final String RED1 = "\u001B[31m";
     public static final String RESET = "\u001B[0m";
 
@@ -19,6 +22,8 @@ public class RedBlackTree<E extends Comparable<E>> {
         protected RedBlackNode<N> left;
         protected RedBlackNode<N> right;
         protected RedBlackNode<N> parent;
+        // Number of nodes in the subtree rooted at this node
+        protected int count;
 
         protected RedBlackNode() {
         }
@@ -29,14 +34,31 @@ public class RedBlackTree<E extends Comparable<E>> {
             this.left = null;
             this.right = null;
             this.parent = null;
+            this.count = 1;
         }
     }
 
+    /**
+     * Creates a tree, whereby comparator is defined by Comparable<E>
+     */
+    public RedBlackTree() {
+        this.c = Comparator.naturalOrder();
+    }
+
+    /**
+     * Creates a tree with custom Comparator<E> comparator
+     *
+     * @param c Comparator
+     */
+    public RedBlackTree(Comparator<? super E> c) {
+        this.c = c;
+    }
+
     private RedBlackNode<E> findNode(E element) {
         RedBlackNode<E> current = root;
 
         while (current != null) {
-            int comparison = element.compareTo(current.key);
+            int comparison = c.compare(element, current.key);
 
             if (comparison == 0) {
                 return current;
@@ -58,6 +80,67 @@ public class RedBlackTree<E extends Comparable<E>> {
         return root;
     }
 
+    /**
+     * @return Returns the number of elements in the tree.
+     */
+    public int size() {
+        return count(root);
+    }
+
+    /**
+     * Returns the element at the given position of the ascending order in O(log n).
+     *
+     * @param k position, 0 for the smallest element
+     * @return k-th smallest element
+     * @throws IndexOutOfBoundsException if k is not in [0, size)
+     */
+    public E select(int k) {
+        if (k < 0 || k >= size()) {
+            throw new IndexOutOfBoundsException("Index " + k + " out of bounds for size " + size());
+        }
+        RedBlackNode<E> node = root;
+        while (true) {
+            int leftCount = count(node.left);
+            if (k < leftCount) {
+                node = node.left;
+            } else if (k > leftCount) {
+                k -= leftCount + 1;
+                node = node.right;
+            } else {
+                return node.key;
+            }
+        }
+    }
+
+    /**
+     * Returns the number of elements smaller than the element in O(log n).
+     * The element does not have to be in the tree.
+     *
+     * @param element element
+     * @return position of the first element not smaller than the element
+     */
+    public int rank(E element) {
+        int rank = 0;
+        RedBlackNode<E> node = root;
+        while (node != null) {
+            if (c.compare(element, node.key) <= 0) {
+                node = node.left;
+            } else {
+                rank += count(node.left) + 1;
+                node = node.right;
+            }
+        }
+        return rank;
+    }
+
+    private static int count(RedBlackNode<?> node) {
+        return (node == null) ? 0 : node.count;
+    }
+
+    private static void updateCount(RedBlackNode<?> node) {
+        node.count = count(node.left) + count(node.right) + 1;
+    }
+
     public boolean isRed(RedBlackNode<E> element) {
         return element != null && element.color == RedBlackNode.Color.RED;
     }
@@ -66,32 +149,64 @@ public class RedBlackTree<E extends Comparable<E>> {
         return element == null || element.color == RedBlackNode.Color.BLACK;
     }
 
+    /**
+     * Inserts the element into the tree. Equal elements are kept and placed into the right subtree.
+     *
+     * @param element element to insert
+     */
     public void Insert(E element) {
         RedBlackNode<E> x = root;
         RedBlackNode<E> parent = null;
-        RedBlackNode<E> newNode = new RedBlackNode<>(element);
+        int cmp = 0;
 
         while (x != null) {
             parent = x;
-            if (newNode.key.compareTo(x.key) < 0) {
-                x = x.left;
-            } else {
-                x = x.right;
+            cmp = c.compare(element, x.key);
+            x = (cmp < 0) ? x.left : x.right;
+        }
+
+        link(new RedBlackNode<>(element), parent, cmp);
+    }
+
+    /**
+     * Inserts the element into the tree with set semantics: the descent stops on an equal key
+     * and the tree is left untouched.
+     *
+     * @param element element to insert
+     * @return true if the element was inserted, false if an equal element already exists
+     */
+    public boolean InsertUnique(E element) {
+        RedBlackNode<E> x = root;
+        RedBlackNode<E> parent = null;
+        int cmp = 0;
+
+        while (x != null) {
+            parent = x;
+            cmp = c.compare(element, x.key);
+            if (cmp == 0) {
+                return false;
             }
+            x = (cmp < 0) ? x.left : x.right;
         }
 
+        link(new RedBlackNode<>(element), parent, cmp);
+        return true;
+    }
+
+    // Attaches the new node below the parent using the last comparison result of the descent
+    private void link(RedBlackNode<E> newNode, RedBlackNode<E> parent, int cmp) {
         newNode.parent = parent;
 
         if (parent == null) {
             root = newNode;
-        } else if (newNode.key.compareTo(parent.key) < 0) {
+        } else if (cmp < 0) {
             parent.left = newNode;
         } else {
             parent.right = newNode;
         }
-
-        newNode.left = null;
-        newNode.right = null;
+        for (RedBlackNode<E> p = parent; p != null; p = p.parent) {
+            p.count++;
+        }
 
         Insert_fixup(newNode);
     }
@@ -159,6 +274,8 @@ public class RedBlackTree<E extends Comparable<E>> {
         }
         node.left = element;
         element.parent = node;
+        updateCount(element);
+        updateCount(node);
     }
 
     private void RightRotation(RedBlackNode<E> element) {
@@ -178,6 +295,8 @@ public class RedBlackTree<E extends Comparable<E>> {
         }
         node.right = element;
         element.parent = node;
+        updateCount(element);
+        updateCount(node);
     }
 
     public void Transplant(RedBlackNode<E> node1, RedBlackNode<E> node2) {
@@ -219,17 +338,25 @@ public class RedBlackTree<E extends Comparable<E>> {
         RedBlackNode<E> y = nodeToDelete;
         RedBlackNode.Color originalColor = y.color;
         RedBlackNode<E> x;
+        // Parent of x after the splice; x may be null, so its parent is tracked separately
+        RedBlackNode<E> xParent;
+        // Lowest node whose subtree loses a node
+        RedBlackNode<E> changed = nodeToDelete.parent;
 
         if (nodeToDelete.left == null) {
             x = nodeToDelete.right;
+            xParent = nodeToDelete.parent;
             Transplant(nodeToDelete, nodeToDelete.right);
         } else if (nodeToDelete.right == null) {
             x = nodeToDelete.left;
+            xParent = nodeToDelete.parent;
             Transplant(nodeToDelete, nodeToDelete.left);
         } else {
             y = getMin(nodeToDelete.right);
             originalColor = y.color;
             x = y.right;
+            changed = (y.parent == nodeToDelete) ? y : y.parent;
+            xParent = changed;
 
             if (y.parent != nodeToDelete) {
                 Transplant(y, y.right);
@@ -242,25 +369,39 @@ public class RedBlackTree<E extends Comparable<E>> {
             y.left.parent = y;
             y.color = nodeToDelete.color;
         }
+        for (; changed != null; changed = changed.parent) {
+            updateCount(changed);
+        }
 
         if (originalColor == RedBlackNode.Color.BLACK) {
-            DeleteFixUp(x);
+            DeleteFixUp(x, xParent);
         }
     }
 
     public void DeleteFixUp(RedBlackNode<E> element) {
+        DeleteFixUp(element, (element == null) ? null : element.parent);
+    }
+
+    /**
+     * Restores the red-black properties after a black node was removed above the element.
+     *
+     * @param element node with an extra black, may be null
+     * @param parent  parent of the element
+     */
+    private void DeleteFixUp(RedBlackNode<E> element, RedBlackNode<E> parent) {
         while (element != root && isBlack(element)) {
-            if (element == element.parent.left) {
-                RedBlackNode<E> node = element.parent.right;
+            if (element == parent.left) {
+                RedBlackNode<E> node = parent.right;
                 if (isRed(node)) {
                     node.color = RedBlackNode.Color.BLACK;
-                    element.parent.color = RedBlackNode.Color.RED;
-                    LeftRotation(element.parent);
-                    node = element.parent.right;
+                    parent.color = RedBlackNode.Color.RED;
+                    LeftRotation(parent);
+                    node = parent.right;
                 }
                 if (isBlack(node.left) && isBlack(node.right)) {
                     node.color = RedBlackNode.Color.RED;
-                    element = element.parent;
+                    element = parent;
+                    parent = element.parent;
                 } else {
                     if (isBlack(node.right)) {
                         if (node.left != null) {
@@ -268,27 +409,29 @@ public class RedBlackTree<E extends Comparable<E>> {
                         }
                         node.color = RedBlackNode.Color.RED;
                         RightRotation(node);
-                        node = element.parent.right;
+                        node = parent.right;
                     }
-                    node.color = element.parent.color;
-                    element.parent.color = RedBlackNode.Color.BLACK;
+                    node.color = parent.color;
+                    parent.color = RedBlackNode.Color.BLACK;
                     if (node.right != null) {
                         node.right.color = RedBlackNode.Color.BLACK;
                     }
-                    LeftRotation(element.parent);
+                    LeftRotation(parent);
                     element = root;
+                    parent = null;
                 }
             } else {
-                RedBlackNode<E> node = element.parent.left;
+                RedBlackNode<E> node = parent.left;
                 if (isRed(node)) {
                     node.color = RedBlackNode.Color.BLACK;
-                    element.parent.color = RedBlackNode.Color.RED;
-                    RightRotation(element.parent);
-                    node = element.parent.left;
+                    parent.color = RedBlackNode.Color.RED;
+                    RightRotation(parent);
+                    node = parent.left;
                 }
                 if (isBlack(node.right) && isBlack(node.left)) {
                     node.color = RedBlackNode.Color.RED;
-                    element = element.parent;
+                    element = parent;
+                    parent = element.parent;
                 } else {
                     if (isBlack(node.left)) {
                         if (node.right != null) {
@@ -296,15 +439,16 @@ public class RedBlackTree<E extends Comparable<E>> {
                         }
                         node.color = RedBlackNode.Color.RED;
                         LeftRotation(node);
-                        node = element.parent.left;
+                        node = parent.left;
                     }
-                    node.color = element.parent.color;
-                    element.parent.color = RedBlackNode.Color.BLACK;
+                    node.color = parent.color;
+                    parent.color = RedBlackNode.Color.BLACK;
                     if (node.left != null) {
                         node.left.color = RedBlackNode.Color.BLACK;
                     }
-                    RightRotation(element.parent);
+                    RightRotation(parent);
                     element = root;
+                    parent = null;
                 }
             }
         }
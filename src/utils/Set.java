@@ -1,5 +1,10 @@
 package utils;
 
+import java.util.Spliterator;
+import java.util.Spliterators;
+import java.util.stream.Stream;
+import java.util.stream.StreamSupport;
+
 public interface Set<E> extends Iterable<E> {
     boolean isEmpty();
 
@@ -24,4 +29,17 @@ public interface Set<E> extends Iterable<E> {
     E[] toArray(Class<E> var1);
 
     String toVisualizedString(String var1);
+
+    @Override
+    default Spliterator<E> spliterator() {
+        return Spliterators.spliterator(iterator(), size(), Spliterator.DISTINCT);
+    }
+
+    default Stream<E> stream() {
+        return StreamSupport.stream(spliterator(), false);
+    }
+
+    default Stream<E> parallelStream() {
+        return StreamSupport.stream(spliterator(), true);
+    }
 }
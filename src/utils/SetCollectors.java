@@ -0,0 +1,152 @@
+package utils;
+
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.function.Supplier;
+import java.util.stream.Collector;
+
+/**
+ * Collectors that build tree sets from streams.
+ * <p>
+ * Every part of a parallel stream collects its elements into an array (a run).
+ * When two parts are combined, each run is sorted and deduplicated once and the
+ * two sorted runs are merged in linear time. The finished run is turned into a
+ * balanced tree in O(n) (see {@link BstSet#loadSorted}), so no element is
+ * inserted into a tree one by one.
+ */
+public final class SetCollectors {
+
+    private SetCollectors() {
+    }
+
+    /**
+     * @return collector into a {@link BstSet} ordered by Comparable<E>
+     */
+    public static <E extends Comparable<E>> Collector<E, ?, BstSet<E>> toBstSet() {
+        return toSet(BstSet::new);
+    }
+
+    /**
+     * @param c Comparator
+     * @return collector into a {@link BstSet} ordered by the comparator
+     */
+    public static <E extends Comparable<E>> Collector<E, ?, BstSet<E>> toBstSet(Comparator<? super E> c) {
+        return toSet(() -> new BstSet<E>(c));
+    }
+
+    /**
+     * @return collector into an {@link AvlSet} ordered by Comparable<E>
+     */
+    public static <E extends Comparable<E>> Collector<E, ?, AvlSet<E>> toAvlSet() {
+        return toSet(AvlSet::new);
+    }
+
+    /**
+     * @param c Comparator
+     * @return collector into an {@link AvlSet} ordered by the comparator
+     */
+    public static <E extends Comparable<E>> Collector<E, ?, AvlSet<E>> toAvlSet(Comparator<? super E> c) {
+        return toSet(() -> new AvlSet<E>(c));
+    }
+
+    /**
+     * @return collector into a {@link RedBlackSet} ordered by Comparable<E>
+     */
+    public static <E extends Comparable<E>> Collector<E, ?, RedBlackSet<E>> toRedBlackSet() {
+        return toSet(RedBlackSet::new);
+    }
+
+    /**
+     * @param c Comparator
+     * @return collector into a {@link RedBlackSet} ordered by the comparator
+     */
+    public static <E extends Comparable<E>> Collector<E, ?, RedBlackSet<E>> toRedBlackSet(Comparator<? super E> c) {
+        return toSet(() -> new RedBlackSet<E>(c));
+    }
+
+    /**
+     * Returns a collector into sets created by the factory. The order of the set
+     * created by the factory is used for sorting the runs.
+     *
+     * @param factory creates an empty set
+     * @return collector
+     */
+    public static <E extends Comparable<E>, S extends BstSet<E>> Collector<E, ?, S> toSet(Supplier<S> factory) {
+        return Collector.of(
+                () -> new Run<E, S>(factory.get()),
+                Run::add,
+                Run::merge,
+                Run::finish,
+                Collector.Characteristics.UNORDERED);
+    }
+
+    private static final class Run<E extends Comparable<E>, S extends BstSet<E>> {
+
+        private final S set;
+        private Object[] elements = new Object[16];
+        private int n = 0;
+        // True when elements[0..n-1] are sorted and distinct
+        private boolean sorted = true;
+
+        Run(S set) {
+            this.set = set;
+        }
+
+        void add(E element) {
+            if (element == null) {
+                throw new IllegalArgumentException("Element is null in add(E element)");
+            }
+            if (n == elements.length) {
+                elements = Arrays.copyOf(elements, n * 2);
+            }
+            elements[n++] = element;
+            sorted = n == 1;
+        }
+
+        private void sort() {
+            if (!sorted) {
+                Object[] part = Arrays.copyOf(elements, n);
+                n = BstSet.sortDistinct(part, set.c);
+                elements = part;
+                sorted = true;
+            }
+        }
+
+        @SuppressWarnings("unchecked")
+        Run<E, S> merge(Run<E, S> other) {
+            sort();
+            other.sort();
+            Comparator<? super E> c = set.c;
+            Object[] merged = new Object[n + other.n];
+            int i = 0;
+            int j = 0;
+            int k = 0;
+            while (i < n && j < other.n) {
+                int cmp = c.compare((E) elements[i], (E) other.elements[j]);
+                if (cmp < 0) {
+                    merged[k++] = elements[i++];
+                } else if (cmp > 0) {
+                    merged[k++] = other.elements[j++];
+                } else {
+                    merged[k++] = elements[i++];
+                    j++;
+                }
+            }
+            while (i < n) {
+                merged[k++] = elements[i++];
+            }
+            while (j < other.n) {
+                merged[k++] = other.elements[j++];
+            }
+            elements = merged;
+            n = k;
+            return this;
+        }
+
+        S finish() {
+            sort();
+            set.loadSorted(elements, n);
+            return set;
+        }
+    }
+}
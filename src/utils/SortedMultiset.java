@@ -0,0 +1,73 @@
+package utils;
+
+import java.util.Comparator;
+import java.util.Iterator;
+import java.util.List;
+
+/**
+ * A sorted set that keeps every element added to it, also the elements the comparator
+ * finds equal. Equal elements are occurrences of one distinct element; they are iterated
+ * together, in the order they were added.
+ * <p>
+ * The methods of SortedSet work on occurrences: size() counts all of them, add() adds
+ * one more, remove() removes the occurrence that equals() the element, headSet, subSet
+ * and tailSet contain every occurrence of the range.
+ */
+public interface SortedMultiset<E> extends SortedSet<E> {
+
+    /**
+     * @return number of occurrences equal to the element, 0 if there are none
+     */
+    int count(E element);
+
+    /**
+     * @return number of distinct elements
+     */
+    int distinctSize();
+
+    /**
+     * @return the occurrences equal to the element in the order they were added
+     */
+    List<E> occurrences(E element);
+
+    /**
+     * Removes all occurrences equal to the element.
+     *
+     * @return number of removed occurrences
+     */
+    int removeOccurrences(E element);
+
+    /**
+     * @return iterator over the first occurrence of every distinct element
+     */
+    Iterator<E> distinctIterator();
+
+    /**
+     * Returns an iterator over the occurrences between the bounds, a null bound means no bound.
+     *
+     * @param lo          lower bound
+     * @param loInclusive whether the occurrences equal to the lower bound belong to the range
+     * @param hi          upper bound
+     * @param hiInclusive whether the occurrences equal to the upper bound belong to the range
+     * @return range iterator
+     */
+    Iterator<E> rangeIterator(E lo, boolean loInclusive, E hi, boolean hiInclusive);
+
+    /**
+     * Breaks the ties of a comparator by the natural order, so that a set ordered by it
+     * keeps the elements the comparator alone finds equal. Cars are ordered by carRegNo
+     * within an equal price, make and so on.
+     *
+     * @param c Comparator
+     * @return comparator that returns 0 only for elements equal by compareTo
+     */
+    static <E extends Comparable<E>> Comparator<E> thenNaturalOrder(Comparator<? super E> c) {
+        if (c == null) {
+            throw new IllegalArgumentException("Comparator is null in thenNaturalOrder(Comparator<? super E> c)");
+        }
+        return (e1, e2) -> {
+            int cmp = c.compare(e1, e2);
+            return (cmp != 0) ? cmp : e1.compareTo(e2);
+        };
+    }
+}
@@ -3,11 +3,27 @@ package utils;
 import java.util.Iterator;
 
 public interface SortedSet<E> extends Set<E> {
-    Set<E> headSet(E var1);
+    SortedSet<E> headSet(E var1);
 
-    Set<E> subSet(E var1, E var2);
+    SortedSet<E> subSet(E var1, E var2);
 
-    Set<E> tailSet(E var1);
+    SortedSet<E> tailSet(E var1);
 
     Iterator<E> descendingIterator();
+
+    E floor(E var1);
+
+    E ceiling(E var1);
+
+    E lower(E var1);
+
+    E higher(E var1);
+
+    E first();
+
+    E last();
+
+    E pollFirst();
+
+    E pollLast();
 }
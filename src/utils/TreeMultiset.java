@@ -0,0 +1,698 @@
+package utils;
+
+import java.lang.reflect.Array;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.ConcurrentModificationException;
+import java.util.Iterator;
+import java.util.List;
+import java.util.NoSuchElementException;
+
+/**
+ * A sorted multiset on an AVL tree of buckets. A bucket holds the occurrences of one
+ * distinct element in the order they were added, so the tree has a node per distinct
+ * element and count() reads the size of one bucket: adding an occurrence, counting the
+ * occurrences of an element and removing its first or last added one take O(log n), n the
+ * number of distinct elements. A bucket is a ring buffer, so pollFirst, pollLast and the
+ * removals of the iterators take O(1) in the bucket. remove(E) finds the occurrence by
+ * equals() from the last added one backwards, which takes O(log n + k), k the occurrences
+ * of the element, unless it is the last added one.
+ *
+ * @param <E> element type
+ */
+public class TreeMultiset<E extends Comparable<E>> implements SortedMultiset<E>, Cloneable {
+
+    // Buckets ordered by their first occurrence
+    private AvlSet<Bucket<E>> buckets;
+    private final Comparator<? super E> c;
+    // Number of occurrences
+    private int size = 0;
+    // Counts the changes of the multiset, so that its iterators fail fast
+    private int modCount = 0;
+
+    public TreeMultiset() {
+        this(Comparator.naturalOrder());
+    }
+
+    public TreeMultiset(Comparator<? super E> c) {
+        if (c == null) {
+            throw new IllegalArgumentException("Comparator is null in TreeMultiset(Comparator<? super E> c)");
+        }
+        this.c = c;
+        this.buckets = new AvlSet<>(TreeMultiset.<E>bucketComparator(c));
+    }
+
+    private static <E extends Comparable<E>> Comparator<Bucket<E>> bucketComparator(Comparator<? super E> c) {
+        return (b1, b2) -> c.compare(b1.first(), b2.first());
+    }
+
+    /**
+     * Occurrences of one distinct element, never empty while in the tree. The occurrences
+     * are a ring buffer of a power of two length starting at head.
+     */
+    private static final class Bucket<E extends Comparable<E>> implements Comparable<Bucket<E>> {
+
+        private Object[] elements;
+        private int head = 0;
+        private int n;
+
+        Bucket(E element) {
+            elements = new Object[]{element};
+            n = 1;
+        }
+
+        private Bucket(Object[] elements, int n) {
+            this.elements = elements;
+            this.n = n;
+        }
+
+        @SuppressWarnings("unchecked")
+        E get(int i) {
+            return (E) elements[(head + i) & (elements.length - 1)];
+        }
+
+        E first() {
+            return get(0);
+        }
+
+        E last() {
+            return get(n - 1);
+        }
+
+        void add(E element) {
+            if (n == elements.length) {
+                Object[] grown = new Object[2 * n];
+                copyTo(grown, 0);
+                elements = grown;
+                head = 0;
+            }
+            elements[(head + n++) & (elements.length - 1)] = element;
+        }
+
+        // Shifts the occurrences on the shorter side of i, O(1) at both ends
+        void removeAt(int i) {
+            int mask = elements.length - 1;
+            if (i < n / 2) {
+                for (int j = i; j > 0; j--) {
+                    elements[(head + j) & mask] = elements[(head + j - 1) & mask];
+                }
+                elements[head] = null;
+                head = (head + 1) & mask;
+            } else {
+                for (int j = i; j < n - 1; j++) {
+                    elements[(head + j) & mask] = elements[(head + j + 1) & mask];
+                }
+                elements[(head + n - 1) & mask] = null;
+            }
+            n--;
+        }
+
+        // Keeps the occurrences contained in the set in one pass, returns their number
+        int retainAll(Set<E> set) {
+            int mask = elements.length - 1;
+            int kept = 0;
+            for (int i = 0; i < n; i++) {
+                E element = get(i);
+                if (set.contains(element)) {
+                    elements[(head + kept++) & mask] = element;
+                }
+            }
+            for (int i = kept; i < n; i++) {
+                elements[(head + i) & mask] = null;
+            }
+            n = kept;
+            return kept;
+        }
+
+        // Copies the occurrences in order to the array from the position
+        void copyTo(Object[] array, int position) {
+            int k = Math.min(n, elements.length - head);
+            System.arraycopy(elements, head, array, position, k);
+            System.arraycopy(elements, 0, array, position + k, n - k);
+        }
+
+        // Index of the last occurrence equal to the element, -1 if there is none
+        int lastIndexOf(E element) {
+            for (int i = n - 1; i >= 0; i--) {
+                if (get(i).equals(element)) {
+                    return i;
+                }
+            }
+            return -1;
+        }
+
+        Bucket<E> copy() {
+            Object[] array = new Object[elements.length];
+            copyTo(array, 0);
+            return new Bucket<>(array, n);
+        }
+
+        @Override
+        public int compareTo(Bucket<E> other) {
+            return first().compareTo(other.first());
+        }
+
+        @Override
+        public String toString() {
+            return (n == 1) ? first().toString() : first() + " x" + n;
+        }
+    }
+
+    // Bucket of the occurrences equal to the element, null if there are none
+    private Bucket<E> find(E element) {
+        Bucket<E> bucket = buckets.floor(new Bucket<>(element));
+        return (bucket != null && c.compare(bucket.first(), element) == 0) ? bucket : null;
+    }
+
+    // Probe bucket of a range bound, null for no bound
+    private static <E extends Comparable<E>> Bucket<E> probe(E element) {
+        return (element == null) ? null : new Bucket<>(element);
+    }
+
+    /**
+     * Checks if the multiset is empty.
+     *
+     * @return true if the multiset is empty, else false.
+     */
+    @Override
+    public boolean isEmpty() {
+        return size == 0;
+    }
+
+    /**
+     * @return number of occurrences
+     */
+    @Override
+    public int size() {
+        return size;
+    }
+
+    @Override
+    public int distinctSize() {
+        return buckets.size();
+    }
+
+    /**
+     * Clears the multiset.
+     */
+    @Override
+    public void clear() {
+        buckets.clear();
+        size = 0;
+        modCount++;
+    }
+
+    /**
+     * Adds an occurrence of the element, after the occurrences equal to it.
+     *
+     * @param element
+     */
+    @Override
+    public void add(E element) {
+        if (element == null) {
+            throw new IllegalArgumentException("Element is null in add(E element)");
+        }
+        Bucket<E> bucket = find(element);
+        if (bucket == null) {
+            buckets.add(new Bucket<>(element));
+        } else {
+            bucket.add(element);
+        }
+        size++;
+        modCount++;
+    }
+
+    /**
+     * Adds all occurrences of the input set to the multiset.
+     *
+     * @param set input set
+     */
+    @Override
+    @SuppressWarnings("unchecked")
+    public void addAll(Set<E> set) {
+        if (set == null) {
+            throw new IllegalArgumentException("Set is null in addAll(Set<E> set)");
+        }
+        for (Object o : set.toArray()) {
+            add((E) o);
+        }
+    }
+
+    /**
+     * Removes the occurrence that equals() the element; the last added one if there are several.
+     * Takes O(log n) for the last added occurrence, else O(log n + k), k the occurrences of the element.
+     *
+     * @param element
+     */
+    @Override
+    public void remove(E element) {
+        if (element == null) {
+            throw new IllegalArgumentException("Element is null in remove(E element)");
+        }
+        Bucket<E> bucket = find(element);
+        if (bucket == null) {
+            return;
+        }
+        int i = bucket.lastIndexOf(element);
+        if (i < 0) {
+            return;
+        }
+        removeAt(bucket, i);
+    }
+
+    // The bucket of its last occurrence is removed from the tree, which compares its first one
+    private void removeAt(Bucket<E> bucket, int i) {
+        if (bucket.n == 1) {
+            buckets.remove(bucket);
+        } else {
+            bucket.removeAt(i);
+        }
+        size--;
+        modCount++;
+    }
+
+    @Override
+    public int removeOccurrences(E element) {
+        if (element == null) {
+            throw new IllegalArgumentException("Element is null in removeOccurrences(E element)");
+        }
+        Bucket<E> bucket = find(element);
+        if (bucket == null) {
+            return 0;
+        }
+        buckets.remove(bucket);
+        size -= bucket.n;
+        modCount++;
+        return bucket.n;
+    }
+
+    /**
+     * Only occurrences contained in the input set remain in the multiset. Every bucket is
+     * filtered in one pass and the tree is rebuilt from the remaining ones, O(N) in all.
+     *
+     * @param set input set
+     */
+    @Override
+    public void retainAll(Set<E> set) {
+        if (set == null) {
+            throw new IllegalArgumentException("Set is null in retainAll(Set<E> set)");
+        }
+        if (set == this) {
+            return;
+        }
+        List<Bucket<E>> kept = new ArrayList<>(buckets.size());
+        int count = 0;
+        for (Bucket<E> bucket : buckets) {
+            if (bucket.retainAll(set) > 0) {
+                kept.add(bucket);
+                count += bucket.n;
+            }
+        }
+        if (count != size) {
+            buckets = AvlSet.fromSorted(kept, buckets.c);
+            size = count;
+            modCount++;
+        }
+    }
+
+    /**
+     * Checks whether an occurrence equal to the element exists in the multiset.
+     *
+     * @param element
+     * @return true if the element occurs in the multiset, else false.
+     */
+    @Override
+    public boolean contains(E element) {
+        if (element == null) {
+            throw new IllegalArgumentException("Element is null in contains(E element)");
+        }
+        return find(element) != null;
+    }
+
+    @Override
+    public boolean containsAll(Set<E> set) {
+        for (E element : set) {
+            if (!contains(element)) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    @Override
+    public int count(E element) {
+        if (element == null) {
+            throw new IllegalArgumentException("Element is null in count(E element)");
+        }
+        Bucket<E> bucket = find(element);
+        return (bucket == null) ? 0 : bucket.n;
+    }
+
+    @Override
+    public List<E> occurrences(E element) {
+        if (element == null) {
+            throw new IllegalArgumentException("Element is null in occurrences(E element)");
+        }
+        Bucket<E> bucket = find(element);
+        if (bucket == null) {
+            return Collections.emptyList();
+        }
+        List<E> list = new ArrayList<>(bucket.n);
+        for (int i = 0; i < bucket.n; i++) {
+            list.add(bucket.get(i));
+        }
+        return list;
+    }
+
+    /**
+     * @return an array of all occurrences in ascending order
+     */
+    @Override
+    public Object[] toArray() {
+        Object[] array = new Object[size];
+        int i = 0;
+        for (Bucket<E> bucket : buckets) {
+            bucket.copyTo(array, i);
+            i += bucket.n;
+        }
+        return array;
+    }
+
+    @Override
+    @SuppressWarnings("unchecked")
+    public E[] toArray(Class<E> clasz) {
+        E[] array = (E[]) Array.newInstance(clasz, size);
+        int i = 0;
+        for (Bucket<E> bucket : buckets) {
+            bucket.copyTo(array, i);
+            i += bucket.n;
+        }
+        return array;
+    }
+
+    /**
+     * Visualizes the tree of the distinct elements; an element that occurs several times
+     * is followed by its count.
+     */
+    @Override
+    public String toVisualizedString(String dataCodeDelimiter) {
+        return buckets.toVisualizedString(dataCodeDelimiter);
+    }
+
+    /**
+     * Forms an ascending order string of all occurrences.
+     *
+     * @return string of occurrences
+     */
+    @Override
+    public String toString() {
+        StringBuilder sb = new StringBuilder();
+        for (E element : this) {
+            sb.append(element.toString()).append(System.lineSeparator());
+        }
+        return sb.toString();
+    }
+
+    /**
+     * Creates and returns a copy of the multiset, the occurrences are not copied.
+     *
+     * @return A copy of the multiset.
+     * @throws java.lang.CloneNotSupportedException
+     */
+    @Override
+    public Object clone() throws CloneNotSupportedException {
+        return copyRange(null, false, null, false);
+    }
+
+    // A new multiset with the occurrences of the range, built from the sorted buckets in O(k)
+    private TreeMultiset<E> copyRange(E lo, boolean loInclusive, E hi, boolean hiInclusive) {
+        List<Bucket<E>> copies = new ArrayList<>();
+        int count = 0;
+        for (Iterator<Bucket<E>> it = buckets.rangeIterator(probe(lo), loInclusive, probe(hi), hiInclusive, true);
+             it.hasNext(); ) {
+            Bucket<E> copy = it.next().copy();
+            copies.add(copy);
+            count += copy.n;
+        }
+        TreeMultiset<E> multiset = new TreeMultiset<E>(c);
+        multiset.buckets = AvlSet.fromSorted(copies, multiset.buckets.c);
+        multiset.size = count;
+        return multiset;
+    }
+
+    /**
+     * Returns a multiset of the occurrences less than the element.
+     *
+     * @param element upper bound, exclusive
+     * @return a new multiset
+     */
+    @Override
+    public SortedSet<E> headSet(E element) {
+        if (element == null) {
+            throw new IllegalArgumentException("Element is null in headSet(E element)");
+        }
+        return copyRange(null, false, element, false);
+    }
+
+    /**
+     * Returns a multiset of the occurrences from the element1 inclusive to the element2 exclusive.
+     *
+     * @param element1 lower bound, inclusive
+     * @param element2 upper bound, exclusive
+     * @return a new multiset
+     */
+    @Override
+    public SortedSet<E> subSet(E element1, E element2) {
+        if (element1 == null || element2 == null) {
+            throw new IllegalArgumentException("Element is null in subSet(E element1, E element2)");
+        }
+        if (c.compare(element1, element2) > 0) {
+            throw new IllegalArgumentException("element1 is greater than element2 in subSet(E element1, E element2)");
+        }
+        return copyRange(element1, true, element2, false);
+    }
+
+    /**
+     * Returns a multiset of the occurrences greater than or equal to the element.
+     *
+     * @param element lower bound, inclusive
+     * @return a new multiset
+     */
+    @Override
+    public SortedSet<E> tailSet(E element) {
+        if (element == null) {
+            throw new IllegalArgumentException("Element is null in tailSet(E element)");
+        }
+        return copyRange(element, true, null, false);
+    }
+
+    /**
+     * @return the first occurrence of the greatest element less than or equal to the element, or null
+     */
+    @Override
+    public E floor(E element) {
+        if (element == null) {
+            throw new IllegalArgumentException("Element is null in floor(E element)");
+        }
+        Bucket<E> bucket = buckets.floor(new Bucket<>(element));
+        return (bucket == null) ? null : bucket.first();
+    }
+
+    /**
+     * @return the first occurrence of the least element greater than or equal to the element, or null
+     */
+    @Override
+    public E ceiling(E element) {
+        if (element == null) {
+            throw new IllegalArgumentException("Element is null in ceiling(E element)");
+        }
+        Bucket<E> bucket = buckets.ceiling(new Bucket<>(element));
+        return (bucket == null) ? null : bucket.first();
+    }
+
+    /**
+     * @return the first occurrence of the greatest element less than the element, or null
+     */
+    @Override
+    public E lower(E element) {
+        if (element == null) {
+            throw new IllegalArgumentException("Element is null in lower(E element)");
+        }
+        Bucket<E> bucket = buckets.lower(new Bucket<>(element));
+        return (bucket == null) ? null : bucket.first();
+    }
+
+    /**
+     * @return the first occurrence of the least element greater than the element, or null
+     */
+    @Override
+    public E higher(E element) {
+        if (element == null) {
+            throw new IllegalArgumentException("Element is null in higher(E element)");
+        }
+        Bucket<E> bucket = buckets.higher(new Bucket<>(element));
+        return (bucket == null) ? null : bucket.first();
+    }
+
+    /**
+     * @return the first occurrence of the least element
+     * @throws NoSuchElementException if the multiset is empty
+     */
+    @Override
+    public E first() {
+        return buckets.first().first();
+    }
+
+    /**
+     * @return the last occurrence of the greatest element
+     * @throws NoSuchElementException if the multiset is empty
+     */
+    @Override
+    public E last() {
+        return buckets.last().last();
+    }
+
+    /**
+     * Removes and returns the first occurrence of the least element.
+     *
+     * @return the removed occurrence or null if the multiset is empty
+     */
+    @Override
+    public E pollFirst() {
+        if (isEmpty()) {
+            return null;
+        }
+        Bucket<E> bucket = buckets.first();
+        E element = bucket.first();
+        removeAt(bucket, 0);
+        return element;
+    }
+
+    /**
+     * Removes and returns the last occurrence of the greatest element.
+     *
+     * @return the removed occurrence or null if the multiset is empty
+     */
+    @Override
+    public E pollLast() {
+        if (isEmpty()) {
+            return null;
+        }
+        Bucket<E> bucket = buckets.last();
+        E element = bucket.last();
+        removeAt(bucket, bucket.n - 1);
+        return element;
+    }
+
+    /**
+     * Returns an iterator over all occurrences in ascending order, equal occurrences in
+     * the order they were added.
+     *
+     * @return iterator
+     */
+    @Override
+    public Iterator<E> iterator() {
+        return new MultisetIterator(buckets.iterator(), true);
+    }
+
+    /**
+     * Returns an iterator over all occurrences in descending order, equal occurrences in
+     * the reverse order they were added.
+     *
+     * @return iterator
+     */
+    @Override
+    public Iterator<E> descendingIterator() {
+        return new MultisetIterator(buckets.descendingIterator(), false);
+    }
+
+    @Override
+    public Iterator<E> rangeIterator(E lo, boolean loInclusive, E hi, boolean hiInclusive) {
+        return new MultisetIterator(buckets.rangeIterator(probe(lo), loInclusive, probe(hi), hiInclusive, true), true);
+    }
+
+    @Override
+    public Iterator<E> distinctIterator() {
+        Iterator<Bucket<E>> it = buckets.iterator();
+        return new Iterator<E>() {
+            @Override
+            public boolean hasNext() {
+                return it.hasNext();
+            }
+
+            @Override
+            public E next() {
+                return it.next().first();
+            }
+        };
+    }
+
+    /**
+     * Iterates the occurrences of the buckets of a tree iterator. The iterator is
+     * fail-fast as the tree iterators are.
+     */
+    private class MultisetIterator implements Iterator<E> {
+
+        private final Iterator<Bucket<E>> bucketIterator;
+        private final boolean ascending;
+        private Bucket<E> bucket;
+        // Index of the next occurrence in the bucket and the occurrences left in it
+        private int index;
+        private int remaining = 0;
+        // Index of the occurrence returned last, -1 if it cannot be removed
+        private int last = -1;
+        private int expectedModCount = modCount;
+
+        MultisetIterator(Iterator<Bucket<E>> bucketIterator, boolean ascending) {
+            this.bucketIterator = bucketIterator;
+            this.ascending = ascending;
+        }
+
+        @Override
+        public boolean hasNext() {
+            return remaining > 0 || bucketIterator.hasNext();
+        }
+
+        @Override
+        public E next() {
+            if (modCount != expectedModCount) {
+                throw new ConcurrentModificationException();
+            }
+            if (remaining == 0) {
+                if (!bucketIterator.hasNext()) {
+                    throw new NoSuchElementException();
+                }
+                bucket = bucketIterator.next();
+                remaining = bucket.n;
+                index = ascending ? 0 : bucket.n - 1;
+            }
+            last = index;
+            index += ascending ? 1 : -1;
+            remaining--;
+            return bucket.get(last);
+        }
+
+        @Override
+        public void remove() {
+            if (last < 0) {
+                throw new IllegalStateException("error in remove Iterator");
+            }
+            if (modCount != expectedModCount) {
+                throw new ConcurrentModificationException();
+            }
+            if (bucket.n == 1) {
+                bucketIterator.remove();
+            } else {
+                bucket.removeAt(last);
+                if (ascending) {
+                    index--;
+                }
+            }
+            size--;
+            modCount++;
+            expectedModCount = modCount;
+            last = -1;
+        }
+    }
+}
@@ -0,0 +1,229 @@
+package utils;
+
+import utils.BstSet.BstNode;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.file.Files;
+import java.nio.file.Paths;
+import java.util.Arrays;
+
+/**
+ * Binary snapshots of tree sets.
+ * <p>
+ * A snapshot has a header with the comparator id, the record schema of the codec,
+ * the snapshot mode and the number of elements, followed by the fixed-width records of
+ * the elements in ascending order. Loading reads the file as a stream and builds the
+ * tree without comparisons of an insert:
+ * <ul>
+ * <li>{@link Mode#SORTED} - the elements are loaded into a perfectly balanced tree in O(n)
+ * (see {@link BstSet#loadSorted});</li>
+ * <li>{@link Mode#STRUCTURE} - every record is followed by the depth of its node and the
+ * node tag (the color of a red-black node), and the saved tree is restored exactly, with
+ * its heights and colors, in O(n) with a stack of the right spine. If the set class
+ * differs from the saved one, the elements are loaded as in the sorted mode.</li>
+ * </ul>
+ * Neither mode uses recursion, so degenerate BstSet trees are saved and loaded as well.
+ */
+public final class TreeSnapshot {
+
+    // File format identification, "TSNP"
+    private static final int MAGIC = 0x54534E50;
+    private static final int VERSION = 1;
+    private static final int BUFFER_SIZE = 1 << 16;
+
+    public enum Mode {SORTED, STRUCTURE}
+
+    private TreeSnapshot() {
+    }
+
+    /**
+     * Saves the elements of the set in ascending order.
+     *
+     * @see #save(BstSet, String, RecordCodec, String, Mode)
+     */
+    public static <E extends Comparable<E>> void save(BstSet<E> set, String filePath, RecordCodec<E> codec,
+                                                      String comparatorId) throws IOException {
+        save(set, filePath, codec, comparatorId, Mode.SORTED);
+    }
+
+    /**
+     * Saves the set into a snapshot file.
+     *
+     * @param set          saved set
+     * @param filePath     file to create or to overwrite
+     * @param codec        record codec of the elements
+     * @param comparatorId name of the set comparator, checked on load
+     * @param mode         SORTED to save only the elements, STRUCTURE to save the tree shape as well
+     */
+    public static <E extends Comparable<E>> void save(BstSet<E> set, String filePath, RecordCodec<E> codec,
+                                                      String comparatorId, Mode mode) throws IOException {
+        try (DataOutputStream out = new DataOutputStream(
+                new BufferedOutputStream(Files.newOutputStream(Paths.get(filePath)), BUFFER_SIZE))) {
+            out.writeInt(MAGIC);
+            out.writeInt(VERSION);
+            out.writeUTF(comparatorId);
+            out.writeUTF(codec.schema());
+            out.writeInt(codec.recordSize());
+            out.writeByte(mode.ordinal());
+            out.writeUTF(set.getClass().getName());
+            out.writeInt(set.size);
+
+            ByteBuffer record = ByteBuffer.allocate(codec.recordSize());
+            if (mode == Mode.SORTED) {
+                for (E element : set) {
+                    writeRecord(out, record, codec, element);
+                }
+                return;
+            }
+
+            // Inorder traversal with the depth of every node
+            BstNode<E>[] stack = BstSet.newNodeArray(64);
+            int[] depths = new int[stack.length];
+            int top = 0;
+            BstNode<E> node = set.root;
+            int depth = 0;
+            while (node != null || top > 0) {
+                while (node != null) {
+                    if (top == stack.length) {
+                        stack = Arrays.copyOf(stack, 2 * top);
+                        depths = Arrays.copyOf(depths, 2 * top);
+                    }
+                    stack[top] = node;
+                    depths[top++] = depth++;
+                    node = node.left;
+                }
+                node = stack[--top];
+                depth = depths[top];
+                writeRecord(out, record, codec, node.element);
+                out.writeInt(depth);
+                out.writeByte(set.nodeTag(node));
+                node = node.right;
+                depth++;
+            }
+        }
+    }
+
+    private static <E> void writeRecord(DataOutputStream out, ByteBuffer record, RecordCodec<E> codec,
+                                        E element) throws IOException {
+        Arrays.fill(record.array(), (byte) 0);
+        codec.encode(element, record, 0);
+        out.write(record.array());
+    }
+
+    /**
+     * Replaces the elements of the set with the elements of a snapshot file. A snapshot
+     * saved with the structure of a set of the same class is restored with its structure.
+     *
+     * @param set          loaded set, its comparator must be the one the snapshot was saved with
+     * @param filePath     snapshot file
+     * @param codec        record codec the snapshot was saved with
+     * @param comparatorId name of the set comparator
+     * @return the loaded set
+     * @throws IOException if the file is not a snapshot of such a set
+     */
+    public static <E extends Comparable<E>, S extends BstSet<E>> S load(S set, String filePath, RecordCodec<E> codec,
+                                                                        String comparatorId) throws IOException {
+        try (DataInputStream in = new DataInputStream(
+                new BufferedInputStream(Files.newInputStream(Paths.get(filePath)), BUFFER_SIZE))) {
+            if (in.readInt() != MAGIC || in.readInt() != VERSION) {
+                throw new IOException("Not a snapshot file: " + filePath);
+            }
+            String savedComparator = in.readUTF();
+            if (!savedComparator.equals(comparatorId)) {
+                throw new IOException("Snapshot is ordered by " + savedComparator + ", not by " + comparatorId);
+            }
+            String savedSchema = in.readUTF();
+            int recordSize = in.readInt();
+            if (!savedSchema.equals(codec.schema()) || recordSize != codec.recordSize()) {
+                throw new IOException("Snapshot records are " + savedSchema + ", the codec reads " + codec.schema());
+            }
+            int modeOrdinal = in.readByte();
+            if (modeOrdinal < 0 || modeOrdinal >= Mode.values().length) {
+                throw new IOException("Unknown snapshot mode " + modeOrdinal);
+            }
+            Mode mode = Mode.values()[modeOrdinal];
+            boolean sameClass = in.readUTF().equals(set.getClass().getName());
+            int count = in.readInt();
+            if (count < 0) {
+                throw new IOException("Negative element count " + count);
+            }
+
+            ByteBuffer record = ByteBuffer.allocate(recordSize);
+            if (mode == Mode.STRUCTURE && sameClass) {
+                set.loadTree(readTree(in, record, codec, set, count), count);
+                return set;
+            }
+
+            Object[] elements = new Object[count];
+            for (int i = 0; i < count; i++) {
+                elements[i] = readRecord(in, record, codec);
+                if (mode == Mode.STRUCTURE) {
+                    in.readInt();
+                    in.readByte();
+                }
+            }
+            try {
+                set.loadSorted(elements, BstSet.distinctSorted(elements, set.c));
+            } catch (IllegalArgumentException e) {
+                throw new IOException("Snapshot elements are not in ascending order: " + e.getMessage());
+            }
+            return set;
+        }
+    }
+
+    private static <E> E readRecord(DataInputStream in, ByteBuffer record, RecordCodec<E> codec) throws IOException {
+        in.readFully(record.array());
+        return codec.decode(record, 0);
+    }
+
+    /**
+     * Restores a tree from its nodes in inorder and their depths. The stack holds the
+     * right spine of the tree built so far; a node pops the deeper nodes, which become
+     * its left subtree, and becomes the right child of the node left on top. A popped
+     * node is complete, since its right subtree was popped before it.
+     */
+    private static <E extends Comparable<E>> BstNode<E> readTree(DataInputStream in, ByteBuffer record,
+                                                                 RecordCodec<E> codec, BstSet<E> set,
+                                                                 int count) throws IOException {
+        BstNode<E>[] stack = BstSet.newNodeArray(64);
+        int[] depths = new int[stack.length];
+        int top = 0;
+        E previous = null;
+        for (int i = 0; i < count; i++) {
+            E element = readRecord(in, record, codec);
+            int depth = in.readInt();
+            BstNode<E> node = set.newNode(element, in.readByte());
+            if (previous != null && set.c.compare(previous, element) >= 0) {
+                throw new IOException("Snapshot elements are not in ascending order at index " + i);
+            }
+            previous = element;
+
+            BstNode<E> last = null;
+            while (top > 0 && depths[top - 1] > depth) {
+                last = stack[--top];
+                set.restoreNode(last);
+            }
+            node.left = last;
+            if (top > 0) {
+                stack[top - 1].right = node;
+            }
+            if (top == stack.length) {
+                stack = Arrays.copyOf(stack, 2 * top);
+                depths = Arrays.copyOf(depths, 2 * top);
+            }
+            stack[top] = node;
+            depths[top++] = depth;
+        }
+        BstNode<E> root = null;
+        while (top > 0) {
+            root = stack[--top];
+            set.restoreNode(root);
+        }
+        return root;
+    }
+}